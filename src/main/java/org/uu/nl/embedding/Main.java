@@ -1,8 +1,11 @@
 package org.uu.nl.embedding;
 
 import grph.GrphWebNotifications;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.PrefixMapping;
 import org.apache.log4j.Logger;
 import org.uu.nl.embedding.bca.BookmarkColoring;
+import org.uu.nl.embedding.convert.GraphDelta;
 import org.uu.nl.embedding.convert.Rdf2GrphConverter;
 import org.uu.nl.embedding.opt.*;
 import org.uu.nl.embedding.opt.grad.AMSGrad;
@@ -36,8 +39,28 @@ public class Main {
         logger.info("Graph File: " + config.getGraph());
         logger.info("Embedding dimensions: " + config.getDim());
         logger.info("Threads: " + config.getThreads());
-        logger.info("BCA Alpha: " + config.getBca().getAlpha());
+        if(config.getBca().usingAlphas()) {
+            logger.info("BCA Alphas: " + config.getBca().getAlphas());
+        } else {
+            logger.info("BCA Alpha: " + config.getBca().getAlpha());
+        }
         logger.info("BCA Epsilon: " + config.getBca().getEpsilon());
+        logger.info("BCA Engine: " + config.getBca().getEngineEnum());
+        if(config.getBca().usingStore()) {
+            logger.info("BCA Store: " + config.getBca().getStore());
+        }
+        if(config.getBca().usingShards()) {
+            logger.info("BCA Shards: " + config.getBca().getShards() + " worker processes");
+        }
+        if(config.getBca().isPrune()) {
+            logger.info("BCA Pruning: vertices further than " + config.getBca().getPaintRadius() + " hops from an output node");
+        }
+        if(config.getBca().usingReorder()) {
+            logger.info("Vertex order: " + config.getBca().getReorderEnum());
+        }
+        if(config.getBca().isPartition()) {
+            logger.info("Partitioning: connected components in work units of up to " + config.getBca().getPartitionSize() + " vertices");
+        }
         logger.info("Gradient Descent Algorithm: " + config.getOpt().getMethod());
         logger.info(config.getMethod() + " Tolerance: " + config.getOpt().getTolerance());
         logger.info(config.getMethod() + " Maximum Iterations: " + config.getOpt().getMaxiter());
@@ -69,26 +92,60 @@ public class Main {
             config.getSimilarity().forEach(s -> logger.info(s.toString()));
         } else logger.info("No similarity matching will be performed");
 
-        String outFileName = config.getOutput().getName();
-        if(outFileName == null || outFileName.isEmpty()) {
-            outFileName = createFileName(config);
-        }
-        logger.info("Writing files with prefix: " + outFileName);
-
         Configuration.setThreadLocalRandom();
 
         final JenaReader loader = new JenaReader();
 
         final Rdf2GrphConverter converter = new Rdf2GrphConverter(config);
 
-        final InMemoryRdfGraph graph = converter.convert(loader.load(config.getGraphFile()));
+        final Model model = loader.load(config.getGraphFile());
+
+        // The converter closes the model, but the delta needs its prefixes to find the changed vertices
+        final PrefixMapping prefixes = PrefixMapping.Factory.create().setNsPrefixes(model);
+
+        final InMemoryRdfGraph graph = converter.convert(model);
+
+        if(config.getBca().isPartition() && PartitionedPipeline.supports(config)) {
+            final PartitionedPipeline pipeline = new PartitionedPipeline(config, graph);
+            pipeline.run();
+            write(config, pipeline.getOptimum(), pipeline.getColoring());
+            return;
+        }
+
+        final GraphDelta delta = config.getBca().usingIncremental() ? new GraphDelta(config, prefixes) : null;
+
+        final BookmarkColoring bca = new BookmarkColoring(graph, config, delta);
+
+        if(!config.getBca().usingAlphas()) {
+            train(config, bca);
+            return;
+        }
+        // The co-occurrences of all alphas were computed together, each is trained and written on its own
+        for(int a = 0; a < config.getBca().getAlphas().size(); a++) {
+            final Configuration alphaConfig = config.forAlpha(config.getBca().getAlphas().get(a));
+            train(alphaConfig, bca.forAlpha(alphaConfig, a));
+        }
+    }
 
-        final CoOccurrenceMatrix bca = new BookmarkColoring(graph, config);
+    private static void train(Configuration config, CoOccurrenceMatrix bca) throws OptimizationFailedException, IOException {
 
         final IOptimizer optimizer = createOptimizer(config, bca);
 
         final Optimum optimum = optimizer.optimize();
 
+        write(config, optimum, bca);
+    }
+
+    private static void write(Configuration config, Optimum optimum, CoOccurrenceMatrix bca) throws IOException {
+
+        String outFileName = config.getOutput().getName();
+        if(outFileName == null || outFileName.isEmpty()) {
+            outFileName = createFileName(config);
+        } else if(config.getBca().usingAlphas()) {
+            outFileName += "_" + config.getBca().getAlpha();
+        }
+        logger.info("Writing files with prefix: " + outFileName);
+
         final EmbeddingWriter writer = getWriter(outFileName, config);
         writer.write(optimum, bca, Paths.get("").toAbsolutePath().resolve("out"));
     }
@@ -122,7 +179,7 @@ public class Main {
         return outFileName;
     }
 
-    private static IOptimizer createOptimizer(final Configuration config, final CoOccurrenceMatrix coMatrix) {
+    public static IOptimizer createOptimizer(final Configuration config, final CoOccurrenceMatrix coMatrix) {
 
         CostFunction cf;
         switch (config.getMethodEnum()) {
@@ -0,0 +1,214 @@
+package org.uu.nl.embedding;
+
+import me.tongfei.progressbar.ProgressBar;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.bca.BookmarkColoring;
+import org.uu.nl.embedding.bca.PartitionedColoring;
+import org.uu.nl.embedding.convert.GraphComponents;
+import org.uu.nl.embedding.convert.util.NodeInfo;
+import org.uu.nl.embedding.opt.OptimizationFailedException;
+import org.uu.nl.embedding.opt.Optimizer;
+import org.uu.nl.embedding.opt.Optimum;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Colors and optimizes every work unit of connected components on its own (see {@link GraphComponents}). Each unit
+ * has its own co-occurrences and parameter arrays, so its working set is small and threads never write to the same
+ * vectors. Units that hold a single component larger than the partition size come first and get all threads, one
+ * after the other. The smaller units are then processed in parallel with one thread each, so no more than the
+ * configured number of threads run at the same time. The results are put together again in
+ * {@link PartitionedColoring}, so they can be written to a single output.
+ * <p>
+ * The GloVe weighting function of each unit uses the largest co-occurrence of that unit. Units print no progress bars
+ * and only log errors, a single progress bar counts the finished units instead.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class PartitionedPipeline {
+
+    private final static Logger logger = Logger.getLogger(PartitionedPipeline.class);
+    /**
+     * The packages that log once for every unit
+     */
+    private final static String[] UNIT_LOGGERS = {"org.uu.nl.embedding.bca", "org.uu.nl.embedding.opt", "org.uu.nl.embedding.convert.util"};
+
+    private final Configuration config;
+    private final InMemoryRdfGraph graph;
+    private PartitionedColoring coloring;
+    private Optimum optimum;
+
+    public PartitionedPipeline(Configuration config, InMemoryRdfGraph graph) {
+        this.config = config;
+        this.graph = graph;
+    }
+
+    /**
+     * Settings that write one file for the whole graph or change the graph between runs do not work per unit
+     * @return Whether the graph can be processed per unit with this configuration
+     */
+    public static boolean supports(Configuration config) {
+        final Configuration.BCA bca = config.getBca();
+        final List<String> unsupported = new ArrayList<>();
+        if(bca.usingAlphas()) unsupported.add("multiple alphas");
+        if(bca.usingStore()) unsupported.add("the co-occurrence store");
+        if(bca.usingResiduals()) unsupported.add("the residual store");
+        if(bca.usingShards()) unsupported.add("sharded BCA");
+        if(bca.usingIncremental()) unsupported.add("incremental BCA");
+        if(unsupported.isEmpty()) return true;
+        logger.warn("Partitioning is not supported together with " + String.join(", ", unsupported) + ", the graph is processed as a whole");
+        return false;
+    }
+
+    public void run() throws OptimizationFailedException {
+
+        final GraphComponents components = new GraphComponents(graph);
+        final int partitionSize = config.getBca().getPartitionSize();
+        final List<int[]> units = components.units(config.getOutput().getNodeIndex(), partitionSize);
+        int largest = 0;
+        for(int[] unit : units) largest = Math.max(largest, unit.length);
+        logger.info(String.format("Found %d connected components, packed the ones with output nodes into %d work units (largest %d vertices)",
+                components.count(), units.size(), largest));
+
+        final long start = System.nanoTime();
+        final Part[] parts = new Part[units.size()];
+        ExecutorService es = null;
+        final Level[] levels = new Level[UNIT_LOGGERS.length];
+        for(int i = 0; i < UNIT_LOGGERS.length; i++) {
+            levels[i] = Logger.getLogger(UNIT_LOGGERS[i]).getLevel();
+            Logger.getLogger(UNIT_LOGGERS[i]).setLevel(Level.ERROR);
+        }
+        try(ProgressBar pb = Configuration.progressBar("Work units", units.size(), "units")) {
+            // The large units use all threads themselves, so the pool for the small units only starts after them
+            final List<Integer> smallIndex = new ArrayList<>();
+            for(int u = 0; u < units.size(); u++) {
+                if(units.get(u).length > partitionSize) {
+                    parts[u] = process(components, u, units.get(u), config.getThreads());
+                    pb.step();
+                } else smallIndex.add(u);
+            }
+            es = Executors.newFixedThreadPool(config.getThreads());
+            final List<Future<Part>> small = new ArrayList<>(smallIndex.size());
+            for(int u : smallIndex) {
+                final int[] vertices = units.get(u);
+                small.add(es.submit(() -> process(components, u, vertices, 1)));
+            }
+            for(int i = 0; i < small.size(); i++) {
+                parts[smallIndex.get(i)] = small.get(i).get();
+                pb.step();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimizationFailedException("Interrupted while processing the work units", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof OptimizationFailedException) throw (OptimizationFailedException) e.getCause();
+            throw new OptimizationFailedException("Processing a work unit failed", e.getCause());
+        } finally {
+            if(es != null) es.shutdownNow();
+            for(int i = 0; i < UNIT_LOGGERS.length; i++) Logger.getLogger(UNIT_LOGGERS[i]).setLevel(levels[i]);
+        }
+
+        int unconverged = 0;
+        for(Part part : parts) if(!part.converged) unconverged++;
+        logger.info(String.format("Processed %d work units in %.1f seconds", units.size(), (System.nanoTime() - start) / 1e9));
+        if(unconverged > 0) {
+            logger.warn(unconverged + " work units reached the maximum number of epochs before the cost changed less than the tolerance");
+        }
+
+        final List<PartitionedColoring.Unit> colorings = new ArrayList<>(parts.length);
+        for(Part part : parts) colorings.add(part.coloring);
+        this.coloring = new PartitionedColoring(graph, colorings);
+        this.optimum = merge(parts);
+    }
+
+    /**
+     * Color and optimize one work unit, only its vectors and co-occurrences are kept
+     */
+    private Part process(GraphComponents components, int unit, int[] vertices, int threads) throws OptimizationFailedException {
+
+        final InMemoryRdfGraph subgraph = components.subgraph(unit);
+        final Set<Integer> nodeIndex = new HashSet<>();
+        for(int v = 0; v < vertices.length; v++) {
+            if(config.getOutput().getNodeIndex().contains(vertices[v])) nodeIndex.add(v);
+        }
+        final Configuration partConfig = config.forPart(nodeIndex, threads);
+
+        final BookmarkColoring coloring = new BookmarkColoring(subgraph, partConfig);
+        final Optimum optimum = Main.createOptimizer(partConfig, coloring).optimize();
+
+        final float[][] vectors = new float[coloring.nrOfFocusVectors()][];
+        final Iterator<Optimizer.EmbeddedEntity> entities = optimum.iterator();
+        while(entities.hasNext()) {
+            final Optimizer.EmbeddedEntity entity = entities.next();
+            vectors[entity.getIndex()] = entity.getVector();
+        }
+        return new Part(new PartitionedColoring.Unit(coloring, vertices), vectors, optimum.getFinalCost(), optimum.isConverged());
+    }
+
+    /**
+     * @return The vectors of all units, with the focus indices of {@link PartitionedColoring}
+     */
+    private Optimum merge(Part[] parts) {
+
+        final Optimum merged = new Optimum();
+        double cost = 0;
+        long entries = 0;
+        for(Part part : parts) {
+            cost += part.cost * part.coloring.coOccurrenceCount();
+            entries += part.coloring.coOccurrenceCount();
+        }
+        merged.setFinalCost(entries == 0 ? 0 : cost / entries);
+
+        merged.setResultIterator(new Iterator<Optimizer.EmbeddedEntity>() {
+
+            private int index = 0, part = 0, local = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < coloring.nrOfFocusVectors();
+            }
+
+            @Override
+            public Optimizer.EmbeddedEntity next() {
+                while(local == parts[part].vectors.length) {
+                    part++;
+                    local = 0;
+                }
+                final Optimizer.EmbeddedEntity entity = new Optimizer.EmbeddedEntity(index, coloring.getKey(index),
+                        NodeInfo.fromByte(coloring.getType(index)), parts[part].vectors[local]);
+                index++;
+                local++;
+                return entity;
+            }
+        });
+        return merged;
+    }
+
+    public PartitionedColoring getColoring() {
+        return coloring;
+    }
+
+    public Optimum getOptimum() {
+        return optimum;
+    }
+
+    private static class Part {
+
+        private final PartitionedColoring.Unit coloring;
+        private final float[][] vectors;
+        private final double cost;
+        private final boolean converged;
+
+        private Part(PartitionedColoring.Unit coloring, float[][] vectors, double cost, boolean converged) {
+            this.coloring = coloring;
+            this.vectors = vectors;
+            this.cost = cost;
+            this.converged = converged;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.uu.nl.embedding.bca;
+
+import grph.GrphWebNotifications;
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.bca.util.BCAJob;
+import org.uu.nl.embedding.bca.util.HubCache;
+import org.uu.nl.embedding.bca.util.PaintFrontier;
+import org.uu.nl.embedding.Main;
+import org.uu.nl.embedding.convert.Rdf2GrphConverter;
+import org.uu.nl.embedding.convert.VertexOrdering;
+import org.uu.nl.embedding.convert.util.NodeInfo;
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.opt.OptimizationFailedException;
+import org.uu.nl.embedding.util.config.InvalidConfigException;
+import org.uu.nl.embedding.util.read.ConfigReader;
+import org.uu.nl.embedding.util.read.JenaReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Runs only the BCA step of a configuration once for every node ordering, and reports the number of times paint was
+ * spread and the wall time of each. Then runs it for every bookmark schedule, and reports the wall time and the time
+ * spent on the last 1% of the bookmarks. Finally renumbers the vertices in every vertex order, and reports the wall time
+ * of the BCA step and of one epoch of the optimizer. The co-occurrence store, the residual store and shards of the
+ * configuration are not used, so every round starts from scratch. Usage: {@code BCABenchmark -c config/dblp.yml}
+ * <p>
+ * Without the datasets of the configurations, {@code BCABenchmark -c config/benchmark.yml -random <vertices> <edges>
+ * <bookmarks>} runs the same steps on a uniform random graph with unit weights and randomly chosen bookmarks. The
+ * graph is the same in every run, and only the settings of the configuration are used. The bookmark schedules only
+ * differ on graphs with hubs, {@code -scalefree <vertices> <edges per vertex> <bookmarks>} grows such a graph by
+ * preferential attachment instead.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class BCABenchmark {
+
+	private static final Logger logger = Logger.getLogger(BCABenchmark.class);
+
+	/**
+	 * The first round warms up the JVM, the fastest round is reported
+	 */
+	private static final int ROUNDS = 3;
+
+	/**
+	 * The seed of the random graphs, so every run benchmarks the same graph
+	 */
+	private static final long SEED = 42;
+
+	public static void main(String[] args) throws IOException, InvalidConfigException, InterruptedException, ExecutionException, OptimizationFailedException {
+
+		final boolean random = args.length == 6 && (args[2].equals("-random") || args[2].equals("-scalefree"));
+		if((args.length != 2 && !random) || !args[0].equals("-c")) {
+			logger.error("Usage: BCABenchmark -c <configuration file> [-random <vertices> <edges> <bookmarks>]"
+					+ " [-scalefree <vertices> <edges per vertex> <bookmarks>]");
+			System.exit(1);
+		}
+
+		final File configFile = Paths.get("").toAbsolutePath().resolve(args[1]).toFile();
+		GrphWebNotifications.enabled = false;
+		final Configuration config = new ConfigReader().load(configFile);
+		Configuration.check(config);
+		// Every round must do the same work in this process, so no stored state is read or written and no workers start
+		config.getBca().setStore(null);
+		config.getBca().setResiduals(null);
+		config.getBca().setShards(0);
+		Configuration.setThreadLocalRandom();
+
+		final InMemoryRdfGraph graph;
+		if(random) {
+			final Random rnd = new Random(SEED);
+			graph = args[2].equals("-random")
+					? randomGraph(Integer.parseInt(args[3]), Integer.parseInt(args[4]), rnd)
+					: scaleFreeGraph(Integer.parseInt(args[3]), Integer.parseInt(args[4]), rnd);
+			config.getOutput().getNodeIndex().clear();
+			while(config.getOutput().getNodeIndex().size() < Math.min(Integer.parseInt(args[5]), graph.getNumberOfVertices())) {
+				config.getOutput().getNodeIndex().add(rnd.nextInt(graph.getNumberOfVertices()));
+			}
+		} else graph = new Rdf2GrphConverter(config).convert(new JenaReader().load(config.getGraphFile()));
+		final Adjacency adjacency = BookmarkColoring.createAdjacency(config, graph);
+		final int[] bookmarks = config.getOutput().getNodeIndex().stream().mapToInt(i -> i).toArray();
+
+		logger.info(String.format("%d vertices, %d edges, %d bookmarks, engine %s",
+				adjacency.vertexCount(), adjacency.edgeCount() / 2, bookmarks.length, config.getBca().getEngineEnum()));
+
+		final String configuredOrdering = config.getBca().getOrdering();
+		final ForkJoinPool pool = new ForkJoinPool(config.getThreads());
+		try {
+			for(Configuration.BCAOrdering ordering : Configuration.BCAOrdering.values()) {
+				config.getBca().setOrdering(ordering.name());
+
+				long pops = 0, entries = 0, best = Long.MAX_VALUE;
+				for(int round = 0; round < ROUNDS; round++) {
+
+					final List<PaintFrontier> frontiers = Collections.synchronizedList(new ArrayList<>());
+					final HubCache hubs = BookmarkColoring.createHubCache(config.getBca(), adjacency, frontiers);
+					final IntFunction<BCAJob> jobs = BookmarkColoring.createJobs(config.getBca(), adjacency, frontiers, hubs);
+
+					final long start = System.nanoTime();
+					entries = pool.submit(() -> IntStream.of(bookmarks).parallel()
+							.mapToLong(b -> jobs.apply(b).call().size()).sum()).get();
+					best = Math.min(best, System.nanoTime() - start);
+
+					pops = 0;
+					for(PaintFrontier frontier : frontiers) pops += frontier.pops();
+					if(hubs != null) pops -= hubs.splices();
+				}
+
+				logger.info(String.format("%-8s %12.1f pushes per bookmark %12.1f entries per bookmark %10.2f seconds",
+						ordering, pops / (double) bookmarks.length, entries / (double) bookmarks.length, best / 1e9));
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		// Schedules are compared on the complete BCA step, as they only matter for how batches are spread over threads
+		config.getBca().setOrdering(configuredOrdering);
+		for(Configuration.BCASchedule schedule : Configuration.BCASchedule.values()) {
+			config.getBca().setSchedule(schedule.name());
+
+			double best = Double.MAX_VALUE, tail = Double.MAX_VALUE;
+			for(int round = 0; round < ROUNDS; round++) {
+				final BookmarkColoring bca = new BookmarkColoring(graph, config);
+				best = Math.min(best, bca.getBcaSeconds());
+				tail = Math.min(tail, bca.getTailSeconds());
+			}
+
+			logger.info(String.format("%-8s %10.2f seconds, last 1%% of the bookmarks %8.2f seconds", schedule, best, tail));
+		}
+
+		// Every vertex order starts from the converted graph, and renumbers the output nodes from there
+		final Set<Integer> outputNodes = new HashSet<>(config.getOutput().getNodeIndex());
+		config.getOpt().setMaxiter(1);
+		for(Configuration.VertexOrder order : Configuration.VertexOrder.values()) {
+			config.getOutput().getNodeIndex().clear();
+			config.getOutput().getNodeIndex().addAll(outputNodes);
+			config.getBca().setReorder(order.name());
+			final InMemoryRdfGraph ordered = order == Configuration.VertexOrder.NONE ?
+					graph : new VertexOrdering(config).reorder(graph);
+
+			double best = Double.MAX_VALUE, epoch = Double.MAX_VALUE;
+			for(int round = 0; round < ROUNDS; round++) {
+				final BookmarkColoring bca = new BookmarkColoring(ordered, config);
+				best = Math.min(best, bca.getBcaSeconds());
+
+				final long start = System.nanoTime();
+				Main.createOptimizer(config, bca).optimize();
+				epoch = Math.min(epoch, (System.nanoTime() - start) / 1e9);
+			}
+
+			logger.info(String.format("%-10s %10.2f seconds BCA, %10.2f seconds per epoch", order, best, epoch));
+		}
+	}
+
+	/**
+	 * @param edges The number of edges that are drawn, self loops are left out
+	 * @return A graph where every edge connects two uniformly drawn vertices
+	 */
+	private static InMemoryRdfGraph randomGraph(int vertices, int edges, Random random) {
+		final InMemoryRdfGraph g = vertices(vertices);
+		for(int i = 0; i < edges; i++) {
+			final int a = random.nextInt(vertices), b = random.nextInt(vertices);
+			if(a != b) g.addWeightedEdge(a, b, 1, 0);
+		}
+		return g;
+	}
+
+	/**
+	 * @param degree The number of edges of every new vertex
+	 * @return A graph where every new vertex connects to existing vertices in proportion to their degree
+	 */
+	private static InMemoryRdfGraph scaleFreeGraph(int vertices, int degree, Random random) {
+		final InMemoryRdfGraph g = vertices(vertices);
+		// Every vertex appears once for every edge it has, so a uniform draw from this array follows the degree
+		final int[] endpoints = new int[2 * vertices * degree];
+		int size = 0;
+		for(int v = 1; v < vertices; v++) {
+			for(int i = 0; i < degree; i++) {
+				final int target = size == 0 ? 0 : endpoints[random.nextInt(size)];
+				if(target == v) continue;
+				g.addWeightedEdge(v, target, 1, 0);
+				endpoints[size++] = v;
+				endpoints[size++] = target;
+			}
+		}
+		return g;
+	}
+
+	private static InMemoryRdfGraph vertices(int vertices) {
+		final InMemoryRdfGraph g = new InMemoryRdfGraph();
+		for(int v = 0; v < vertices; v++) {
+			g.addVertex(v);
+			g.getVertexTypeProperty().setValue(v, NodeInfo.URI.id);
+			g.getVertexLabelProperty().setValue(v, "v" + v);
+		}
+		return g;
+	}
+}
@@ -0,0 +1,51 @@
+package org.uu.nl.embedding.bca;
+
+import grph.GrphWebNotifications;
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.convert.Rdf2GrphConverter;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.read.ConfigReader;
+import org.uu.nl.embedding.util.read.JenaReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A worker process in sharded mode. Loads the same graph as the process that started it, computes the coloring
+ * vectors of one range of bookmarks and writes them to a shard file. The threads of the machine are divided over the
+ * workers. Started by {@link BookmarkColoring}, usage: {@code BCAShardWorker -c config/dblp.yml -shard 2}
+ *
+ * @author Jurian Baas
+ */
+public class BCAShardWorker {
+
+	private static final Logger logger = Logger.getLogger(BCAShardWorker.class);
+
+	public static void main(String[] args) {
+
+		if(args.length < 4 || !args[0].equals("-c") || !args[2].equals("-shard")) {
+			logger.error("Usage: BCAShardWorker -c <configuration file> -shard <shard>");
+			System.exit(1);
+		}
+
+		try {
+			final File configFile = Paths.get("").toAbsolutePath().resolve(args[1]).toFile();
+			GrphWebNotifications.enabled = false;
+			final Configuration config = new ConfigReader().load(configFile);
+			Configuration.check(config);
+			Configuration.setThreadLocalRandom();
+
+			final int shards = config.getBca().getShards();
+			config.getBca().setShard(Integer.parseInt(args[3]));
+			config.setThreads(Math.max(1, config.getThreads() / shards));
+
+			final InMemoryRdfGraph graph = new Rdf2GrphConverter(config).convert(new JenaReader().load(config.getGraphFile()));
+			new BookmarkColoring(graph, config);
+		} catch (IOException | RuntimeException e) {
+			logger.error(e.getMessage(), e);
+			System.exit(1);
+		}
+	}
+}
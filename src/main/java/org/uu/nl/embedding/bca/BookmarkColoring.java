@@ -1,107 +1,322 @@
 package org.uu.nl.embedding.bca;
 
 import me.tongfei.progressbar.ProgressBar;
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.bca.jobs.BlockPush;
+import org.uu.nl.embedding.bca.jobs.ForwardPush;
+import org.uu.nl.embedding.bca.jobs.MonteCarlo;
+import org.uu.nl.embedding.bca.jobs.TwoLevel;
 import org.uu.nl.embedding.bca.jobs.UndirectedWeighted;
-import org.uu.nl.embedding.bca.util.BCV;
-import org.uu.nl.embedding.convert.util.EdgeNeighborhoodAlgorithm;
-import org.uu.nl.embedding.convert.util.VertexNeighborhoodAlgorithm;
+import org.uu.nl.embedding.bca.util.*;
+import org.uu.nl.embedding.convert.GraphDelta;
+import org.uu.nl.embedding.convert.util.CSRAlgorithm;
+import org.uu.nl.embedding.convert.util.CompressedAlgorithm;
+import org.uu.nl.embedding.util.Adjacency;
 import org.uu.nl.embedding.util.CoOccurrenceMatrix;
+import org.uu.nl.embedding.util.CompressedAdjacency;
 import org.uu.nl.embedding.util.InMemoryRdfGraph;
 import org.uu.nl.embedding.util.config.Configuration;
 import org.uu.nl.embedding.util.rnd.Permutation;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 /**
  * @author Jurian Baas
  */
 public class BookmarkColoring implements CoOccurrenceMatrix {
 
-	private final ArrayList<Integer> coOccurrenceIdx_I;
-	private final ArrayList<Integer> coOccurrenceIdx_J;
-	private final ArrayList<Float> coOccurrenceValues;
+	private static final Logger logger = Logger.getLogger(BookmarkColoring.class);
+
+	/**
+	 * The maximum number of batches that are submitted but not yet collected, per thread
+	 */
+	private static final int BATCHES_IN_FLIGHT_PER_THREAD = 4;
+	/**
+	 * When no batch size is configured, aim for this many batches per thread to keep the load balanced
+	 */
+	private static final int BATCHES_PER_THREAD = 16;
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private final int[] coOccurrenceIdx_I;
+	private final int[] coOccurrenceIdx_J;
+	private final float[] coOccurrenceValues;
 	private double max;
 	private final int focusVectors, contextVectors;
-	private int coOccurrenceCount;
+	private final int coOccurrenceCount;
+	/**
+	 * The entries below this index are shared by two output nodes and are used in both directions
+	 */
+	private final int symmetricCount;
 	private final Permutation permutation;
 	private final InMemoryRdfGraph graph;
-	private final Map<Integer, Integer> context2focus;
-	private final Map<Integer, Integer> focus2context;
+	private final int[] context2focus;
+	private final int[] focus2context;
+	private double bcaSeconds, tailSeconds;
+	/**
+	 * What happened to each bookmark under the work budget, null if no budget was used
+	 */
+	private WorkBudget.Outcome[] budgetOutcomes;
+	/**
+	 * The buffers of each configured alpha, null if only one alpha is used
+	 */
+	private List<List<CoOccurrenceBuffer>> alphaBuffers;
 
 	public BookmarkColoring(final InMemoryRdfGraph graph, final Configuration config) {
+		this(graph, config, null);
+	}
 
-		final double alpha = config.getBca().getAlpha();
-		final double epsilon = config.getBca().getEpsilon();
-		final int[] vertices = graph.getVertices().toIntArray();
+	/**
+	 * @param delta The changes to the graph since the co-occurrence store was written, the stored vectors of
+	 *              bookmarks that cannot be affected by these changes are reused. If null all bookmarks are computed.
+	 */
+	public BookmarkColoring(final InMemoryRdfGraph graph, final Configuration config, final GraphDelta delta) {
+		this(graph, config, delta, null);
+	}
 
-		final Configuration.Output output = config.getOutput();
+	/**
+	 * @param computed The buffers of bookmarks that were already computed, if null they are computed here
+	 */
+	private BookmarkColoring(final InMemoryRdfGraph graph, final Configuration config, final GraphDelta delta,
+							 final List<CoOccurrenceBuffer> computed) {
+
+		final int[] vertices = graph.getVertices().toIntArray();
 
-		this.context2focus = new HashMap<>();
-		this.focus2context = new HashMap<>();
+		final int[] bookmarks = config.getOutput().getNodeIndex().stream().mapToInt(i -> i).toArray();
+		final int notSkipped = bookmarks.length;
 
-		int notSkipped = config.getOutput().getNodeIndex().size();
+		// The focus index of a bookmark is its position in the bookmark array
+		this.focus2context = bookmarks;
+		this.context2focus = new int[vertices.length];
+		Arrays.fill(context2focus, -1);
+		for (int i = 0; i < notSkipped; i++) context2focus[bookmarks[i]] = i;
 
 		this.graph = graph;
 		this.focusVectors = notSkipped;
 		this.contextVectors = vertices.length;
-		this.coOccurrenceIdx_I = new ArrayList<>(notSkipped);
-		this.coOccurrenceIdx_J = new ArrayList<>(notSkipped);
-		this.coOccurrenceValues = new ArrayList<>(notSkipped);
 
-		final int numThreads = config.getThreads();
-
-		final ExecutorService es = Executors.newWorkStealingPool(numThreads);
+		final Configuration.BCA bca = config.getBca();
+		List<CoOccurrenceBuffer> buffers = computed;
+		if(buffers == null && bca.usingAlphas()) {
+			if(delta != null) logger.warn("Incremental BCA is not supported with multiple alphas, all bookmarks are recomputed");
+			if(bca.usingShards()) logger.warn("Sharded BCA is not supported with multiple alphas, all bookmarks are computed by this process");
+			if(bca.usingStore()) logger.warn("The co-occurrence store is not written with multiple alphas");
+			buffers = compute(config, null, bookmarks);
+		}
+		if(buffers == null && bca.usingShards() && !bca.isShardWorker()) {
+			if(delta != null) logger.warn("Incremental BCA is not supported in sharded mode, all bookmarks are recomputed");
+			try {
+				buffers = computeShards(config, bookmarks);
+			} catch (IOException | InterruptedException e) {
+				logger.error("Sharded BCA failed, all bookmarks are computed by this process", e);
+			}
+		}
+		if(buffers == null) buffers = compute(config, delta, bookmarks);
 
-		final int[][] edgeNeighborhoods = new EdgeNeighborhoodAlgorithm(config).compute(graph);
-		final int[][] vertexNeighborhoods = new VertexNeighborhoodAlgorithm(config).compute(graph);
+		long totalSize = 0;
+		for (CoOccurrenceBuffer buffer : buffers) {
+			totalSize += buffer.size();
+			setMax(buffer.max());
+		}
 
-		CompletionService<BCV> completionService = new ExecutorCompletionService<>(es);
+		int[] I = new int[Math.toIntExact(totalSize)];
+		int[] J = new int[I.length];
+		float[] C = new float[I.length];
 
-		int j = 0;
-		for(int bookmark : config.getOutput().getNodeIndex()) {
+		int offset = 0;
+		for (CoOccurrenceBuffer buffer : buffers) {
+			offset = buffer.drainInto(I, J, C, offset);
+		}
 
-			context2focus.put(bookmark, j);
-			focus2context.put(j, bookmark);
-			j++;
+		if(bca.isShardWorker()) {
+			final int shard = bca.getShard(), shards = bca.getShards();
+			final File file = CoOccurrenceShard.file(bca.getShardDirectoryFile(), shard, shards);
+			try {
+				CoOccurrenceShard.write(file, CoOccurrenceStore.settings(bca), contextVectors, bookmarks,
+						shardStart(shard, shards), shardStart(shard + 1, shards), I, J, C);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not write co-occurrence shard " + file, e);
+			}
+			logger.info("Wrote co-occurrence shard " + file);
+		} else if(config.getBca().usingStore() && !bca.usingAlphas()) {
+			try {
+				CoOccurrenceStore.write(config.getBca().getStoreFile(), CoOccurrenceStore.settings(config.getBca()),
+						graph, focus2context, I, J, C);
+				logger.info("Wrote co-occurrence store " + config.getBca().getStoreFile());
+			} catch (IOException e) {
+				logger.error("Could not write co-occurrence store " + config.getBca().getStoreFile(), e);
+			}
+		}
 
-			completionService.submit(new UndirectedWeighted(
-					graph, bookmark,
-					alpha, epsilon,
-					vertexNeighborhoods, edgeNeighborhoods));
+		if(bca.isSymmetric() && !bca.isShardWorker()) {
+			final SymmetricCoOccurrences symmetric = new SymmetricCoOccurrences(I, J, C, context2focus, focus2context);
+			logger.info(String.format("Merged co-occurrences between output nodes into %d symmetric entries, %d entries instead of %d",
+					symmetric.symmetricCount(), symmetric.focus().length, I.length));
+			I = symmetric.focus();
+			J = symmetric.context();
+			C = symmetric.values();
+			this.symmetricCount = symmetric.symmetricCount();
+		} else {
+			this.symmetricCount = 0;
 		}
 
-		try(ProgressBar pb = Configuration.progressBar("BCA", notSkipped, "nodes")) {
+		this.coOccurrenceCount = I.length;
+		this.coOccurrenceIdx_I = I;
+		this.coOccurrenceIdx_J = J;
+		this.coOccurrenceValues = C;
 
-			//now retrieve the futures after computation (auto wait for it)
-			int received = 0;
+		permutation = new Permutation(coOccurrenceCount);
+	}
 
-			while(received < notSkipped) {
+	/**
+	 * Compute the coloring vectors of the bookmarks in this process, or only those of its shard if it is a worker
+	 * @return The buffers of all worker threads
+	 */
+	private List<CoOccurrenceBuffer> compute(Configuration config, GraphDelta delta, int[] bookmarks) {
 
-				try {
+		final int numThreads = config.getThreads();
 
-					final BCV bcv = completionService.take().get().toUnity();
+		final ExecutorService es = Executors.newWorkStealingPool(numThreads);
 
-					// It is possible to use this maximum value in GloVe, although in the
-					// literature they set this value to 100 and leave it at that
-					setMax(bcv.max());
+		final Adjacency adjacency = createAdjacency(config, graph);
+
+		final List<PaintFrontier> frontiers = Collections.synchronizedList(new ArrayList<>());
+		final HubCache hubs = createHubCache(config.getBca(), adjacency, frontiers);
+		final IntFunction<BCAJob> jobs = createJobs(config.getBca(), adjacency, frontiers, hubs);
+		final List<BlockFrontier> blockFrontiers = Collections.synchronizedList(new ArrayList<>());
+		final Function<int[], BCABlockJob> blockJobs = createBlockJobs(config.getBca(), adjacency, blockFrontiers);
+		final IntFunction<BCABlockJob> alphaJobs = createAlphaJobs(config.getBca(), adjacency, blockFrontiers);
+		final int blockSize = config.getBca().getBlockSize();
+		final IntFunction<ForwardPush> refineJobs = alphaJobs == null && !config.getBca().isShardWorker()
+				? createRefineJobs(config.getBca(), adjacency, frontiers)
+				: null;
+
+		// Every worker thread writes its co-occurrences into its own buffer
+		final List<CoOccurrenceBuffer> buffers = Collections.synchronizedList(new ArrayList<>());
+		final ThreadLocal<CoOccurrenceBuffer> workerBuffers = ThreadLocal.withInitial(() -> {
+			final CoOccurrenceBuffer buffer = new CoOccurrenceBuffer();
+			buffers.add(buffer);
+			return buffer;
+		});
+		// With multiple alphas every worker thread has a buffer per alpha
+		final int numAlphas = alphaJobs == null ? 0 : config.getBca().getAlphas().size();
+		if(alphaJobs != null) {
+			alphaBuffers = new ArrayList<>(numAlphas);
+			for(int a = 0; a < numAlphas; a++) alphaBuffers.add(Collections.synchronizedList(new ArrayList<>()));
+		}
+		final ThreadLocal<CoOccurrenceBuffer[]> workerAlphaBuffers = ThreadLocal.withInitial(() -> {
+			final CoOccurrenceBuffer[] alphaBuffer = new CoOccurrenceBuffer[numAlphas];
+			for(int a = 0; a < numAlphas; a++) {
+				alphaBuffer[a] = new CoOccurrenceBuffer();
+				alphaBuffers.get(a).add(alphaBuffer[a]);
+			}
+			return alphaBuffer;
+		});
+		// When refining, every worker thread also keeps the state of forward push
+		final List<CoOccurrenceBuffer> estimateBuffers = Collections.synchronizedList(new ArrayList<>());
+		final List<CoOccurrenceBuffer> residualBuffers = Collections.synchronizedList(new ArrayList<>());
+		final ThreadLocal<CoOccurrenceBuffer> workerEstimates = ThreadLocal.withInitial(() -> {
+			final CoOccurrenceBuffer buffer = new CoOccurrenceBuffer();
+			estimateBuffers.add(buffer);
+			return buffer;
+		});
+		final ThreadLocal<CoOccurrenceBuffer> workerResiduals = ThreadLocal.withInitial(() -> {
+			final CoOccurrenceBuffer buffer = new CoOccurrenceBuffer();
+			residualBuffers.add(buffer);
+			return buffer;
+		});
+
+		int[] order;
+		if(config.getBca().isShardWorker()) {
+			final int shard = config.getBca().getShard(), shards = config.getBca().getShards();
+			order = range(shardStart(shard, shards), shardStart(shard + 1, shards));
+		} else if(delta != null && refineJobs != null) {
+			logger.warn("Incremental BCA is not supported together with the residual store, all bookmarks are recomputed");
+			order = identity(focusVectors);
+		} else if(delta != null && !hasPaintRadius(config.getBca())) {
+			logger.warn("Incremental BCA only reuses stored vectors of the " + Configuration.BCAEngine.UNDIRECTED_WEIGHTED
+					+ " engine without two levels, hubs or top-k selection, all bookmarks are recomputed");
+			order = identity(focusVectors);
+		} else if(delta != null) {
+			order = reuseStored(delta, adjacency, config.getBca(), workerBuffers.get());
+		} else {
+			order = identity(focusVectors);
+		}
+		if(config.getBca().getScheduleEnum() == Configuration.BCASchedule.COST) {
+			order = BookmarkScheduler.schedule(adjacency, bookmarks, order);
+		}
+		final int toCompute = order.length;
+		// The time it takes to finish the last 1% of the bookmarks shows how well the load is balanced
+		final int tailStart = toCompute - Math.max(1, toCompute / 100);
+		long tailStartTime = 0;
+
+		final int batchSize = blockJobs == null
+				? batchSize(config, toCompute, numThreads)
+				// Batches hold whole blocks, so only the last block of the order can be smaller
+				: (batchSize(config, toCompute, numThreads) + blockSize - 1) / blockSize * blockSize;
+		final int numBatches = (toCompute + batchSize - 1) / batchSize;
+		final int maxInFlight = numThreads * BATCHES_IN_FLIGHT_PER_THREAD;
+		final int topK = config.getBca().getTopK();
+		final boolean renormalize = config.getBca().isRenormalize();
+		if(config.getBca().usingBudget() && refineJobs == null) {
+			// Only the jobs for a single bookmark and alpha stop when the budget runs out
+			if(alphaJobs != null) logger.warn("The work budget is not used together with multiple alphas");
+			else if(blockJobs != null || config.getBca().getEngineEnum() == Configuration.BCAEngine.MONTE_CARLO) {
+				logger.warn("The work budget is not used by the " + config.getBca().getEngineEnum() + " engine");
+			} else budgetOutcomes = new WorkBudget.Outcome[focusVectors];
+		}
 
-					for (Entry<Integer, Float> bcr : bcv.entrySet()) {
-						coOccurrenceIdx_I.add(bcv.getRootNode());
-						coOccurrenceIdx_J.add(bcr.getKey());
-						coOccurrenceValues.add(bcr.getValue());
-					}
+		final CompletionService<Integer> completionService = new ExecutorCompletionService<>(es);
+		final long start = System.nanoTime();
 
-					coOccurrenceCount += bcv.size();
+		if(hubs != null) {
+			try {
+				hubs.precompute(es);
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
 
+		try(ProgressBar pb = Configuration.progressBar("BCA", toCompute, "nodes", config.isQuiet())) {
+
+			int submitted = 0, received = 0, finished = 0;
+
+			while(received < numBatches) {
+
+				// Only a bounded number of batches is in flight, so the number of pending
+				// tasks does not grow with the number of bookmarks
+				while(submitted < numBatches && submitted - received < maxInFlight) {
+					final int from = submitted * batchSize;
+					final int until = Math.min(from + batchSize, toCompute);
+					if(alphaJobs != null) {
+						completionService.submit(new BCAAlphaBatch(bookmarks, order, from, until, alphaJobs, workerAlphaBuffers, topK, renormalize));
+					} else if(refineJobs != null) {
+						completionService.submit(new BCARefineBatch(order, from, until, refineJobs, workerBuffers, workerEstimates, workerResiduals, topK, renormalize));
+					} else if(blockJobs != null) {
+						completionService.submit(new BCABlockBatch(bookmarks, order, from, until, blockJobs, blockSize, workerBuffers, topK, renormalize));
+					} else {
+						completionService.submit(new BCABatch(bookmarks, order, from, until, jobs, workerBuffers, topK, renormalize, budgetOutcomes));
+					}
+					submitted++;
+				}
+
+				try {
+					final int done = completionService.take().get();
+					if(finished < tailStart && finished + done >= tailStart) tailStartTime = System.nanoTime();
+					finished += done;
+					pb.stepBy(done);
 				} catch (InterruptedException | ExecutionException e) {
 					e.printStackTrace();
 				} finally {
 					received ++;
-					pb.step();
 				}
 			}
 
@@ -109,7 +324,498 @@ public class BookmarkColoring implements CoOccurrenceMatrix {
 			es.shutdown();
 		}
 
-		permutation = new Permutation(coOccurrenceCount);
+		final long end = System.nanoTime();
+		this.bcaSeconds = (end - start) / 1e9;
+		this.tailSeconds = tailStartTime == 0 ? 0 : (end - tailStartTime) / 1e9;
+
+		long pops = 0;
+		for (PaintFrontier frontier : frontiers) pops += frontier.pops();
+		for (BlockFrontier frontier : blockFrontiers) pops += frontier.pops();
+		// A spliced hub does not spread its paint
+		if(hubs != null) pops -= hubs.splices();
+		logger.info(String.format("BCA spread paint from %d nodes (%.1f per bookmark) in %.1f seconds, the last 1%% of the bookmarks took %.2f seconds",
+				pops, pops / (double) Math.max(1, toCompute), bcaSeconds, tailSeconds));
+		if(hubs != null) logger.info("Hub cache: " + hubs.statistics());
+		if(budgetOutcomes != null) logBudgetOutcomes();
+		if(refineJobs != null) writeResiduals(config.getBca(), estimateBuffers, residualBuffers);
+
+		// With multiple alphas this instance holds the co-occurrences of the first
+		final List<CoOccurrenceBuffer> result = alphaBuffers == null ? buffers : alphaBuffers.get(0);
+
+		double keptMass = 0, discardedMass = 0;
+		for (CoOccurrenceBuffer buffer : result) {
+			keptMass += buffer.keptMass();
+			discardedMass += buffer.discardedMass();
+		}
+
+		if (config.getBca().usingTopK()) {
+			logger.info(String.format("Top-%d selection discarded %.2f%% of the paint (%.4f per bookmark)",
+					topK, 100 * discardedMass / (keptMass + discardedMass), discardedMass / Math.max(1, toCompute)));
+		}
+
+		return result;
+	}
+
+	/**
+	 * The co-occurrences of one of the configured alphas, which were computed in the same traversal as those of this
+	 * instance. The buffers of the alpha are released, so each alpha can be taken once.
+	 * @param config The configuration of the alpha, see {@link Configuration#forAlpha(double)}
+	 * @param a The index of the alpha in {@link Configuration.BCA#getAlphas()}, 0 is this instance
+	 */
+	public BookmarkColoring forAlpha(Configuration config, int a) {
+		if(a == 0) return this;
+
+		final List<CoOccurrenceBuffer> buffers = alphaBuffers.get(a);
+		alphaBuffers.set(a, null);
+		final BookmarkColoring coloring = new BookmarkColoring(graph, config, null, buffers);
+		coloring.bcaSeconds = bcaSeconds;
+		return coloring;
+	}
+
+	/**
+	 * Start one worker process per shard, wait for all of them and merge the shards they wrote. Every worker loads
+	 * the configuration and graph itself and computes a contiguous range of focus indices.
+	 * @return One buffer per shard
+	 */
+	private List<CoOccurrenceBuffer> computeShards(Configuration config, int[] bookmarks) throws IOException, InterruptedException {
+
+		final Configuration.BCA bca = config.getBca();
+		final int shards = bca.getShards();
+		final File directory = bca.getShardDirectoryFile();
+		if(config.getSourceFile() == null) throw new IOException("The configuration was not loaded from a file");
+		if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create shard directory " + directory);
+
+		// Memory and system property settings of this JVM are passed on, debugging agents are not
+		final List<String> jvmArguments = new ArrayList<>();
+		for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if(argument.startsWith("-X") && !argument.startsWith("-Xdebug") && !argument.startsWith("-Xrunjdwp")
+					|| argument.startsWith("-D")) jvmArguments.add(argument);
+		}
+
+		final long start = System.nanoTime();
+		final Process[] workers = new Process[shards];
+		for(int shard = 0; shard < shards; shard++) {
+			Files.deleteIfExists(CoOccurrenceShard.file(directory, shard, shards).toPath());
+
+			final List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(jvmArguments);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(BCAShardWorker.class.getName());
+			command.add("-c");
+			command.add(config.getSourceFile().getAbsolutePath());
+			command.add("-shard");
+			command.add(String.valueOf(shard));
+			workers[shard] = new ProcessBuilder(command).inheritIO().start();
+		}
+		logger.info("Started " + shards + " BCA worker processes, writing shards to " + directory);
+
+		try {
+			for(int shard = 0; shard < shards; shard++) {
+				final int exitCode = workers[shard].waitFor();
+				if(exitCode != 0) throw new IOException("BCA worker " + shard + " exited with code " + exitCode);
+			}
+		} finally {
+			for(Process worker : workers) worker.destroy();
+		}
+
+		final String settings = CoOccurrenceStore.settings(bca);
+		final List<CoOccurrenceBuffer> buffers = new ArrayList<>(shards);
+		for(int shard = 0; shard < shards; shard++) {
+			final File file = CoOccurrenceShard.file(directory, shard, shards);
+			final CoOccurrenceBuffer buffer = new CoOccurrenceBuffer();
+			CoOccurrenceShard.read(file, settings, contextVectors, bookmarks,
+					shardStart(shard, shards), shardStart(shard + 1, shards), buffer);
+			buffers.add(buffer);
+			Files.delete(file.toPath());
+		}
+
+		this.bcaSeconds = (System.nanoTime() - start) / 1e9;
+		logger.info(String.format("Merged %d BCA shards in %.1f seconds", shards, bcaSeconds));
+		return buffers;
+	}
+
+	/**
+	 * @return The first focus index of a shard, shards differ at most one bookmark in size
+	 */
+	private int shardStart(int shard, int shards) {
+		return (int) ((long) focusVectors * shard / shards);
+	}
+
+	/**
+	 * Copy the stored vectors of all bookmarks that cannot be affected by the delta. Paint decays by a factor
+	 * (1 - alpha) with every hop and is dropped below epsilon, so a bookmark further than
+	 * {@link Configuration.BCA#getPaintRadius()} hops from every endpoint of a changed triple keeps the same vector. Bookmarks
+	 * that are new, and bookmarks whose stored vector contains a vertex that no longer exists, are recomputed as well.
+	 * When a literal with possible similarity edges no longer exists, all bookmarks are recomputed.
+	 * @param reused The buffer the stored vectors are copied into
+	 * @return The focus indices of the bookmarks that have to be recomputed
+	 */
+	private int[] reuseStored(GraphDelta delta, Adjacency adjacency, Configuration.BCA bca, CoOccurrenceBuffer reused) {
+
+		final CoOccurrenceStore store;
+		try {
+			store = CoOccurrenceStore.read(bca.getStoreFile());
+		} catch (IOException e) {
+			logger.warn("Could not read co-occurrence store, all bookmarks are recomputed", e);
+			return identity(focusVectors);
+		}
+		if(!store.settings().equals(CoOccurrenceStore.settings(bca))) {
+			logger.warn("Co-occurrence store was created with different settings (" + store.settings() + "), all bookmarks are recomputed");
+			return identity(focusVectors);
+		}
+
+		// Vertex ids are not stable between conversions, so vertices are matched by their key
+		final Map<String, Integer> vertexIds = new HashMap<>();
+		for(int v = 0; v < contextVectors; v++) vertexIds.put(graph.getVertexKey(v), v);
+		final int[] storedToVertex = new int[store.keyCount()];
+		for(int k = 0; k < storedToVertex.length; k++) storedToVertex[k] = vertexIds.getOrDefault(store.key(k), -1);
+
+		// The similar literals of a literal that no longer exists lost an edge, but they are not in the delta
+		for(String literal : delta.getRemovedLiterals()) {
+			if(!vertexIds.containsKey(literal)) {
+				logger.warn("The graph delta removes literal " + literal + ", whose similar literals are not known, all bookmarks are recomputed");
+				return identity(focusVectors);
+			}
+		}
+
+		final int[] seeds = delta.getEndpoints().stream().map(vertexIds::get).filter(Objects::nonNull).mapToInt(i -> i).toArray();
+		final int radius = bca.getPaintRadius();
+		final boolean[] affected = withinHops(adjacency, seeds, radius);
+
+		final boolean[] done = new boolean[focusVectors];
+		int reusedRows = 0;
+		rows:
+		for(int r = 0; r < store.rows(); r++) {
+			final int bookmark = storedToVertex[store.bookmark(r)];
+			if(bookmark == -1 || affected[bookmark]) continue;
+			final int focus = context2focus[bookmark];
+			if(focus == -1) continue;
+
+			for(int i = store.rowStart(r); i < store.rowEnd(r); i++) {
+				if(storedToVertex[store.context(i)] == -1) continue rows;
+			}
+			for(int i = store.rowStart(r); i < store.rowEnd(r); i++) {
+				reused.add(focus, storedToVertex[store.context(i)], store.value(i));
+				reused.updateMax(store.value(i));
+			}
+			done[focus] = true;
+			reusedRows++;
+		}
+
+		final int[] order = new int[focusVectors - reusedRows];
+		for(int f = 0, n = 0; f < focusVectors; f++) {
+			if(!done[f]) order[n++] = f;
+		}
+
+		logger.info(String.format("Incremental BCA: %d endpoints within a radius of %d hops, reusing %d and recomputing %d of %d bookmarks",
+				seeds.length, radius, reusedRows, order.length, focusVectors));
+		return order;
+	}
+
+	/**
+	 * Only the vectors of the default engine without two levels or hubs are unaffected by changes further away than
+	 * the paint radius (see {@link Configuration.BCA#boundedByPaintRadius()}). Top-k selection can also drop an entry
+	 * that grows above others after a change.
+	 * @return Whether stored vectors can be reused based on their distance to the changes
+	 */
+	private static boolean hasPaintRadius(Configuration.BCA bca) {
+		return bca.boundedByPaintRadius() && !bca.usingTopK();
+	}
+
+	/**
+	 * Breadth first search from all seeds at once, stopping after the given number of hops
+	 * @return For each vertex whether it can be reached from a seed
+	 */
+	private static boolean[] withinHops(Adjacency adjacency, int[] seeds, int radius) {
+		final boolean[] reached = new boolean[adjacency.vertexCount()];
+		final int[] queue = new int[reached.length];
+		int head = 0, tail = 0;
+
+		for(int seed : seeds) {
+			if(!reached[seed]) {
+				reached[seed] = true;
+				queue[tail++] = seed;
+			}
+		}
+
+		final Adjacency.Cursor cursor = adjacency.cursor();
+		for(int hop = 0; hop < radius && head < tail; hop++) {
+			final int levelEnd = tail;
+			while(head < levelEnd) {
+				cursor.reset(queue[head++]);
+				while(cursor.next()) {
+					final int neighbor = cursor.neighbor();
+					if(!reached[neighbor]) {
+						reached[neighbor] = true;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	private static int[] identity(int length) {
+		return range(0, length);
+	}
+
+	private static int[] range(int from, int to) {
+		final int[] order = new int[to - from];
+		for(int i = 0; i < order.length; i++) order[i] = from + i;
+		return order;
+	}
+
+	/**
+	 * Every worker thread gets its own frontier, which is reused for all bookmarks it processes
+	 * @param frontiers Every frontier that is created is added to this list
+	 * @param hubs The hub cache used by the undirected weighted engine, may be null
+	 */
+	public static IntFunction<BCAJob> createJobs(Configuration.BCA bca, Adjacency adjacency, List<PaintFrontier> frontiers, HubCache hubs) {
+
+		final double alpha = bca.getAlpha();
+		final double epsilon = bca.getEpsilon();
+		final int numVertices = adjacency.vertexCount();
+		final Configuration.BCAOrdering ordering = bca.getOrderingEnum();
+		final WorkBudget budget = createBudget(bca);
+
+		switch (bca.getEngineEnum()) {
+			default:
+				throw new IllegalArgumentException("Invalid BCA engine");
+			case UNDIRECTED_WEIGHTED: {
+				final ThreadLocal<PaintFrontier> local = frontiers(ordering == null ? Configuration.BCAOrdering.NODE_ID : ordering, numVertices, frontiers);
+				if(bca.isTwoLevel()) {
+					final Coarsening coarsening = createCoarsening(bca, adjacency);
+					final int hops = bca.getNearHops();
+					final ThreadLocal<NearField> near = ThreadLocal.withInitial(() -> new NearField(numVertices));
+					final ThreadLocal<PaintFrontier> coarse = frontiers(Configuration.BCAOrdering.FIFO, coarsening.clusterCount(), frontiers);
+					return bookmark -> new TwoLevel(adjacency, bookmark, alpha, epsilon, local, coarsening, hops, near, coarse).withBudget(budget);
+				}
+				final AliasTables aliases = createAliasTables(bca, adjacency);
+				return bookmark -> new UndirectedWeighted(adjacency, bookmark, alpha, epsilon, local, hubs, aliases).withBudget(budget);
+			}
+			case FORWARD_PUSH: {
+				final ThreadLocal<PaintFrontier> local = frontiers(ordering == null ? Configuration.BCAOrdering.FIFO : ordering, numVertices, frontiers);
+				return bookmark -> new ForwardPush(adjacency, bookmark, alpha, epsilon, local).withBudget(budget);
+			}
+			case BLOCK_PUSH: {
+				// A block of one bookmark is processed exactly like forward push
+				final ThreadLocal<PaintFrontier> local = frontiers(Configuration.BCAOrdering.FIFO, numVertices, frontiers);
+				return bookmark -> new ForwardPush(adjacency, bookmark, alpha, epsilon, local).withBudget(budget);
+			}
+			case MONTE_CARLO: {
+				final int walks = bca.getWalks();
+				final double tolerance = bca.getWalkTolerance();
+				// Walks only use the frontier to count hits, so the ordering does not matter
+				final ThreadLocal<PaintFrontier> local = frontiers(Configuration.BCAOrdering.FIFO, numVertices, frontiers);
+				return bookmark -> new MonteCarlo(adjacency, bookmark, alpha, walks, tolerance, local);
+			}
+		}
+	}
+
+	/**
+	 * The Monte Carlo engine is already bounded by the number of walks and does not use the budget, neither do the
+	 * jobs for a block of bookmarks or for multiple alphas
+	 */
+	private static WorkBudget createBudget(Configuration.BCA bca) {
+		if(!bca.usingBudget()) return WorkBudget.UNLIMITED;
+		return new WorkBudget(bca.getBudgetTouched(), bca.getBudgetPushes(), bca.getBudgetNanos(),
+				bca.getBudgetLeftoverEnum() == Configuration.BCALeftover.REDISTRIBUTE);
+	}
+
+	private void logBudgetOutcomes() {
+		final int[] counts = new int[WorkBudget.Outcome.values().length];
+		for(WorkBudget.Outcome outcome : budgetOutcomes) {
+			if(outcome != null) counts[outcome.ordinal()]++;
+		}
+		logger.info(String.format("Work budget ran out for %d bookmarks, the waiting paint of %d was kept and of %d was dropped",
+				counts[WorkBudget.Outcome.REDISTRIBUTED.ordinal()] + counts[WorkBudget.Outcome.DROPPED.ordinal()],
+				counts[WorkBudget.Outcome.REDISTRIBUTED.ordinal()], counts[WorkBudget.Outcome.DROPPED.ordinal()]));
+	}
+
+	/**
+	 * Every worker thread gets its own block frontier with one lane per alpha
+	 * @param frontiers Every frontier that is created is added to this list
+	 * @return Creates the job for a bookmark that computes its coloring vector for every alpha, or null if only one
+	 * alpha is used
+	 */
+	public static IntFunction<BCABlockJob> createAlphaJobs(Configuration.BCA bca, Adjacency adjacency, List<BlockFrontier> frontiers) {
+		if(!bca.usingAlphas()) return null;
+		if(bca.getEngineEnum() != Configuration.BCAEngine.FORWARD_PUSH) {
+			logger.info("Multiple alphas are computed with forward push instead of " + bca.getEngineEnum());
+		}
+
+		final double[] alphas = bca.getAlphas().stream().mapToDouble(Double::doubleValue).toArray();
+		final double epsilon = bca.getEpsilon();
+		final ThreadLocal<BlockFrontier> threadFrontiers = ThreadLocal.withInitial(() -> {
+			final BlockFrontier frontier = new BlockFrontier(adjacency, alphas.length, epsilon);
+			frontiers.add(frontier);
+			return frontier;
+		});
+
+		return bookmark -> {
+			final int[] lanes = new int[alphas.length];
+			Arrays.fill(lanes, bookmark);
+			return new BlockPush(adjacency, lanes, alphas, epsilon, threadFrontiers);
+		};
+	}
+
+	/**
+	 * Continue forward push from the estimates and residuals in the residual store, for the bookmarks whose state was
+	 * stored with a larger epsilon. Other bookmarks start from scratch. Work budgets are not used, since a bookmark
+	 * that stops early has no valid state to continue from.
+	 * @return Creates the job for a focus index, or null if no residual store is used
+	 */
+	private IntFunction<ForwardPush> createRefineJobs(Configuration.BCA bca, Adjacency adjacency, List<PaintFrontier> frontiers) {
+		if(!bca.usingResiduals()) return null;
+		if(bca.getEngineEnum() != Configuration.BCAEngine.FORWARD_PUSH) {
+			logger.warn("The residual store can only be used with forward push, not with " + bca.getEngineEnum());
+			return null;
+		}
+		if(bca.usingBudget()) logger.warn("The work budget is not used together with the residual store");
+
+		final File file = bca.getResidualsFile();
+		ResidualStore store = null;
+		if(file.exists()) {
+			try {
+				store = ResidualStore.read(file, ResidualStore.settings(bca), bca.getEpsilon(), graph, context2focus, focusVectors);
+			} catch (IOException e) {
+				logger.warn("Could not use residual store " + file + ", all bookmarks start from scratch", e);
+			}
+		}
+
+		int resumed = 0;
+		if(store != null) {
+			for(int i = 0; i < focusVectors; i++) if(store.has(i)) resumed++;
+			logger.info(String.format("Refining %d of %d bookmarks from epsilon %s to %s",
+					resumed, focusVectors, store.epsilon(), bca.getEpsilon()));
+		}
+
+		final double alpha = bca.getAlpha();
+		final double epsilon = bca.getEpsilon();
+		final ThreadLocal<PaintFrontier> local = frontiers(Configuration.BCAOrdering.FIFO, adjacency.vertexCount(), frontiers);
+		final ResidualStore resume = store;
+		return i -> {
+			final int bookmark = focus2context[i];
+			final ForwardPush job = new ForwardPush(adjacency, bookmark, alpha, epsilon, local).keepResiduals();
+			return resume != null && resume.has(i) ? job.resume(resume.estimates(i, bookmark), resume.residuals(i, bookmark)) : job;
+		};
+	}
+
+	/**
+	 * Write the state of forward push for all bookmarks to the residual store
+	 */
+	private void writeResiduals(Configuration.BCA bca, List<CoOccurrenceBuffer> estimates, List<CoOccurrenceBuffer> residuals) {
+		try {
+			ResidualStore.write(bca.getResidualsFile(), ResidualStore.settings(bca), bca.getEpsilon(), graph, focus2context,
+					drain(estimates), drain(residuals));
+			logger.info("Wrote residual store " + bca.getResidualsFile());
+		} catch (IOException e) {
+			logger.error("Could not write residual store " + bca.getResidualsFile(), e);
+		}
+	}
+
+	private static ResidualStore.Columns drain(List<CoOccurrenceBuffer> buffers) {
+		long size = 0;
+		for(CoOccurrenceBuffer buffer : buffers) size += buffer.size();
+		final int[] focus = new int[Math.toIntExact(size)];
+		final int[] nodes = new int[focus.length];
+		final float[] values = new float[focus.length];
+		int offset = 0;
+		for(CoOccurrenceBuffer buffer : buffers) offset = buffer.drainInto(focus, nodes, values, offset);
+		return new ResidualStore.Columns(focus, nodes, values);
+	}
+
+	/**
+	 * @return The neighborhoods of the graph, compressed if so configured
+	 */
+	public static Adjacency createAdjacency(Configuration config, InMemoryRdfGraph graph) {
+		if(!config.getBca().isCompressAdjacency()) return new CSRAlgorithm(config).compute(graph);
+
+		final CompressedAdjacency adjacency = new CompressedAlgorithm(config).compute(graph);
+		logger.info(String.format("Compressed %d edge endpoints into %d bytes (%.2f bytes each)",
+				adjacency.edgeCount(), adjacency.bytes(), adjacency.bytes() / (double) Math.max(1, adjacency.edgeCount())));
+		return adjacency;
+	}
+
+	private static Coarsening createCoarsening(Configuration.BCA bca, Adjacency adjacency) {
+		final Coarsening coarsening = new Coarsening(adjacency, bca.getClusterSize(), bca.getClusterIterations());
+		logger.info(String.format("Paint further than %d hops from a bookmark is spread over %d clusters with %d edges",
+				bca.getNearHops(), coarsening.clusterCount(), coarsening.coarse().edgeCount() / 2));
+		return coarsening;
+	}
+
+	/**
+	 * @return Alias tables for the nodes with a degree above the configured threshold, or null if all nodes are expanded
+	 */
+	private static AliasTables createAliasTables(Configuration.BCA bca, Adjacency adjacency) {
+		if(!bca.usingAliasTables()) return null;
+
+		final AliasTables aliases = new AliasTables(adjacency, bca.getAliasDegree(), bca.getAliasSamples());
+		logger.info(String.format("Paint of %d nodes with a degree of at least %d is sent to %d sampled neighbors",
+				aliases.count(), bca.getAliasDegree(), bca.getAliasSamples()));
+		return aliases;
+	}
+
+	/**
+	 * Every worker thread gets its own block frontier, which is reused for all blocks it processes
+	 * @param frontiers Every frontier that is created is added to this list
+	 * @return Creates the job for a block of bookmarks, or null if the engine computes one bookmark at a time
+	 */
+	public static Function<int[], BCABlockJob> createBlockJobs(Configuration.BCA bca, Adjacency adjacency, List<BlockFrontier> frontiers) {
+		if(bca.getEngineEnum() != Configuration.BCAEngine.BLOCK_PUSH) return null;
+
+		final double alpha = bca.getAlpha();
+		final double epsilon = bca.getEpsilon();
+		final int lanes = bca.getBlockSize();
+		final ThreadLocal<BlockFrontier> local = ThreadLocal.withInitial(() -> {
+			final BlockFrontier frontier = new BlockFrontier(adjacency, lanes, epsilon);
+			frontiers.add(frontier);
+			return frontier;
+		});
+		return block -> new BlockPush(adjacency, block, alpha, epsilon, local);
+	}
+
+	/**
+	 * @return A cache for the vectors of the highest degree nodes, or null if hubs are not used by this engine
+	 */
+	public static HubCache createHubCache(Configuration.BCA bca, Adjacency adjacency, List<PaintFrontier> frontiers) {
+		if(!bca.usingHubs() || bca.getEngineEnum() != Configuration.BCAEngine.UNDIRECTED_WEIGHTED) return null;
+		// The alpha jobs do not use hubs, whose vectors would be computed with only one alpha
+		if(bca.usingAlphas()) return null;
+		// The two-level jobs do not use hubs either, the cache would only take time and memory
+		if(bca.isTwoLevel()) return null;
+
+		final double alpha = bca.getAlpha();
+		final double epsilon = bca.getEpsilon();
+		// Hub vectors are computed while the job that needs it is still using the frontier of its thread
+		final ThreadLocal<PaintFrontier> local = frontiers(Configuration.BCAOrdering.NODE_ID, adjacency.vertexCount(), frontiers);
+		return new HubCache(adjacency, bca.getHubs(), bca.getHubCacheSize() * 1_000_000L,
+				hub -> new UndirectedWeighted(adjacency, hub, alpha, epsilon, local));
+	}
+
+	private static ThreadLocal<PaintFrontier> frontiers(Configuration.BCAOrdering ordering, int numVertices, List<PaintFrontier> frontiers) {
+		return ThreadLocal.withInitial(() -> {
+			final PaintFrontier frontier;
+			switch (ordering) {
+				default:
+				case NODE_ID: frontier = new NodeOrderFrontier(numVertices); break;
+				case FIFO: frontier = new FifoFrontier(numVertices); break;
+				case PAINT: frontier = new PaintPriorityFrontier(numVertices); break;
+			}
+			frontiers.add(frontier);
+			return frontier;
+		});
+	}
+
+	/**
+	 * Use the configured batch size, or otherwise divide the bookmarks over a number of batches per thread
+	 */
+	private static int batchSize(Configuration config, int bookmarks, int numThreads) {
+		final int configured = config.getBca().getBatchSize();
+		if (configured > 0) return configured;
+		return Math.max(1, Math.min(MAX_BATCH_SIZE, bookmarks / (numThreads * BATCHES_PER_THREAD)));
 	}
 
 	@Override
@@ -118,15 +824,20 @@ public class BookmarkColoring implements CoOccurrenceMatrix {
 	}
 	
 	public int cIdx_I(int i) {
-		return contextIndex2Focus(coOccurrenceIdx_I.get(permutation.randomAccess(i)));
+		return this.coOccurrenceIdx_I[permutation.randomAccess(i)];
 	}
 	
 	public int cIdx_J(int j) {
-		return this.coOccurrenceIdx_J.get(permutation.randomAccess(j));
+		return this.coOccurrenceIdx_J[permutation.randomAccess(j)];
 	}
 	
 	public float cIdx_C(int i) {
-		return this.coOccurrenceValues.get(permutation.randomAccess(i));
+		return this.coOccurrenceValues[permutation.randomAccess(i)];
+	}
+
+	@Override
+	public boolean isSymmetric(int i) {
+		return permutation.randomAccess(i) < symmetricCount;
 	}
 	
 	public byte getType(int index) {
@@ -137,6 +848,33 @@ public class BookmarkColoring implements CoOccurrenceMatrix {
 		return this.coOccurrenceCount;
 	}
 
+	/**
+	 * The co-occurrences in the order they are stored in, without the shuffle. Entries below
+	 * {@link #symmetricCount()} are symmetric.
+	 */
+	int[] focusColumn() {
+		return coOccurrenceIdx_I;
+	}
+
+	int[] contextColumn() {
+		return coOccurrenceIdx_J;
+	}
+
+	float[] valueColumn() {
+		return coOccurrenceValues;
+	}
+
+	int symmetricCount() {
+		return symmetricCount;
+	}
+
+	/**
+	 * @return A copy of the vertex of each focus index
+	 */
+	int[] focus2context() {
+		return focus2context.clone();
+	}
+
 
 	@Override
 	public InMemoryRdfGraph getGraph() {
@@ -145,12 +883,12 @@ public class BookmarkColoring implements CoOccurrenceMatrix {
 
 	@Override
 	public int contextIndex2Focus(int i) {
-		return context2focus.get(i);
+		return context2focus[i];
 	}
 
 	@Override
 	public int focusIndex2Context(int i) {
-		return focus2context.get(i);
+		return focus2context[i];
 	}
 
 	@Override
@@ -173,6 +911,28 @@ public class BookmarkColoring implements CoOccurrenceMatrix {
 		return this.graph.getVertexLabelProperty().getValueAsString(focusIndex2Context(index));
 	}
 	
+	/**
+	 * @return The wall time of the BCA step in seconds
+	 */
+	public double getBcaSeconds() {
+		return bcaSeconds;
+	}
+
+	/**
+	 * @return The wall time in seconds between finishing 99% of the bookmarks and finishing all of them
+	 */
+	public double getTailSeconds() {
+		return tailSeconds;
+	}
+
+	/**
+	 * @return Whether the bookmark with this focus index finished within the work budget, and what happened to its
+	 * waiting paint if it did not. Null if no budget was used or the bookmark was not computed in this run.
+	 */
+	public WorkBudget.Outcome getBudgetOutcome(int focusIndex) {
+		return budgetOutcomes == null ? null : budgetOutcomes[focusIndex];
+	}
+
 	private void setMax(double newMax) {
 		this.max = Math.max(max, newMax);
 	}
@@ -0,0 +1,200 @@
+package org.uu.nl.embedding.bca;
+
+import org.uu.nl.embedding.util.CoOccurrenceMatrix;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.rnd.Permutation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The co-occurrences of the whole graph, made up of those of its work units (see
+ * {@link org.uu.nl.embedding.convert.GraphComponents}). The focus indices of the units follow each other, context
+ * indices are the vertex ids of the whole graph. Only the co-occurrence arrays of the units are kept, keys and types
+ * are read from the whole graph.
+ *
+ * @author Jurian Baas
+ */
+public class PartitionedColoring implements CoOccurrenceMatrix {
+
+	private final InMemoryRdfGraph graph;
+	private final List<Unit> units;
+	/**
+	 * The first focus index and the first co-occurrence of each unit, followed by the totals
+	 */
+	private final int[] focusStart, entryStart;
+	private final int[] context2focus;
+	private final double max;
+
+	/**
+	 * @param graph The whole graph
+	 * @param units The co-occurrences of each unit
+	 */
+	public PartitionedColoring(InMemoryRdfGraph graph, List<Unit> units) {
+
+		this.graph = graph;
+		this.units = units;
+		this.focusStart = new int[units.size() + 1];
+		this.entryStart = new int[units.size() + 1];
+		this.context2focus = new int[graph.getNumberOfVertices()];
+		Arrays.fill(context2focus, -1);
+
+		double max = 0;
+		for (int u = 0; u < units.size(); u++) {
+			final Unit unit = units.get(u);
+			focusStart[u + 1] = focusStart[u] + unit.focus2context.length;
+			entryStart[u + 1] = Math.addExact(entryStart[u], unit.values.length);
+			for (int i = 0; i < unit.focus2context.length; i++) {
+				context2focus[unit.focus2context[i]] = focusStart[u] + i;
+			}
+			max = Math.max(max, unit.max);
+		}
+		this.max = max;
+	}
+
+	/**
+	 * @return The unit that the index belongs to
+	 */
+	private static int unit(int[] start, int index) {
+		final int found = Arrays.binarySearch(start, index);
+		if (found >= 0) {
+			// Skip units without entries
+			int u = found;
+			while (start[u + 1] == index) u++;
+			return u;
+		}
+		return -found - 2;
+	}
+
+	@Override
+	public InMemoryRdfGraph getGraph() {
+		return graph;
+	}
+
+	@Override
+	public int contextIndex2Focus(int i) {
+		return context2focus[i];
+	}
+
+	@Override
+	public int focusIndex2Context(int i) {
+		final int u = unit(focusStart, i);
+		return units.get(u).focus2context[i - focusStart[u]];
+	}
+
+	@Override
+	public int nrOfContextVectors() {
+		return context2focus.length;
+	}
+
+	@Override
+	public int nrOfFocusVectors() {
+		return focusStart[units.size()];
+	}
+
+	@Override
+	public double max() {
+		return max;
+	}
+
+	@Override
+	public String getKey(int index) {
+		return graph.getVertexLabelProperty().getValueAsString(focusIndex2Context(index));
+	}
+
+	@Override
+	public byte getType(int index) {
+		return (byte) graph.getVertexTypeProperty().getValueAsInt(focusIndex2Context(index));
+	}
+
+	@Override
+	public int cIdx_I(int i) {
+		final int u = unit(entryStart, i);
+		final Unit unit = units.get(u);
+		return focusStart[u] + unit.focus[unit.permutation.randomAccess(i - entryStart[u])];
+	}
+
+	@Override
+	public int cIdx_J(int j) {
+		final int u = unit(entryStart, j);
+		final Unit unit = units.get(u);
+		return unit.context[unit.permutation.randomAccess(j - entryStart[u])];
+	}
+
+	@Override
+	public float cIdx_C(int i) {
+		final int u = unit(entryStart, i);
+		final Unit unit = units.get(u);
+		return unit.values[unit.permutation.randomAccess(i - entryStart[u])];
+	}
+
+	@Override
+	public boolean isSymmetric(int i) {
+		final int u = unit(entryStart, i);
+		final Unit unit = units.get(u);
+		return unit.permutation.randomAccess(i - entryStart[u]) < unit.symmetricCount;
+	}
+
+	@Override
+	public int coOccurrenceCount() {
+		return entryStart[units.size()];
+	}
+
+	/**
+	 * Shuffles the co-occurrences within each unit
+	 */
+	@Override
+	public void shuffle() {
+		for (Unit unit : units) unit.permutation.shuffle();
+	}
+
+	/**
+	 * The co-occurrences of one work unit, without its graph. Context indices are the vertex ids of the whole graph,
+	 * focus indices are those of the unit.
+	 */
+	public static class Unit {
+
+		private final int[] focus2context;
+		private final int[] focus, context;
+		private final float[] values;
+		private final int symmetricCount;
+		private final double max;
+		private final Permutation permutation;
+
+		/**
+		 * Takes over the co-occurrence arrays of the coloring, which should not be used afterwards
+		 * @param vertices The vertices of the unit, vertex i of the unit is vertices[i] in the whole graph
+		 */
+		public Unit(BookmarkColoring coloring, int[] vertices) {
+			this(toWhole(vertices, coloring.focus2context()), coloring.focusColumn(),
+					toWhole(vertices, coloring.contextColumn()), coloring.valueColumn(), coloring.symmetricCount(), coloring.max());
+		}
+
+		/**
+		 * @param focus2context The vertex in the whole graph of each focus index of the unit
+		 * @param context The context vertex of each entry, as a vertex id of the whole graph
+		 * @param symmetricCount The entries below this are symmetric
+		 */
+		Unit(int[] focus2context, int[] focus, int[] context, float[] values, int symmetricCount, double max) {
+			this.focus2context = focus2context;
+			this.focus = focus;
+			this.context = context;
+			this.values = values;
+			this.symmetricCount = symmetricCount;
+			this.max = max;
+			this.permutation = new Permutation(values.length);
+		}
+
+		/**
+		 * Replace the vertex ids of the unit with those of the whole graph, in place
+		 */
+		private static int[] toWhole(int[] vertices, int[] ids) {
+			for (int i = 0; i < ids.length; i++) ids[i] = vertices[ids[i]];
+			return ids;
+		}
+
+		public int coOccurrenceCount() {
+			return values.length;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package org.uu.nl.embedding.bca.jobs;
+
+import org.uu.nl.embedding.bca.util.BCABlockJob;
+import org.uu.nl.embedding.bca.util.BCV;
+import org.uu.nl.embedding.bca.util.BlockFrontier;
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.Arrays;
+
+/**
+ * Residual based forward push (see {@link ForwardPush}) for a block of bookmarks at once. The residuals of all
+ * bookmarks form a sparse matrix with one row per touched vertex and one float lane per bookmark. Processing a vertex
+ * pushes every lane whose residual reached epsilon times the degree of the vertex, and adds the shares of all those
+ * lanes to a neighbor while reading its edge once, so the adjacency of a shared neighborhood is read once per block
+ * instead of once per bookmark. Lanes below the threshold keep their residual until it grows large enough.
+ * <p>
+ * Every lane follows the same stopping rule as {@link ForwardPush}, so each coloring vector has the same guarantee.
+ * The vectors can differ slightly from those of {@link ForwardPush}, because the order in which vertices are
+ * processed depends on the other bookmarks in the block. Reading an edge once only helps when the bookmarks of a block
+ * share their neighborhoods. When they do not, every edge costs an extra slot lookup and the engine is slower than
+ * {@link ForwardPush}.
+ * </p>
+ * <p>
+ * Lanes can also have their own alpha. Giving every lane the same bookmark and a different alpha computes the
+ * coloring vectors of one bookmark for several alphas in a single traversal.
+ * </p>
+ * @author Jurian Baas
+ */
+public class BlockPush extends BCABlockJob {
+
+	/**
+	 * The alpha of each lane
+	 */
+	private final double[] alphas;
+
+	public BlockPush(
+			Adjacency adjacency, int[] bookmarks,
+			double alpha, double epsilon,
+			ThreadLocal<BlockFrontier> frontiers) {
+		this(adjacency, bookmarks, filled(bookmarks.length, alpha), epsilon, frontiers);
+	}
+
+	/**
+	 * @param alphas The alpha of each lane, in the same order as the bookmarks
+	 */
+	public BlockPush(
+			Adjacency adjacency, int[] bookmarks,
+			double[] alphas, double epsilon,
+			ThreadLocal<BlockFrontier> frontiers) {
+		super(bookmarks, alphas[0], epsilon, adjacency, frontiers);
+		this.alphas = alphas;
+	}
+
+	private static double[] filled(int length, double alpha) {
+		final double[] alphas = new double[length];
+		Arrays.fill(alphas, alpha);
+		return alphas;
+	}
+
+	@Override
+	protected BCV[] doWork(BlockFrontier block) {
+
+		final int lanes = block.lanes();
+		final int words = block.words();
+		final int count = bookmarks.length;
+		final Adjacency.Cursor neighbors = adjacency.cursor();
+		// The lanes that are pushed from the current vertex, and the share of their residual per unit of weight
+		final int[] active = new int[count];
+		final float[] share = new float[count];
+
+		for (int b = 0; b < count; b++) {
+			final int s = block.slot(bookmarks[b]);
+			if ((block.residuals()[s * lanes + b] += 1) >= block.threshold(s)) block.ready(s, b);
+			block.offer(s);
+		}
+
+		float[] residuals;
+		int focusNode, neighbor, activeCount;
+		double totalWeight;
+
+		while (!block.isEmpty()) {
+
+			final int s = block.pop();
+			focusNode = block.vertex(s);
+			totalWeight = adjacency.totalWeight(focusNode);
+
+			residuals = block.residuals();
+			final float[] estimates = block.estimates();
+			final long[] ready = block.ready();
+			final int row = s * lanes;
+
+			// Keep part of the residual of every lane that reached the threshold as estimate, distribute the rest
+			activeCount = 0;
+			for (int w = 0; w < words; w++) {
+				long bits = ready[s * words + w];
+				ready[s * words + w] = 0;
+				while (bits != 0) {
+					final int b = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					final float residual = residuals[row + b];
+					if (residual <= 0) continue;
+					residuals[row + b] = 0;
+					estimates[row + b] += alphas[b] * residual;
+					active[activeCount] = b;
+					share[activeCount] = (float) ((1 - alphas[b]) * residual / totalWeight);
+					activeCount++;
+				}
+			}
+			if (activeCount == 0 || totalWeight == 0) continue;
+
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
+
+				neighbor = neighbors.neighbor();
+				final float weight = neighbors.weight();
+				final int t = block.slot(neighbor);
+				residuals = block.residuals();
+				final int neighborRow = t * lanes;
+				final float neighborThreshold = block.threshold(t);
+
+				// Only queue a neighbor once the residual of one of its lanes is large enough relative to its degree
+				boolean queue = false;
+				for (int a = 0; a < activeCount; a++) {
+					if ((residuals[neighborRow + active[a]] += share[a] * weight) >= neighborThreshold) {
+						block.ready(t, active[a]);
+						queue = true;
+					}
+				}
+				if (queue) block.offer(t);
+			}
+		}
+
+		final BCV[] bcvs = new BCV[count];
+		for (int b = 0; b < count; b++) bcvs[b] = new BCV(bookmarks[b]);
+
+		final float[] estimates = block.estimates();
+		for (int s = 0; s < block.used(); s++) {
+			final int row = s * lanes;
+			for (int b = 0; b < count; b++) {
+				if (estimates[row + b] > 0) bcvs[b].add(block.vertex(s), estimates[row + b]);
+			}
+		}
+		return bcvs;
+	}
+}
@@ -0,0 +1,130 @@
+package org.uu.nl.embedding.bca.jobs;
+
+import org.uu.nl.embedding.bca.util.BCAJob;
+import org.uu.nl.embedding.bca.util.BCV;
+import org.uu.nl.embedding.bca.util.PaintFrontier;
+import org.uu.nl.embedding.util.Adjacency;
+
+/**
+ * Approximates the coloring vector of a bookmark with residual based forward push (Andersen, Chung and Lang). Every
+ * node holds an estimate and a residual. A node is queued as soon as its residual reaches epsilon times its (weighted)
+ * degree, and processing it keeps alpha of the residual as estimate and spreads the rest over the neighbors. Nodes are
+ * processed in FIFO order. A push of node v removes at least alpha * epsilon * d(v) paint, and there is only one unit
+ * of paint, so the total weight d(v) of all pushed nodes is at most 1 / (alpha * epsilon) no matter how many hubs are
+ * nearby. This bounds the number of pushes by 1 / (alpha * epsilon) only when every pushed node has a total weight of
+ * at least 1. Similarity edges have fractional weights, and a node with total weight d below 1 can be pushed up to
+ * 1 / d times as often.
+ * <p>
+ * When no node is left in the queue every residual r(v) is below epsilon * d(v), which for an undirected graph
+ * guarantees for every node v:
+ * </p>
+ * <pre>
+ *     bcv(v) &lt;= ppr(v) &lt;= bcv(v) + epsilon * d(v)
+ * </pre>
+ * where d(v) is the total weight of the edges of v. Unlike {@link UndirectedWeighted} this engine allows paint to flow
+ * back to where it came from, since the guarantee only holds for a memoryless walk.
+ * <p>
+ * The guarantee does not depend on the order in which residuals are pushed. A job can therefore start from the
+ * estimates and residuals of an earlier run with a larger epsilon (see {@link #resume(BCV, BCV)}), and hand out the
+ * residuals it leaves behind (see {@link #keepResiduals()}) for a later run.
+ * </p>
+ *
+ * @see <a href="https://doi.org/10.1109/FOCS.2006.44">Local Graph Partitioning using PageRank Vectors</a>
+ * @author Jurian Baas
+ */
+public class ForwardPush extends BCAJob {
+
+	private BCV startEstimates, startResiduals;
+	private boolean keepResiduals;
+	private BCV residuals;
+
+	public ForwardPush(
+			Adjacency adjacency, int bookmark,
+			double alpha, double epsilon,
+			ThreadLocal<PaintFrontier> frontiers) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers);
+	}
+
+	/**
+	 * Continue from the state of an earlier run instead of starting with all paint on the bookmark
+	 * @return This job
+	 */
+	public ForwardPush resume(BCV estimates, BCV residuals) {
+		this.startEstimates = estimates;
+		this.startResiduals = residuals;
+		return this;
+	}
+
+	/**
+	 * Keep the residuals that are left when the job is done, see {@link #residuals()}
+	 * @return This job
+	 */
+	public ForwardPush keepResiduals() {
+		this.keepResiduals = true;
+		return this;
+	}
+
+	/**
+	 * @return The paint that was not spread because it stayed below the threshold, if it was kept
+	 */
+	public BCV residuals() {
+		return residuals;
+	}
+
+	@Override
+	protected BCV doWork(PaintFrontier residuals) {
+
+		final BCV bcv = startEstimates == null ? new BCV(bookmark) : startEstimates;
+		final Adjacency.Cursor neighbors = adjacency.cursor();
+
+		if (startResiduals == null) {
+			residuals.add(bookmark, 1);
+			residuals.offer(bookmark);
+		} else {
+			for (int slot = 0; slot < startResiduals.capacity(); slot++) {
+				if (!startResiduals.isUsed(slot)) continue;
+				final int node = startResiduals.keyAt(slot);
+				if (residuals.add(node, startResiduals.valueAt(slot)) >= epsilon * adjacency.totalWeight(node)) {
+					residuals.offer(node);
+				}
+			}
+		}
+
+		int focusNode, neighbor;
+		double residual, totalWeight, share;
+
+		while (!residuals.isEmpty() && withinBudget(residuals)) {
+
+			focusNode = residuals.pop();
+			residual = residuals.take(focusNode);
+
+			// Keep part of the residual as estimate on this node, distribute the rest
+			bcv.add(focusNode, alpha * residual);
+
+			totalWeight = adjacency.totalWeight(focusNode);
+			if (totalWeight == 0) continue;
+
+			share = (1 - alpha) * residual / totalWeight;
+
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
+
+				neighbor = neighbors.neighbor();
+
+				// Only queue a neighbor once its residual is large enough relative to its degree
+				if (residuals.add(neighbor, share * neighbors.weight()) >= epsilon * adjacency.totalWeight(neighbor)) {
+					residuals.offer(neighbor);
+				}
+			}
+		}
+
+		if (keepResiduals) {
+			this.residuals = new BCV(bookmark);
+			for (int i = 0; i < residuals.touched(); i++) {
+				final int node = residuals.touchedNode(i);
+				if (residuals.paint(node) > 0) this.residuals.add(node, residuals.paint(node));
+			}
+		}
+		return finish(residuals, bcv);
+	}
+}
@@ -0,0 +1,150 @@
+package org.uu.nl.embedding.bca.jobs;
+
+import org.uu.nl.embedding.bca.util.BCAJob;
+import org.uu.nl.embedding.bca.util.BCV;
+import org.uu.nl.embedding.bca.util.PaintFrontier;
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.rnd.ExtendedRandom;
+
+/**
+ * Estimates the coloring vector of a bookmark from random walks. Each walk starts at the bookmark and stops at every
+ * node with probability alpha, otherwise it moves to a neighbor with probability proportional to the edge weight,
+ * never going straight back to the node it came from. The fraction of walks that stop at a node is an unbiased
+ * estimate of the probability that such a walk stops there. This is not the same as the paint of
+ * {@link UndirectedWeighted}: besides its epsilon cut-off, paint that reaches a node from several neighbors is merged
+ * and only the last of them is kept out of the next step, so on weighted graphs the two vectors differ. A walk that
+ * reaches a node with nowhere else to go is lost, just like the paint in that case.
+ * <p>
+ * The cost per bookmark is bounded by the number of walks times their expected length 1 / alpha, regardless of the
+ * size of the neighborhood. Walks are done in rounds, and when a tolerance is given the walking stops as soon as the
+ * estimate changed less than the tolerance (in L1 distance) over the last round.
+ * </p>
+ * @author Jurian Baas
+ */
+public class MonteCarlo extends BCAJob {
+
+	private static final int DEAD_END = -1;
+	private static final int ROUNDS = 10;
+	/**
+	 * The number of times a neighbor is drawn from all neighbors before the others are walked instead
+	 */
+	private static final int MAX_DRAWS = 4;
+
+	private final int walks;
+	private final double tolerance;
+
+	public MonteCarlo(
+			Adjacency adjacency, int bookmark,
+			double alpha, int walks, double tolerance,
+			ThreadLocal<PaintFrontier> frontiers) {
+		super(bookmark, alpha, 0, adjacency, frontiers);
+		this.walks = walks;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @param roundHits Only used to count how often each node was hit during the current round
+	 */
+	@Override
+	protected BCV doWork(PaintFrontier roundHits) {
+
+		final ExtendedRandom random = Configuration.getThreadLocalRandom();
+		final BCV bcv = new BCV(bookmark);
+		final Adjacency.Cursor neighbors = adjacency.cursor();
+		final int roundSize = Math.max(1, walks / ROUNDS);
+
+		int done = 0, ended = 0;
+		while (done < walks) {
+
+			final int round = Math.min(roundSize, walks - done);
+			final int doneBefore = done, endedBefore = ended;
+
+			for (int w = 0; w < round; w++) {
+				final int end = walk(random, neighbors);
+				if (end == DEAD_END) continue;
+				bcv.add(end, 1f);
+				roundHits.add(end, 1);
+				ended++;
+			}
+			done += round;
+
+			if (tolerance > 0 && doneBefore > 0 && change(bcv, roundHits, doneBefore, done, endedBefore) < tolerance) break;
+			roundHits.reset();
+		}
+
+		bcv.scale(1f / done);
+		return bcv;
+	}
+
+	/**
+	 * @return The end point of a single random walk, or DEAD_END if the walk got stuck
+	 */
+	private int walk(ExtendedRandom random, Adjacency.Cursor neighbors) {
+
+		int node = bookmark, previousNode = PaintFrontier.NO_PREVIOUS_NODE, next;
+		double totalWeight;
+
+		while (true) {
+
+			if (random.nextDouble() < alpha) return node;
+
+			totalWeight = getTotalWeight(node, previousNode);
+			if (totalWeight <= 0) return DEAD_END;
+
+			next = sampleOther(node, previousNode, totalWeight, random, neighbors);
+			if (next == DEAD_END) return DEAD_END;
+			previousNode = node;
+			node = next;
+		}
+	}
+
+	/**
+	 * Draw a neighbor other than the previous node, in proportion to the edge weight. Drawing from all neighbors and
+	 * rejecting the previous node leaves the others in proportion, but takes many draws when the previous node holds
+	 * most of the weight. After a few rejections the other neighbors are walked instead, which gives the same
+	 * distribution.
+	 * @param totalWeight The weight of the edges of the node, without those to the previous node
+	 * @return The drawn neighbor, or DEAD_END if the previous node is the only one
+	 */
+	private int sampleOther(int node, int previousNode, double totalWeight, ExtendedRandom random, Adjacency.Cursor neighbors) {
+
+		for (int draw = 0; draw < MAX_DRAWS; draw++) {
+			final int next = adjacency.sample(node, random.nextDouble() * adjacency.totalWeight(node));
+			if (next != previousNode) return next;
+		}
+
+		double target = random.nextDouble() * totalWeight;
+		int next = DEAD_END;
+		neighbors.reset(node);
+		while (neighbors.next()) {
+			if (neighbors.neighbor() == previousNode) continue;
+			next = neighbors.neighbor();
+			target -= neighbors.weight();
+			if (target < 0) break;
+		}
+		return next;
+	}
+
+	/**
+	 * The L1 distance between the estimate before and after the last round. Only the nodes hit during the round
+	 * changed their count, the estimates of all other nodes only shrink because more walks were done.
+	 * @param before The number of walks before the round
+	 * @param after The number of walks after the round
+	 * @param endedBefore The number of walks that did not get stuck before the round
+	 */
+	private static double change(BCV counts, PaintFrontier roundHits, int before, int after, int endedBefore) {
+
+		double change = 0, hitBefore = 0;
+
+		for (int i = 0; i < roundHits.touched(); i++) {
+			final int node = roundHits.touchedNode(i);
+			final double count = counts.get(node);
+			final double previousCount = count - roundHits.paint(node);
+			change += Math.abs(count / after - previousCount / before);
+			hitBefore += previousCount;
+		}
+
+		return change + (endedBefore - hitBefore) * (1d / before - 1d / after);
+	}
+}
@@ -0,0 +1,137 @@
+package org.uu.nl.embedding.bca.jobs;
+
+import org.uu.nl.embedding.bca.util.*;
+import org.uu.nl.embedding.util.Adjacency;
+
+/**
+ * Bookmark coloring in two levels. Within a number of hops from the bookmark paint is spread exactly like
+ * {@link UndirectedWeighted} does. Paint that leaves this near field is collected on the cluster of the vertex it was
+ * sent to, and spread further over the coarse graph of clusters, which has far fewer vertices than the graph itself.
+ * What each cluster keeps is handed back to its members in proportion to their edge weight. This loses the detail of
+ * where exactly in the far field paint ends up, in exchange for far fewer pushes.
+ * @author Jurian Baas
+ */
+public class TwoLevel extends BCAJob {
+
+	private final Coarsening coarsening;
+	private final int hops;
+	private final ThreadLocal<NearField> nearFields;
+	private final ThreadLocal<PaintFrontier> coarseFrontiers;
+
+	/**
+	 * @param hops The radius of the near field
+	 * @param nearFields The near field of each worker thread
+	 * @param coarseFrontiers The frontier over the coarse graph of each worker thread
+	 */
+	public TwoLevel(
+			Adjacency adjacency, int bookmark,
+			double alpha, double epsilon,
+			ThreadLocal<PaintFrontier> frontiers,
+			Coarsening coarsening, int hops,
+			ThreadLocal<NearField> nearFields,
+			ThreadLocal<PaintFrontier> coarseFrontiers) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers);
+		this.coarsening = coarsening;
+		this.hops = hops;
+		this.nearFields = nearFields;
+		this.coarseFrontiers = coarseFrontiers;
+	}
+
+	@Override
+	protected BCV doWork(PaintFrontier frontier) {
+		final PaintFrontier coarseFrontier = coarseFrontiers.get();
+		try {
+			final BCV bcv = nearField(frontier, coarseFrontier);
+			farField(coarseFrontier, bcv);
+			return bcv;
+		} finally {
+			coarseFrontier.reset();
+		}
+	}
+
+	/**
+	 * Spread paint within the near field without sending it back to where it came from, and collect the paint that
+	 * leaves the near field on the coarse frontier
+	 */
+	private BCV nearField(PaintFrontier frontier, PaintFrontier coarseFrontier) {
+
+		final BCV bcv = new BCV(bookmark);
+		final Adjacency.Cursor neighbors = adjacency.cursor();
+		final NearField near = nearFields.get();
+		near.search(adjacency, bookmark, hops);
+
+		frontier.push(bookmark, 1, PaintFrontier.NO_PREVIOUS_NODE);
+
+		int focusNode, previousNode, neighbor;
+		double wetPaint, partialWetPaint, totalWeight;
+
+		while (!frontier.isEmpty() && withinBudget(frontier)) {
+
+			focusNode = frontier.pop();
+			wetPaint = frontier.paint(focusNode);
+			previousNode = frontier.previous(focusNode);
+
+			// Keep part of the available paint on this node, distribute the rest
+			bcv.add(focusNode, (alpha * wetPaint));
+
+			totalWeight = getTotalWeight(focusNode, previousNode);
+
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
+
+				neighbor = neighbors.neighbor();
+				if(neighbor == previousNode) continue;
+
+				partialWetPaint = (1 - alpha) * wetPaint * (neighbors.weight() / totalWeight);
+
+				// Stopping early here increases stability in GloVe
+				if(partialWetPaint < epsilon) continue;
+
+				if(near.contains(neighbor)) frontier.push(neighbor, partialWetPaint, focusNode);
+				else coarseFrontier.push(coarsening.cluster(neighbor), partialWetPaint, PaintFrontier.NO_PREVIOUS_NODE);
+			}
+		}
+		return finish(frontier, bcv);
+	}
+
+	/**
+	 * Spread the collected paint over the coarse graph and hand what each cluster keeps to its members
+	 */
+	private void farField(PaintFrontier coarseFrontier, BCV bcv) {
+
+		final Adjacency coarse = coarsening.coarse();
+		final Adjacency.Cursor neighbors = coarse.cursor();
+		final BCV clusters = new BCV(coarsening.cluster(bookmark));
+
+		int focusCluster;
+		double wetPaint, partialWetPaint, totalWeight, internal, circulation, outgoing;
+
+		while (!coarseFrontier.isEmpty()) {
+
+			focusCluster = coarseFrontier.pop();
+			wetPaint = coarseFrontier.paint(focusCluster);
+			totalWeight = coarse.totalWeight(focusCluster);
+
+			// Paint that stays within the cluster keeps being spread there, the cluster keeps alpha of it every hop.
+			// Summing over all hops within the cluster gives what it keeps and what leaves it in total.
+			internal = totalWeight == 0 ? 1 : coarsening.internalShare(focusCluster);
+			circulation = 1 - (1 - alpha) * internal;
+			clusters.add(focusCluster, alpha * wetPaint / circulation);
+			if(totalWeight == 0) continue;
+			outgoing = (1 - alpha) * (1 - internal) * wetPaint / circulation;
+
+			neighbors.reset(focusCluster);
+			while (neighbors.next()) {
+
+				partialWetPaint = outgoing * (neighbors.weight() / totalWeight);
+				if(partialWetPaint < epsilon) continue;
+
+				coarseFrontier.push(neighbors.neighbor(), partialWetPaint, focusCluster);
+			}
+		}
+
+		for (int slot = 0; slot < clusters.capacity(); slot++) {
+			if (clusters.isUsed(slot)) coarsening.spread(clusters.keyAt(slot), clusters.valueAt(slot), bcv, alpha * epsilon);
+		}
+	}
+}
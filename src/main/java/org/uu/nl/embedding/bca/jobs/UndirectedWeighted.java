@@ -1,7 +1,10 @@
 package org.uu.nl.embedding.bca.jobs;
 
+import org.uu.nl.embedding.bca.util.AliasTables;
 import org.uu.nl.embedding.bca.util.BCAJobNoBacksies;
-import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.bca.util.HubCache;
+import org.uu.nl.embedding.bca.util.PaintFrontier;
+import org.uu.nl.embedding.util.Adjacency;
 
 /**
  * @author Jurian Baas
@@ -9,9 +12,18 @@ import org.uu.nl.embedding.util.InMemoryRdfGraph;
 public class UndirectedWeighted extends BCAJobNoBacksies {
 
 	public UndirectedWeighted(
-			InMemoryRdfGraph graph, int bookmark,
+			Adjacency adjacency, int bookmark,
 			double alpha, double epsilon,
-			int[][] vertexNeighborhood, int[][] edgeNeighborhood) {
-		super(bookmark, alpha, epsilon, graph, vertexNeighborhood, edgeNeighborhood);
+			ThreadLocal<PaintFrontier> frontiers) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers);
+	}
+
+	public UndirectedWeighted(
+			Adjacency adjacency, int bookmark,
+			double alpha, double epsilon,
+			ThreadLocal<PaintFrontier> frontiers,
+			HubCache hubs,
+			AliasTables aliases) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers, hubs, aliases);
 	}
 }
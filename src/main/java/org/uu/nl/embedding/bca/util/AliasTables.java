@@ -0,0 +1,201 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.rnd.ExtendedRandom;
+
+import java.util.Arrays;
+
+/**
+ * Alias tables (Vose) over the edge weights of every vertex with a high degree, so a neighbor can be drawn with
+ * probability proportional to its edge weight in constant time. Jobs use them to send the paint of such a vertex to a
+ * fixed number of sampled neighbors instead of computing a share for every neighbor, most of which would be below
+ * epsilon anyway. The neighbors of a table are sorted by decreasing edge weight, so the neighbors whose share passes a
+ * threshold can be found without visiting the others.
+ * @author Jurian Baas
+ */
+public class AliasTables {
+
+	private static final int NO_TABLE = -1;
+
+	/**
+	 * The table of each vertex, or NO_TABLE if it does not have enough neighbors
+	 */
+	private final int[] table;
+	private final int[][] neighbors;
+	private final float[][] weights;
+	private final int[][] alias;
+	private final float[][] probability;
+	/**
+	 * The lowest and highest edge weight of each table
+	 */
+	private final float[] minWeight, maxWeight;
+	private final int samples;
+
+	/**
+	 * The number of draws from all neighbors before the neighbors are walked to avoid one of them
+	 */
+	private static final int MAX_DRAWS = 4;
+
+	/**
+	 * @param adjacency The graph
+	 * @param minDegree Vertices with at least this many neighbors get a table
+	 * @param samples The number of neighbors the paint of such a vertex is sent to
+	 */
+	public AliasTables(Adjacency adjacency, int minDegree, int samples) {
+
+		final int n = adjacency.vertexCount();
+		this.table = new int[n];
+		this.samples = samples;
+		Arrays.fill(table, NO_TABLE);
+
+		int count = 0;
+		for (int v = 0; v < n; v++) {
+			if (adjacency.degree(v) >= minDegree) table[v] = count++;
+		}
+
+		this.neighbors = new int[count][];
+		this.weights = new float[count][];
+		this.alias = new int[count][];
+		this.probability = new float[count][];
+		this.minWeight = new float[count];
+		this.maxWeight = new float[count];
+
+		final Adjacency.Cursor cursor = adjacency.cursor();
+		for (int v = 0; v < n; v++) {
+			if (table[v] == NO_TABLE) continue;
+
+			final int degree = adjacency.degree(v);
+			// Sort on weight and keep the position in the lower bits, weights are positive so their bits sort the same
+			final long[] sorted = new long[degree];
+			final int[] row = new int[degree];
+			int i = 0;
+			cursor.reset(v);
+			while (cursor.next()) {
+				row[i] = cursor.neighbor();
+				sorted[i] = ((long) Float.floatToIntBits(cursor.weight()) << 32) | i;
+				i++;
+			}
+			Arrays.sort(sorted);
+
+			final int[] nodes = new int[degree];
+			final float[] rowWeights = new float[degree];
+			final double[] scaled = new double[degree];
+			final double mean = adjacency.totalWeight(v) / degree;
+			for (i = 0; i < degree; i++) {
+				final long entry = sorted[degree - 1 - i];
+				nodes[i] = row[(int) entry];
+				rowWeights[i] = Float.intBitsToFloat((int) (entry >>> 32));
+				scaled[i] = rowWeights[i] / mean;
+			}
+			minWeight[table[v]] = rowWeights[degree - 1];
+			maxWeight[table[v]] = rowWeights[0];
+
+			neighbors[table[v]] = nodes;
+			weights[table[v]] = rowWeights;
+			alias[table[v]] = new int[degree];
+			probability[table[v]] = new float[degree];
+			build(scaled, alias[table[v]], probability[table[v]]);
+		}
+	}
+
+	/**
+	 * Pair every column that is below the mean with a column above it, so each column holds at most two outcomes
+	 * @param scaled The weights divided by their mean, overwritten
+	 */
+	private static void build(double[] scaled, int[] alias, float[] probability) {
+		final int n = scaled.length;
+		final int[] small = new int[n], large = new int[n];
+		int smallCount = 0, largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			if (scaled[i] < 1) small[smallCount++] = i;
+			else large[largeCount++] = i;
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			final int s = small[--smallCount];
+			final int l = large[--largeCount];
+			probability[s] = (float) scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if (scaled[l] < 1) small[smallCount++] = l;
+			else large[largeCount++] = l;
+		}
+		// What is left is 1 up to rounding errors
+		while (largeCount > 0) probability[large[--largeCount]] = 1;
+		while (smallCount > 0) probability[small[--smallCount]] = 1;
+	}
+
+	public boolean has(int node) {
+		return table[node] != NO_TABLE;
+	}
+
+	public int samples() {
+		return samples;
+	}
+
+	public float minWeight(int node) {
+		return minWeight[table[node]];
+	}
+
+	public float maxWeight(int node) {
+		return maxWeight[table[node]];
+	}
+
+	/**
+	 * @return The number of vertices with a table
+	 */
+	public int count() {
+		return neighbors.length;
+	}
+
+	/**
+	 * @return The number of neighbors of the node that has a table
+	 */
+	public int degree(int node) {
+		return neighbors[table[node]].length;
+	}
+
+	/**
+	 * @return The i-th neighbor of the node in order of decreasing edge weight
+	 */
+	public int neighbor(int node, int i) {
+		return neighbors[table[node]][i];
+	}
+
+	public float weight(int node, int i) {
+		return weights[table[node]][i];
+	}
+
+	/**
+	 * @return A neighbor of the node, drawn with probability proportional to the weight of its edge
+	 */
+	public int sample(int node, ExtendedRandom random) {
+		final int t = table[node];
+		final int column = random.nextInt(neighbors[t].length);
+		return neighbors[t][random.nextFloat() < probability[t][column] ? column : alias[t][column]];
+	}
+
+	/**
+	 * Draw a neighbor other than the excluded one, with probability proportional to the weight of its edge. Drawing
+	 * from the table and rejecting the excluded neighbor takes many draws if it holds most of the weight, so after a
+	 * few rejections the neighbors are walked instead, which gives the same distribution.
+	 * @param totalWeight The weight of the edges of the node, without the edge to the excluded neighbor
+	 * @return The drawn neighbor, or -1 if the excluded neighbor is the only one
+	 */
+	public int sampleOther(int node, int exclude, double totalWeight, ExtendedRandom random) {
+		for (int draw = 0; draw < MAX_DRAWS; draw++) {
+			final int neighbor = sample(node, random);
+			if (neighbor != exclude) return neighbor;
+		}
+
+		final int t = table[node];
+		double target = random.nextDouble() * totalWeight;
+		int neighbor = -1;
+		for (int i = 0; i < neighbors[t].length; i++) {
+			if (neighbors[t][i] == exclude) continue;
+			neighbor = neighbors[t][i];
+			target -= weights[t][i];
+			if (target < 0) break;
+		}
+		return neighbor;
+	}
+}
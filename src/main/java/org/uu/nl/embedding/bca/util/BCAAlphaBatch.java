@@ -0,0 +1,52 @@
+package org.uu.nl.embedding.bca.util;
+
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
+
+/**
+ * Like {@link BCABatch}, but computes the coloring vectors of each bookmark for several alphas in one traversal, and
+ * writes the vectors of each alpha into a buffer of its own
+ * @author Jurian Baas
+ */
+public class BCAAlphaBatch implements Callable<Integer> {
+
+	private final int[] bookmarks;
+	private final int[] order;
+	private final int from, to;
+	private final IntFunction<BCABlockJob> alphaJobs;
+	private final ThreadLocal<CoOccurrenceBuffer[]> buffers;
+	private final int topK;
+	private final boolean renormalize;
+
+	/**
+	 * @param alphaJobs Creates the job for a bookmark, which returns one coloring vector per alpha
+	 * @param buffers The buffers of the worker thread, one per alpha
+	 * @see BCABatch#BCABatch
+	 */
+	public BCAAlphaBatch(int[] bookmarks, int[] order, int from, int to, IntFunction<BCABlockJob> alphaJobs,
+						 ThreadLocal<CoOccurrenceBuffer[]> buffers, int topK, boolean renormalize) {
+		this.bookmarks = bookmarks;
+		this.order = order;
+		this.from = from;
+		this.to = to;
+		this.alphaJobs = alphaJobs;
+		this.buffers = buffers;
+		this.topK = topK;
+		this.renormalize = renormalize;
+	}
+
+	/**
+	 * @return The number of bookmarks that were processed
+	 */
+	@Override
+	public Integer call() {
+		final CoOccurrenceBuffer[] buffer = buffers.get();
+		for (int i = from; i < to; i++) {
+			final BCV[] bcvs = alphaJobs.apply(bookmarks[order[i]]).call();
+			for (int a = 0; a < bcvs.length; a++) {
+				BCABatch.write(buffer[a], order[i], bcvs[a], topK, renormalize);
+			}
+		}
+		return to - from;
+	}
+}
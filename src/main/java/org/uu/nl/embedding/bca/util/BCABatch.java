@@ -0,0 +1,84 @@
+package org.uu.nl.embedding.bca.util;
+
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
+
+/**
+ * Performs the bookmark coloring algorithm for a contiguous range of the bookmark order, so that one task is submitted for many
+ * bookmarks instead of one task per bookmark. The normalized coloring vectors are written straight into the
+ * co-occurrence buffer of the worker thread.
+ * @author Jurian Baas
+ */
+public class BCABatch implements Callable<Integer> {
+
+	private final int[] bookmarks;
+	private final int[] order;
+	private final int from, to;
+	private final IntFunction<BCAJob> jobs;
+	private final ThreadLocal<CoOccurrenceBuffer> buffers;
+	private final int topK;
+	private final boolean renormalize;
+	private final WorkBudget.Outcome[] outcomes;
+
+	/**
+	 * @param bookmarks All bookmarks, the focus index of a bookmark is its position in this array
+	 * @param order The focus indices of the bookmarks that have to be processed
+	 * @param from First position in the order of this batch, inclusive
+	 * @param to Last position in the order of this batch, exclusive
+	 * @param jobs Creates the job for a single bookmark
+	 * @param buffers The co-occurrence buffer of each worker thread
+	 * @param topK The maximum number of entries kept per bookmark, 0 keeps all entries
+	 * @param renormalize Whether the kept entries should sum to 1, or keep their share of the complete vector
+	 * @param outcomes Receives the budget outcome of each focus index, may be null
+	 */
+	public BCABatch(int[] bookmarks, int[] order, int from, int to, IntFunction<BCAJob> jobs, ThreadLocal<CoOccurrenceBuffer> buffers,
+					int topK, boolean renormalize, WorkBudget.Outcome[] outcomes) {
+		this.bookmarks = bookmarks;
+		this.order = order;
+		this.from = from;
+		this.to = to;
+		this.jobs = jobs;
+		this.buffers = buffers;
+		this.topK = topK;
+		this.renormalize = renormalize;
+		this.outcomes = outcomes;
+	}
+
+	/**
+	 * @return The number of bookmarks that were processed
+	 */
+	@Override
+	public Integer call() {
+		final CoOccurrenceBuffer buffer = buffers.get();
+		for (int b = from; b < to; b++) {
+
+			final int i = order[b];
+			final BCAJob job = jobs.apply(bookmarks[i]);
+			write(buffer, i, job.call(), topK, renormalize);
+			if (outcomes != null) outcomes[i] = job.outcome();
+		}
+		return to - from;
+	}
+
+	/**
+	 * Normalize a coloring vector, keeping only the top-k entries if configured, and write it to the buffer
+	 * @param focusIndex The focus index of the bookmark the vector belongs to
+	 */
+	static void write(CoOccurrenceBuffer buffer, int focusIndex, BCV bcv, int topK, boolean renormalize) {
+		if (topK > 0) {
+			final float discarded = bcv.retainTop(topK);
+			final float kept = bcv.sum();
+			buffer.addMass(kept, discarded);
+			bcv.toUnity();
+			// Scale back down so the kept entries retain their share of the complete vector
+			if (!renormalize && discarded > 0) bcv.scale(kept / (kept + discarded));
+		} else {
+			bcv.toUnity();
+		}
+
+		// It is possible to use this maximum value in GloVe, although in the
+		// literature they set this value to 100 and leave it at that
+		buffer.updateMax(bcv.max());
+		buffer.add(focusIndex, bcv);
+	}
+}
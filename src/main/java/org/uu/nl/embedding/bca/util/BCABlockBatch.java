@@ -0,0 +1,58 @@
+package org.uu.nl.embedding.bca.util;
+
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Like {@link BCABatch}, but hands the bookmarks of its range to a block job a number at a time, so that the
+ * bookmarks of one block share a single traversal of the graph
+ * @author Jurian Baas
+ */
+public class BCABlockBatch implements Callable<Integer> {
+
+	private final int[] bookmarks;
+	private final int[] order;
+	private final int from, to;
+	private final Function<int[], BCABlockJob> blockJobs;
+	private final int blockSize;
+	private final ThreadLocal<CoOccurrenceBuffer> buffers;
+	private final int topK;
+	private final boolean renormalize;
+
+	/**
+	 * @param blockJobs Creates the job for a block of bookmarks
+	 * @param blockSize The maximum number of bookmarks in a block
+	 * @see BCABatch#BCABatch
+	 */
+	public BCABlockBatch(int[] bookmarks, int[] order, int from, int to, Function<int[], BCABlockJob> blockJobs, int blockSize,
+						 ThreadLocal<CoOccurrenceBuffer> buffers, int topK, boolean renormalize) {
+		this.bookmarks = bookmarks;
+		this.order = order;
+		this.from = from;
+		this.to = to;
+		this.blockJobs = blockJobs;
+		this.blockSize = blockSize;
+		this.buffers = buffers;
+		this.topK = topK;
+		this.renormalize = renormalize;
+	}
+
+	/**
+	 * @return The number of bookmarks that were processed
+	 */
+	@Override
+	public Integer call() {
+		final CoOccurrenceBuffer buffer = buffers.get();
+		for (int start = from; start < to; start += blockSize) {
+
+			final int[] block = new int[Math.min(blockSize, to - start)];
+			for (int b = 0; b < block.length; b++) block[b] = bookmarks[order[start + b]];
+
+			final BCV[] bcvs = blockJobs.apply(block).call();
+			for (int b = 0; b < block.length; b++) {
+				BCABatch.write(buffer, order[start + b], bcvs[b], topK, renormalize);
+			}
+		}
+		return to - from;
+	}
+}
@@ -0,0 +1,51 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Performs the bookmark coloring algorithm for a block of bookmarks in one traversal of the graph
+ * @author Jurian Baas
+ */
+public abstract class BCABlockJob implements Callable<BCV[]> {
+
+	protected final int[] bookmarks;
+	protected final double alpha, epsilon;
+	protected final Adjacency adjacency;
+	/**
+	 * Each worker thread reuses the same frontier for all the blocks it processes
+	 */
+	protected final ThreadLocal<BlockFrontier> frontiers;
+
+	/**
+	 * @param bookmarks The bookmarks of this block, at most as many as the frontier has lanes
+	 */
+	protected BCABlockJob(
+			int[] bookmarks,
+			double alpha, double epsilon,
+			Adjacency adjacency,
+			ThreadLocal<BlockFrontier> frontiers) {
+
+		this.bookmarks = bookmarks;
+		this.alpha = alpha;
+		this.epsilon = epsilon;
+		this.adjacency = adjacency;
+		this.frontiers = frontiers;
+	}
+
+	/**
+	 * @return The coloring vector of each bookmark, in the same order as the bookmarks
+	 */
+	@Override
+	public BCV[] call() {
+		final BlockFrontier frontier = frontiers.get();
+		try {
+			return doWork(frontier);
+		} finally {
+			frontier.reset();
+		}
+	}
+
+	protected abstract BCV[] doWork(BlockFrontier frontier);
+}
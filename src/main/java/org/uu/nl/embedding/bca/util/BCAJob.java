@@ -1,9 +1,7 @@
 package org.uu.nl.embedding.bca.util;
 
-import grph.properties.NumericalProperty;
-import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.Adjacency;
 
-import java.util.TreeMap;
 import java.util.concurrent.Callable;
 
 /**
@@ -15,45 +13,73 @@ public abstract class BCAJob implements Callable<BCV> {
 
 	protected final int bookmark;
 	protected final double alpha, epsilon;
-	protected final InMemoryRdfGraph graph;
-	protected final int[][] vertexNeighborhood, edgeNeighborhood;
+	protected final Adjacency adjacency;
+	/**
+	 * Each worker thread reuses the same frontier for all the bookmarks it processes
+	 */
+	protected final ThreadLocal<PaintFrontier> frontiers;
+	private WorkBudget budget = WorkBudget.UNLIMITED;
+	private WorkBudget.Outcome outcome = WorkBudget.Outcome.COMPLETED;
+	/**
+	 * The number of pops of the frontier and the time when this job started
+	 */
+	private long startPops, startNanos;
 
 	protected BCAJob(
 			int bookmark,
 			double alpha, double epsilon,
-			InMemoryRdfGraph graph, int[][] vertexNeighborhood, int[][] edgeNeighborhood) {
+			Adjacency adjacency,
+			ThreadLocal<PaintFrontier> frontiers) {
 
 		this.bookmark = bookmark;
 		this.alpha = alpha;
 		this.epsilon = epsilon;
-		this.graph = graph;
-		this.vertexNeighborhood = vertexNeighborhood;
-		this.edgeNeighborhood = edgeNeighborhood;
+		this.adjacency = adjacency;
+		this.frontiers = frontiers;
+	}
+
+	/**
+	 * Limit the work this job may do
+	 * @return This job
+	 */
+	public BCAJob withBudget(WorkBudget budget) {
+		this.budget = budget;
+		return this;
+	}
+
+	/**
+	 * @return Whether the job finished within its budget, and what happened to the waiting paint if it did not
+	 */
+	public WorkBudget.Outcome outcome() {
+		return outcome;
 	}
 
 	@Override
 	public BCV call() {
-		return doWork();
+		final PaintFrontier frontier = frontiers.get();
+		startPops = frontier.pops();
+		if (budget.isTimed()) startNanos = System.nanoTime();
+		try {
+			return doWork(frontier);
+		} finally {
+			frontier.reset();
+		}
 	}
 
-	protected BCV doWork() {
-		final NumericalProperty edgeWeights = graph.getEdgeWeightProperty();
+	protected BCV doWork(PaintFrontier frontier) {
 
-		final TreeMap<Integer, PaintedNode> nodeTree = new TreeMap<>();
 		final BCV bcv = new BCV(bookmark);
+		final Adjacency.Cursor neighbors = adjacency.cursor();
 
-		nodeTree.put(bookmark, new PaintedNode(bookmark, 1));
+		frontier.push(bookmark, 1, PaintFrontier.NO_PREVIOUS_NODE);
 
-		int[] neighbors, edges;
 		int focusNode;
 		double wetPaint, partialWetPaint, totalWeight;
-		PaintedNode node;
 
-		while (!nodeTree.isEmpty()) {
+		while (!frontier.isEmpty() && withinBudget(frontier)) {
 
-			node = nodeTree.pollFirstEntry().getValue();
-			focusNode = node.nodeID;
-			wetPaint = node.getPaint();
+			focusNode = frontier.pop();
+			wetPaint = frontier.paint(focusNode);
 
 			// Keep part of the available paint on this node, distribute the rest
 			bcv.add(focusNode, (alpha * wetPaint));
@@ -61,35 +87,53 @@ public abstract class BCAJob implements Callable<BCV> {
 			// If there is not enough paint we stop and don't distribute among the neighbors
 			if (wetPaint < epsilon) continue;
 
-			neighbors = vertexNeighborhood[focusNode];
-			edges = edgeNeighborhood[focusNode];
+			totalWeight = adjacency.totalWeight(focusNode);
 
-			totalWeight = getTotalWeight(neighbors, edges, -1);
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
 
-			for (int i = 0; i < neighbors.length; i++) {
+				partialWetPaint = (1 - alpha) * wetPaint * (neighbors.weight() / totalWeight);
 
-				float weight = edgeWeights.getValueAsFloat(edges[i]);
-				partialWetPaint = (1 - alpha) * wetPaint * (weight / totalWeight);
+				frontier.push(neighbors.neighbor(), partialWetPaint, focusNode);
+			}
+		}
+		return finish(frontier, bcv);
+	}
 
-				// Log(n) time lookup
-				if (nodeTree.containsKey(neighbors[i])) {
-					nodeTree.get(neighbors[i]).addPaint(partialWetPaint);
-				} else {
-					nodeTree.put(neighbors[i], new PaintedNode(neighbors[i], partialWetPaint));
-				}
+	/**
+	 * @return Whether the job may spread paint from another node
+	 */
+	protected boolean withinBudget(PaintFrontier frontier) {
+		return budget.allows(frontier.touched(), frontier.pops() - startPops, startNanos);
+	}
 
+	/**
+	 * Deal with the paint that is still waiting when the budget ran out, by keeping it on the queued nodes or
+	 * dropping it, and record which of the two happened
+	 * @return The coloring vector
+	 */
+	protected BCV finish(PaintFrontier frontier, BCV bcv) {
+		if (frontier.isEmpty()) return bcv;
+
+		if (budget.redistributes()) {
+			for (int i = 0; i < frontier.touched(); i++) {
+				final int node = frontier.touchedNode(i);
+				if (frontier.isQueued(node)) bcv.add(node, frontier.paint(node));
 			}
+			outcome = WorkBudget.Outcome.REDISTRIBUTED;
+		} else {
+			outcome = WorkBudget.Outcome.DROPPED;
 		}
 		return bcv;
 	}
 
-	protected double getTotalWeight(int[] neighbors, int[] edges, int ignore) {
-		double totalWeight = 0f;
-		for (int i = 0; i < neighbors.length; i++) {
-			if(neighbors[i] == ignore) continue;
-			totalWeight += graph.getEdgeWeightProperty().getValueAsFloat(edges[i]);
-		}
-		return totalWeight;
+	/**
+	 * @return The total weight of the edges of a node, without the edges leading back to the ignored node
+	 */
+	protected double getTotalWeight(int node, int ignore) {
+		final double totalWeight = adjacency.totalWeight(node);
+		if (ignore == PaintFrontier.NO_PREVIOUS_NODE) return totalWeight;
+		return totalWeight - adjacency.weight(node, ignore);
 	}
 
 }
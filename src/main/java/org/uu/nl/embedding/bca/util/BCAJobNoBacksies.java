@@ -1,99 +1,124 @@
 package org.uu.nl.embedding.bca.util;
 
-import org.uu.nl.embedding.util.InMemoryRdfGraph;
-
-import java.util.TreeMap;
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.rnd.ExtendedRandom;
 
 /**
  * One BCAJob represents performing the bookmark coloring algorithm for a single node. This version does early stopping,
  * thereby preventing any paint less than alpha * epsilon to be distributed. This improves stability in GloVe later on.
+ * Paint is never sent back to the node it came from.
  * @author Jurian Baas
  *
  */
 public abstract class BCAJobNoBacksies extends BCAJobStable {
 
-	static class PaintedNodeWithMemory extends PaintedNode {
-
-		public static final int NO_PREVIOUS_NODE = -1;
-
-		public final int previousNodeId;
-
-		public PaintedNodeWithMemory(int nodeID, double startPaint) {
-			super(nodeID, startPaint);
-			this.previousNodeId = NO_PREVIOUS_NODE;
-		}
-
-		public PaintedNodeWithMemory(int nodeID, double startPaint, int previousNodeId) {
-			super(nodeID, startPaint);
-			this.previousNodeId = previousNodeId;
-		}
+	/**
+	 * The vectors of high degree nodes, null if hubs are expanded like any other node
+	 */
+	private final HubCache hubs;
+	/**
+	 * The alias tables of high degree nodes whose paint is sent to sampled neighbors, null if every node is expanded
+	 */
+	private final AliasTables aliases;
+
+	/**
+	 * A sample that hits the node the paint came from is drawn again, which is only cheap if that node holds
+	 * at most this share of the weight
+	 */
+	private static final double MAX_REJECTED_WEIGHT = 0.5;
+
+	protected BCAJobNoBacksies(int bookmark, double alpha, double epsilon, Adjacency adjacency, ThreadLocal<PaintFrontier> frontiers) {
+		this(bookmark, alpha, epsilon, adjacency, frontiers, null, null);
 	}
 
-	protected BCAJobNoBacksies(int bookmark, double alpha, double epsilon, InMemoryRdfGraph graph, int[][] vertexNeighborhood, int[][] edgeNeighborhood) {
-		super(bookmark, alpha, epsilon, graph, vertexNeighborhood, edgeNeighborhood);
+	protected BCAJobNoBacksies(int bookmark, double alpha, double epsilon, Adjacency adjacency, ThreadLocal<PaintFrontier> frontiers,
+							   HubCache hubs, AliasTables aliases) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers);
+		this.hubs = hubs;
+		this.aliases = aliases;
 	}
 
 	@Override
-	protected BCV doWork() {
+	protected BCV doWork(PaintFrontier frontier) {
 
-		final TreeMap<Integer, PaintedNodeWithMemory> nodeTree = new TreeMap<>();
 		final BCV bcv = new BCV(bookmark);
+		final Adjacency.Cursor neighbors = adjacency.cursor();
 
-		nodeTree.put(bookmark, new PaintedNodeWithMemory(bookmark, 1));
+		frontier.push(bookmark, 1, PaintFrontier.NO_PREVIOUS_NODE);
 
-		int[] neighbors, edges;
-		int focusNode;
+		int focusNode, previousNode, neighbor;
 		double wetPaint, partialWetPaint, totalWeight;
-		PaintedNodeWithMemory node;
-		String bookmarkLabel = graph.getVertexLabelProperty().getValueAsString(bookmark);
 
-		//System.out.println();
-		//System.out.println(bookmarkLabel);
-		while (!nodeTree.isEmpty()) {
+		while (!frontier.isEmpty() && withinBudget(frontier)) {
 
-			node = nodeTree.pollFirstEntry().getValue();
-			focusNode = node.nodeID;
-			wetPaint = node.getPaint();
+			focusNode = frontier.pop();
+			wetPaint = frontier.paint(focusNode);
+			previousNode = frontier.previous(focusNode);
 
+			totalWeight = getTotalWeight(focusNode, previousNode);
+
+			// The paint of a hub spreads the same way for every bookmark, so its vector is reused. That vector also
+			// sends paint back to the node the paint came from, so it is only used when expanding would keep less
+			// than epsilon from that node, the amount that is left out everywhere else as well.
+			if(hubs != null && hubs.isHub(focusNode)
+					&& (1 - alpha) * wetPaint * (1 - totalWeight / adjacency.totalWeight(focusNode)) < epsilon) {
+				hubs.splice(focusNode, bcv, wetPaint, alpha * epsilon);
+				continue;
+			}
 
 			// Keep part of the available paint on this node, distribute the rest
 			bcv.add(focusNode, (alpha * wetPaint));
 
-			neighbors = vertexNeighborhood[focusNode];
-			edges = edgeNeighborhood[focusNode];
-
-			totalWeight = getTotalWeight(neighbors, edges, node.previousNodeId);
-
-			//String focusLabel = graph.getVertexLabelProperty().getValueAsString(focusNode);
-			//for (int i = 0; i < neighbors.length; i++) {
-			//	if(neighbors[i] == node.previousNodeId) continue;
-			//	String neighborLabel = graph.getVertexLabelProperty().getValueAsString(neighbors[i]);
-			//	String edgeLabel = graph.getEdgeLabelProperty().getValueAsString(edges[i]);
-			//	if(edgeLabel == null) {
-			//		edgeLabel = "similar (" + graph.getEdgeWeightProperty().getValueAsFloat(edges[i])+")";
-			//	}
-			//	System.out.printf("%s %s %s%n", focusLabel, edgeLabel, neighborLabel);
-			//}
+			if(aliases != null && aliases.has(focusNode)) {
+				spreadSampled(frontier, focusNode, previousNode, wetPaint, totalWeight);
+				continue;
+			}
 
-			for (int i = 0; i < neighbors.length; i++) {
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
 
-				if(neighbors[i] == node.previousNodeId) continue;
+				neighbor = neighbors.neighbor();
+				if(neighbor == previousNode) continue;
 
-				float weight = graph.getEdgeWeightProperty().getValueAsFloat(edges[i]);
-				partialWetPaint = (1 - alpha) * wetPaint * (weight / totalWeight);
+				partialWetPaint = (1 - alpha) * wetPaint * (neighbors.weight() / totalWeight);
 
 				// Stopping early here increases stability in GloVe
 				if(partialWetPaint < epsilon) continue;
 
-				// Log(n) time lookup
-				if (nodeTree.containsKey(neighbors[i])) {
-					nodeTree.get(neighbors[i]).addPaint(partialWetPaint);
-				} else {
-					nodeTree.put(neighbors[i], new PaintedNodeWithMemory(neighbors[i], partialWetPaint, focusNode));
-				}
+				frontier.push(neighbor, partialWetPaint, focusNode);
+			}
+		}
+		return finish(frontier, bcv);
+	}
 
+	/**
+	 * Spread the paint of a high degree node without visiting all of its neighbors. When even the lightest edge would
+	 * get a share of at least epsilon, the paint is sent to a fixed number of neighbors drawn from the alias table, each
+	 * carrying an equal part, so every neighbor receives the same amount as when expanding in expectation. Otherwise,
+	 * or when most of the weight leads back to the previous node, the neighbors are visited in order of decreasing
+	 * weight until the first share below epsilon, which pushes exactly what expanding the node would push.
+	 * @param totalWeight The weight of the edges of the node, without those to the previous node
+	 */
+	private void spreadSampled(PaintFrontier frontier, int node, int previousNode, double wetPaint, double totalWeight) {
+
+		final double outgoing = (1 - alpha) * wetPaint;
+		if(outgoing * (aliases.minWeight(node) / totalWeight) < epsilon
+				|| totalWeight < (1 - MAX_REJECTED_WEIGHT) * adjacency.totalWeight(node)) {
+			for(int i = 0; i < aliases.degree(node); i++) {
+				final double partialWetPaint = outgoing * (aliases.weight(node, i) / totalWeight);
+				if(partialWetPaint < epsilon) break;
+				if(aliases.neighbor(node, i) != previousNode) frontier.push(aliases.neighbor(node, i), partialWetPaint, node);
 			}
+			return;
+		}
+
+		final int samples = aliases.samples();
+		final double share = outgoing / samples;
+		final ExtendedRandom random = Configuration.getThreadLocalRandom();
+		for(int s = 0; s < samples; s++) {
+			final int neighbor = aliases.sampleOther(node, previousNode, totalWeight, random);
+			if(neighbor != -1) frontier.push(neighbor, share, node);
 		}
-		return bcv;
 	}
 }
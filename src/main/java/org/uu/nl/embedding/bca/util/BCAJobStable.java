@@ -1,8 +1,6 @@
 package org.uu.nl.embedding.bca.util;
 
-import org.uu.nl.embedding.util.InMemoryRdfGraph;
-
-import java.util.TreeMap;
+import org.uu.nl.embedding.util.Adjacency;
 
 /**
  * One BCAJob represents performing the bookmark coloring algorithm for a single node. This version does early stopping,
@@ -12,54 +10,42 @@ import java.util.TreeMap;
  */
 public abstract class BCAJobStable extends BCAJob {
 
-	protected BCAJobStable(int bookmark, double alpha, double epsilon, InMemoryRdfGraph graph, int[][] vertexNeighborhood, int[][] edgeNeighborhood) {
-		super(bookmark, alpha, epsilon, graph, vertexNeighborhood, edgeNeighborhood);
+	protected BCAJobStable(int bookmark, double alpha, double epsilon, Adjacency adjacency, ThreadLocal<PaintFrontier> frontiers) {
+		super(bookmark, alpha, epsilon, adjacency, frontiers);
 	}
 
-	protected BCV doWork() {
+	protected BCV doWork(PaintFrontier frontier) {
 
-		final TreeMap<Integer, PaintedNode> nodeTree = new TreeMap<>();
 		final BCV bcv = new BCV(bookmark);
+		final Adjacency.Cursor neighbors = adjacency.cursor();
 
-		nodeTree.put(bookmark, new PaintedNode(bookmark, 1));
+		frontier.push(bookmark, 1, PaintFrontier.NO_PREVIOUS_NODE);
 
-		int[] neighbors, edges;
 		int focusNode;
 		double wetPaint, partialWetPaint, totalWeight;
-		PaintedNode node;
 
-		while (!nodeTree.isEmpty()) {
+		while (!frontier.isEmpty() && withinBudget(frontier)) {
 
-			node = nodeTree.pollFirstEntry().getValue();
-			focusNode = node.nodeID;
-			wetPaint = node.getPaint();
+			focusNode = frontier.pop();
+			wetPaint = frontier.paint(focusNode);
 
 
 			// Keep part of the available paint on this node, distribute the rest
 			bcv.add(focusNode, (alpha * wetPaint));
 
-			neighbors = vertexNeighborhood[focusNode];
-			edges = edgeNeighborhood[focusNode];
-
-			totalWeight = getTotalWeight(neighbors, edges, -1);
+			totalWeight = adjacency.totalWeight(focusNode);
 
-			for (int i = 0; i < neighbors.length; i++) {
+			neighbors.reset(focusNode);
+			while (neighbors.next()) {
 
-				float weight = graph.getEdgeWeightProperty().getValueAsFloat(edges[i]);
-				partialWetPaint = (1 - alpha) * wetPaint * (weight / totalWeight);
+				partialWetPaint = (1 - alpha) * wetPaint * (neighbors.weight() / totalWeight);
 
 				// Stopping early here increases stability in GloVe
 				if(partialWetPaint < epsilon) continue;
 
-				// Log(n) time lookup
-				if (nodeTree.containsKey(neighbors[i])) {
-					nodeTree.get(neighbors[i]).addPaint(partialWetPaint);
-				} else {
-					nodeTree.put(neighbors[i], new PaintedNode(neighbors[i], partialWetPaint));
-				}
-
+				frontier.push(neighbors.neighbor(), partialWetPaint, focusNode);
 			}
 		}
-		return bcv;
+		return finish(frontier, bcv);
 	}
 }
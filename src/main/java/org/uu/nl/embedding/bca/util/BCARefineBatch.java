@@ -0,0 +1,60 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.bca.jobs.ForwardPush;
+
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
+
+/**
+ * Like {@link BCABatch}, but also keeps the complete state of forward push for every bookmark, so that a later run
+ * with a smaller epsilon can continue from it (see {@link ResidualStore})
+ * @author Jurian Baas
+ */
+public class BCARefineBatch implements Callable<Integer> {
+
+	private final int[] order;
+	private final int from, to;
+	private final IntFunction<ForwardPush> jobs;
+	private final ThreadLocal<CoOccurrenceBuffer> buffers, estimates, residuals;
+	private final int topK;
+	private final boolean renormalize;
+
+	/**
+	 * @param jobs Creates the job for a focus index, which keeps its residuals
+	 * @param estimates The buffer for the estimates of each worker thread, before normalization
+	 * @param residuals The buffer for the residuals of each worker thread
+	 * @see BCABatch#BCABatch
+	 */
+	public BCARefineBatch(int[] order, int from, int to, IntFunction<ForwardPush> jobs, ThreadLocal<CoOccurrenceBuffer> buffers,
+						  ThreadLocal<CoOccurrenceBuffer> estimates, ThreadLocal<CoOccurrenceBuffer> residuals,
+						  int topK, boolean renormalize) {
+		this.order = order;
+		this.from = from;
+		this.to = to;
+		this.jobs = jobs;
+		this.buffers = buffers;
+		this.estimates = estimates;
+		this.residuals = residuals;
+		this.topK = topK;
+		this.renormalize = renormalize;
+	}
+
+	/**
+	 * @return The number of bookmarks that were processed
+	 */
+	@Override
+	public Integer call() {
+		final CoOccurrenceBuffer buffer = buffers.get();
+		for (int b = from; b < to; b++) {
+
+			final int i = order[b];
+			final ForwardPush job = jobs.apply(i);
+			final BCV bcv = job.call();
+			// The state is written before normalization changes the estimates
+			estimates.get().add(i, bcv);
+			residuals.get().add(i, job.residuals());
+			BCABatch.write(buffer, i, bcv, topK, renormalize);
+		}
+		return to - from;
+	}
+}
@@ -1,20 +1,15 @@
 package org.uu.nl.embedding.bca.util;
 
-import org.uu.nl.embedding.util.config.Configuration;
-import org.uu.nl.embedding.util.rnd.ExtendedRandom;
-
-import java.util.HashMap;
+import org.uu.nl.embedding.util.IntFloatHashMap;
 
 
 /**
- * This class represents a bookmark coloring vector
+ * This class represents a bookmark coloring vector. The paint is stored in a primitive open addressing map so that
+ * depositing paint does not box keys or values.
  * @author Jurian Baas
  *
  */
-public class BCV extends HashMap<Integer, Float> {
-
-	private static final ExtendedRandom random = Configuration.getThreadLocalRandom();
-	private static final long serialVersionUID = 1L;
+public class BCV extends IntFloatHashMap {
 
 	private final int rootNode;
 
@@ -28,12 +23,10 @@ public class BCV extends HashMap<Integer, Float> {
 
 	@Override
 	public String toString() {
-		//Float[] values = entrySet().stream().sorted(Entry.comparingByKey()).map(Entry::getValue).toArray(Float[]::new);
-		//int maxKey = keySet().stream().max(Integer::compareTo).orElse(0);
 		StringBuilder s = new StringBuilder();
-		for(int i = 0; i < size(); i++) {
-			Float f = get(i);
-			s.append(f == null ? "\t\t\t\t": 	"\t" + i + ": " + f);
+		for(int slot = 0; slot < capacity(); slot++) {
+			if(!isUsed(slot)) continue;
+			s.append("\t").append(keyAt(slot)).append(": ").append(valueAt(slot));
 		}
 		return rootNode + ":\t" + s.toString();
 	}
@@ -45,7 +38,7 @@ public class BCV extends HashMap<Integer, Float> {
 	 * @param value value to be associated with the specified key
 	 */
 	public void add(int key, float value) {
-		super.put(key, getOrDefault(key, 0f) + value);
+		addTo(key, value);
 	}
 
 	/**
@@ -64,8 +57,8 @@ public class BCV extends HashMap<Integer, Float> {
 	public void toCounts() {
 		final float aMax = max();
 		final float aMin = min();
-		for(Entry<Integer, Float> entry : entrySet()) {
-			entry.setValue(scale(entry.getValue(), aMax, aMin));
+		for(int slot = 0; slot < capacity(); slot++) {
+			if(isUsed(slot)) setValueAt(slot, scale(valueAt(slot), aMax, aMin));
 		}
 		remove(rootNode);
 	}
@@ -76,24 +69,33 @@ public class BCV extends HashMap<Integer, Float> {
 	public BCV toUnity() {
 		remove(rootNode);
 		final float sum = sum();
-		for(Entry<Integer, Float> entry : entrySet()) {
-			entry.setValue(entry.getValue() / sum - 1e-6f);
+		for(int slot = 0; slot < capacity(); slot++) {
+			if(isUsed(slot)) setValueAt(slot, valueAt(slot) / sum - 1e-6f);
 		}
 		return this;
 	}
 
+	/**
+	 * Removes the root node and keeps only the k heaviest of the remaining nodes
+	 * @return The amount of paint that was discarded, not counting the root node
+	 */
+	public float retainTop(int k) {
+		remove(rootNode);
+		return retainLargest(k);
+	}
+
 	/**
 	 * @return The minimum value for this BCV
 	 */
 	private float min() {
-		return values().stream().min(Float::compareTo).orElse(0f);
+		return min(0f);
 	}
 
 	/**
 	 * @return The maximum value for this BCV
 	 */
 	public float max() {
-		return values().stream().max(Float::compareTo).orElse(1f);
+		return max(1f);
 	}
 
 	/**
@@ -102,13 +104,6 @@ public class BCV extends HashMap<Integer, Float> {
 	private float scale(float a, float aMax, float aMin) {
 		return (a / ((aMax - aMin) / ((float) 1000 - (float) 1))) + (float) 1;
 	}
-
-	/**
-	 * @return The total sum of all values in this BCV
-	 */
-    private float sum() {
-    	return values().stream().reduce(Float::sum).orElse(0f);
-	}
 	
 	/**
 	 * Merge this BCV with another BCV (usually using the same root-node
@@ -116,7 +111,9 @@ public class BCV extends HashMap<Integer, Float> {
 	 * @param other The other BCV
 	 */
 	public void merge(BCV other) {
-		other.forEach((key, value2) -> this.merge(key, value2, Float::sum));
+		for(int slot = 0; slot < other.capacity(); slot++) {
+			if(other.isUsed(slot)) addTo(other.keyAt(slot), other.valueAt(slot));
+		}
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.Arrays;
+
+/**
+ * The working memory of a block job, which spreads the paint of several bookmarks at once. Every touched vertex gets
+ * a slot, and every slot holds one residual and one estimate per bookmark (lane) in consecutive floats, so all lanes
+ * of a vertex are updated together when one of its edges is read. Slots are handed out in the order vertices are
+ * touched and the slot arrays grow when needed, so their size follows the union of the neighborhoods of the block
+ * instead of the graph. Like {@link PaintFrontier}, each worker thread reuses one instance for all of its blocks.
+ * <p>
+ * Each slot also keeps the residual a lane needs before it is pushed, which is epsilon times the weight of the vertex,
+ * and a bit mask of the lanes that reached it, so processing a slot only visits the lanes that are pushed.
+ * </p>
+ * @author Jurian Baas
+ */
+public class BlockFrontier {
+
+	private static final int NO_SLOT = -1;
+	private static final int INITIAL_SLOTS = 1024;
+
+	private final int lanes;
+	/**
+	 * The number of longs in the bit mask of a slot
+	 */
+	private final int words;
+	private final Adjacency adjacency;
+	private final double epsilon;
+	/**
+	 * The slot of each vertex, or NO_SLOT if it was not touched since the last reset
+	 */
+	private final int[] slot;
+	private final int[] queue;
+	private int head, size;
+	private int[] vertex;
+	private boolean[] queued;
+	private float[] residuals, estimates;
+	private float[] thresholds;
+	private long[] ready;
+	private int used;
+	private long pops;
+
+	/**
+	 * @param numVertices The number of vertices in the graph
+	 * @param lanes The maximum number of bookmarks in a block
+	 * @param epsilon A lane is pushed once its residual reaches epsilon times the weight of the vertex
+	 */
+	public BlockFrontier(Adjacency adjacency, int lanes, double epsilon) {
+		final int numVertices = adjacency.vertexCount();
+		this.lanes = lanes;
+		this.words = (lanes + Long.SIZE - 1) / Long.SIZE;
+		this.adjacency = adjacency;
+		this.epsilon = epsilon;
+		this.slot = new int[numVertices];
+		this.queue = new int[Math.max(numVertices, 1)];
+		Arrays.fill(slot, NO_SLOT);
+		this.vertex = new int[INITIAL_SLOTS];
+		this.queued = new boolean[INITIAL_SLOTS];
+		this.residuals = new float[INITIAL_SLOTS * lanes];
+		this.estimates = new float[INITIAL_SLOTS * lanes];
+		this.thresholds = new float[INITIAL_SLOTS];
+		this.ready = new long[INITIAL_SLOTS * words];
+	}
+
+	public int lanes() {
+		return lanes;
+	}
+
+	/**
+	 * The bit mask of a slot starts at {@code slot * words()} in {@link #ready()}
+	 */
+	public int words() {
+		return words;
+	}
+
+	/**
+	 * The lanes of a slot start at {@code slot * lanes()} in {@link #residuals()} and {@link #estimates()}. Taking
+	 * a new slot may replace both arrays, so they have to be fetched again afterwards.
+	 * @return The slot of a vertex, taking a new one if the vertex was not touched yet
+	 */
+	public int slot(int node) {
+		final int s = slot[node];
+		if (s != NO_SLOT) return s;
+		if (used == vertex.length) grow();
+		vertex[used] = node;
+		thresholds[used] = (float) (epsilon * adjacency.totalWeight(node));
+		slot[node] = used;
+		return used++;
+	}
+
+	public int vertex(int slot) {
+		return vertex[slot];
+	}
+
+	/**
+	 * @return The number of slots in use
+	 */
+	public int used() {
+		return used;
+	}
+
+	public float[] residuals() {
+		return residuals;
+	}
+
+	public float[] estimates() {
+		return estimates;
+	}
+
+	/**
+	 * @return The residual a lane of the slot needs before it is pushed
+	 */
+	public float threshold(int slot) {
+		return thresholds[slot];
+	}
+
+	/**
+	 * @return The bit masks of the lanes whose residual reached the threshold of their slot, which can be replaced by
+	 * taking a new slot like {@link #residuals()}
+	 */
+	public long[] ready() {
+		return ready;
+	}
+
+	/**
+	 * Mark a lane of a slot as ready to be pushed
+	 */
+	public void ready(int slot, int lane) {
+		ready[slot * words + (lane >>> 6)] |= 1L << lane;
+	}
+
+	/**
+	 * Queue a slot if it is not queued already
+	 */
+	public void offer(int slot) {
+		if (queued[slot]) return;
+		queued[slot] = true;
+		int tail = head + size;
+		if (tail >= queue.length) tail -= queue.length;
+		queue[tail] = slot;
+		size++;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The next queued slot, in the order in which they were queued
+	 */
+	public int pop() {
+		final int s = queue[head];
+		if (++head == queue.length) head = 0;
+		size--;
+		queued[s] = false;
+		pops++;
+		return s;
+	}
+
+	/**
+	 * @return The number of slots taken from the queue over all blocks
+	 */
+	public long pops() {
+		return pops;
+	}
+
+	/**
+	 * Clear all slots used since the last reset, so the frontier can be used for the next block
+	 */
+	public void reset() {
+		for (int s = 0; s < used; s++) {
+			slot[vertex[s]] = NO_SLOT;
+			queued[s] = false;
+		}
+		Arrays.fill(residuals, 0, used * lanes, 0);
+		Arrays.fill(estimates, 0, used * lanes, 0);
+		Arrays.fill(ready, 0, used * words, 0);
+		used = 0;
+		head = size = 0;
+	}
+
+	private void grow() {
+		final int capacity = vertex.length * 2;
+		vertex = Arrays.copyOf(vertex, capacity);
+		queued = Arrays.copyOf(queued, capacity);
+		residuals = Arrays.copyOf(residuals, capacity * lanes);
+		estimates = Arrays.copyOf(estimates, capacity * lanes);
+		thresholds = Arrays.copyOf(thresholds, capacity);
+		ready = Arrays.copyOf(ready, capacity * words);
+	}
+}
@@ -0,0 +1,73 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.Arrays;
+
+/**
+ * Decides in which order bookmarks are handed to the workers. The cost of a bookmark is estimated by the number of
+ * edges within two hops, which is the sum of the degrees of the bookmark and its neighbors. Bookmarks are sorted in
+ * cost classes that differ by a factor of 2, the most expensive class first, so the longest jobs do not start when
+ * the other workers are already idle. Within a class, bookmarks that share their highest degree neighbor are placed
+ * next to each other, so they end up in the same batch and that neighborhood stays in the cache of one core.
+ * @author Jurian Baas
+ */
+public class BookmarkScheduler {
+
+	private static final int COST_CLASSES = 64;
+
+	private BookmarkScheduler() {}
+
+	/**
+	 * @param adjacency The graph
+	 * @param bookmarks The vertex id of each focus index
+	 * @param order The focus indices of the bookmarks to schedule
+	 * @return The same focus indices, in the order in which they should be processed
+	 */
+	public static int[] schedule(Adjacency adjacency, int[] bookmarks, int[] order) {
+
+		final int[] costClass = new int[order.length];
+		final int[] anchor = new int[order.length];
+		final int[] classSize = new int[COST_CLASSES];
+		final Adjacency.Cursor cursor = adjacency.cursor();
+
+		for (int i = 0; i < order.length; i++) {
+			final int bookmark = bookmarks[order[i]];
+
+			long cost = adjacency.degree(bookmark);
+			int hub = bookmark, hubDegree = -1;
+			cursor.reset(bookmark);
+			while (cursor.next()) {
+				final int neighbor = cursor.neighbor();
+				final int degree = adjacency.degree(neighbor);
+				cost += degree;
+				if (degree > hubDegree || (degree == hubDegree && neighbor < hub)) {
+					hub = neighbor;
+					hubDegree = degree;
+				}
+			}
+
+			// Most expensive class first
+			costClass[i] = Long.numberOfLeadingZeros(Math.max(cost, 1));
+			anchor[i] = hub;
+			classSize[costClass[i]]++;
+		}
+
+		final long[][] classes = new long[COST_CLASSES][];
+		for (int c = 0; c < COST_CLASSES; c++) classes[c] = new long[classSize[c]];
+		Arrays.fill(classSize, 0);
+		for (int i = 0; i < order.length; i++) {
+			final int c = costClass[i];
+			classes[c][classSize[c]++] = ((long) anchor[i] << 32) | order[i];
+		}
+
+		final int[] scheduled = new int[order.length];
+		int n = 0;
+		for (long[] entries : classes) {
+			// Bookmarks with the same anchor become neighbors in the schedule
+			Arrays.sort(entries);
+			for (long entry : entries) scheduled[n++] = (int) entry;
+		}
+		return scheduled;
+	}
+}
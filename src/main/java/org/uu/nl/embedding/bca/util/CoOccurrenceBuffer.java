@@ -0,0 +1,112 @@
+package org.uu.nl.embedding.bca.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the co-occurrences produced by one worker thread in three primitive columns (focus index, context index
+ * and value). The columns grow in fixed size chunks, so growing never copies what was already written. When BCA is
+ * done the chunks of all workers are concatenated into the final co-occurrence arrays.
+ * @author Jurian Baas
+ */
+public class CoOccurrenceBuffer {
+
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final List<int[]> focusChunks = new ArrayList<>();
+	private final List<int[]> contextChunks = new ArrayList<>();
+	private final List<float[]> valueChunks = new ArrayList<>();
+
+	private int[] focus, context;
+	private float[] values;
+	private int position = CHUNK_SIZE;
+	private long size;
+	private float max;
+	private double keptMass, discardedMass;
+
+	/**
+	 * Write all entries of a coloring vector
+	 * @param focusIndex The focus index of the bookmark the vector belongs to
+	 * @param bcv The coloring vector
+	 */
+	public void add(int focusIndex, BCV bcv) {
+		for (int slot = 0; slot < bcv.capacity(); slot++) {
+			if (bcv.isUsed(slot)) add(focusIndex, bcv.keyAt(slot), bcv.valueAt(slot));
+		}
+	}
+
+	public void add(int focusIndex, int contextIndex, float value) {
+		if (position == CHUNK_SIZE) grow();
+		focus[position] = focusIndex;
+		context[position] = contextIndex;
+		values[position] = value;
+		position++;
+		size++;
+	}
+
+	/**
+	 * Keep track of the largest co-occurrence value seen by this worker
+	 */
+	public void updateMax(float value) {
+		this.max = Math.max(max, value);
+	}
+
+	public float max() {
+		return max;
+	}
+
+	/**
+	 * Keep track of how much paint survived and how much was discarded by top-k selection
+	 */
+	public void addMass(float kept, float discarded) {
+		this.keptMass += kept;
+		this.discardedMass += discarded;
+	}
+
+	public double keptMass() {
+		return keptMass;
+	}
+
+	public double discardedMass() {
+		return discardedMass;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Copy all entries to the final columns and release the chunks as soon as they are copied
+	 * @return The offset after the last copied entry
+	 */
+	public int drainInto(int[] focusColumn, int[] contextColumn, float[] valueColumn, int offset) {
+		for (int c = 0; c < focusChunks.size(); c++) {
+			final int length = (c == focusChunks.size() - 1) ? position : CHUNK_SIZE;
+			System.arraycopy(focusChunks.get(c), 0, focusColumn, offset, length);
+			System.arraycopy(contextChunks.get(c), 0, contextColumn, offset, length);
+			System.arraycopy(valueChunks.get(c), 0, valueColumn, offset, length);
+			focusChunks.set(c, null);
+			contextChunks.set(c, null);
+			valueChunks.set(c, null);
+			offset += length;
+		}
+		focusChunks.clear();
+		contextChunks.clear();
+		valueChunks.clear();
+		focus = context = null;
+		values = null;
+		position = CHUNK_SIZE;
+		size = 0;
+		return offset;
+	}
+
+	private void grow() {
+		focus = new int[CHUNK_SIZE];
+		context = new int[CHUNK_SIZE];
+		values = new float[CHUNK_SIZE];
+		focusChunks.add(focus);
+		contextChunks.add(context);
+		valueChunks.add(values);
+		position = 0;
+	}
+}
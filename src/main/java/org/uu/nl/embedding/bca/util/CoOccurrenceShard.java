@@ -0,0 +1,97 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.write.WritableUtils;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * The co-occurrences of a range of bookmarks, written by a worker process in sharded mode and merged by the process
+ * that started it. Every worker converts the graph itself, so the header holds enough about the graph and the bookmarks
+ * to detect that a shard does not belong to the graph of the merging process. Entries are written in runs that share
+ * the same focus index.
+ * @author Jurian Baas
+ */
+public class CoOccurrenceShard {
+
+	private static final int VERSION = 1;
+
+	private CoOccurrenceShard() {}
+
+	public static File file(File directory, int shard, int shards) {
+		return new File(directory, "shard-" + shard + "-of-" + shards + ".bin");
+	}
+
+	/**
+	 * @param settings The BCA settings, see {@link CoOccurrenceStore#settings}
+	 * @param vertices The number of vertices in the graph
+	 * @param bookmarks The vertex id of each focus index
+	 * @param from The first focus index of this shard
+	 * @param to The focus index after the last one of this shard
+	 */
+	public static void write(File file, String settings, int vertices, int[] bookmarks, int from, int to,
+							 int[] I, int[] J, float[] C) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			WritableUtils.writeString(out, settings);
+			WritableUtils.writeVLong(out, vertices);
+			WritableUtils.writeVLong(out, bookmarks.length);
+			out.writeInt(Arrays.hashCode(bookmarks));
+			WritableUtils.writeVLong(out, from);
+			WritableUtils.writeVLong(out, to);
+			WritableUtils.writeVLong(out, I.length);
+
+			int i = 0;
+			while (i < I.length) {
+				int end = i + 1;
+				while (end < I.length && I[end] == I[i]) end++;
+				WritableUtils.writeVLong(out, I[i]);
+				WritableUtils.writeVLong(out, end - i);
+				for (; i < end; i++) {
+					WritableUtils.writeVLong(out, J[i]);
+					out.writeFloat(C[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a shard into a buffer, after checking that it was created with the same settings, graph and bookmarks
+	 * @param from The first focus index this shard should hold
+	 * @param to The focus index after the last one this shard should hold
+	 */
+	public static void read(File file, String settings, int vertices, int[] bookmarks, int from, int to,
+							CoOccurrenceBuffer buffer) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			final int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported co-occurrence shard version: " + version);
+			final String shardSettings = WritableUtils.readString(in);
+			if (!shardSettings.equals(settings)) {
+				throw new IOException("Shard " + file + " was created with different settings: " + shardSettings);
+			}
+			if (WritableUtils.readVLong(in) != vertices || WritableUtils.readVLong(in) != bookmarks.length
+					|| in.readInt() != Arrays.hashCode(bookmarks)) {
+				throw new IOException("Shard " + file + " was created from a different graph");
+			}
+			if (WritableUtils.readVLong(in) != from || WritableUtils.readVLong(in) != to) {
+				throw new IOException("Shard " + file + " does not hold bookmarks " + from + " to " + to);
+			}
+
+			final long count = WritableUtils.readVLong(in);
+			long read = 0;
+			while (read < count) {
+				final int focus = (int) WritableUtils.readVLong(in);
+				final long length = WritableUtils.readVLong(in);
+				for (long i = 0; i < length; i++) {
+					final int context = (int) WritableUtils.readVLong(in);
+					final float value = in.readFloat();
+					buffer.add(focus, context, value);
+					buffer.updateMax(value);
+				}
+				read += length;
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.write.WritableUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The coloring vectors of all bookmarks, kept on disk between runs so that a later run only has to recompute the
+ * bookmarks affected by changes to the graph. Vertex ids are not stable between conversions of the data, so vertices
+ * are written by their key (see {@link InMemoryRdfGraph#getVertexKey(int)}) and rows are stored per bookmark.
+ * @author Jurian Baas
+ */
+public class CoOccurrenceStore {
+
+	private static final int VERSION = 1;
+
+	private final String settings;
+	/**
+	 * The key of every vertex id used in this store
+	 */
+	private final String[] keys;
+	/**
+	 * The vertex id of the bookmark of each row
+	 */
+	private final int[] bookmarks;
+	/**
+	 * Row r is found in the range [rowStart[r], rowStart[r + 1]) of the context and value columns
+	 */
+	private final int[] rowStart;
+	private final int[] contexts;
+	private final float[] values;
+
+	private CoOccurrenceStore(String settings, String[] keys, int[] bookmarks, int[] rowStart, int[] contexts, float[] values) {
+		this.settings = settings;
+		this.keys = keys;
+		this.bookmarks = bookmarks;
+		this.rowStart = rowStart;
+		this.contexts = contexts;
+		this.values = values;
+	}
+
+	/**
+	 * A stored vector can only be reused when it was created with the same settings
+	 */
+	public static String settings(Configuration.BCA bca) {
+		return String.format(Locale.ROOT, "%s alpha=%s epsilon=%s walks=%d tolerance=%s topK=%d renormalize=%b hubs=%d aliasDegree=%d aliasSamples=%d budget=%d/%d/%d/%s twoLevel=%b/%d/%d/%d",
+				bca.getEngineEnum(), bca.getAlpha(), bca.getEpsilon(), bca.getWalks(), bca.getWalkTolerance(),
+				bca.getTopK(), bca.isRenormalize(), bca.getHubs(), bca.getAliasDegree(), bca.getAliasSamples(),
+				bca.getBudgetTouched(), bca.getBudgetPushes(), bca.getBudgetNanos(), bca.getBudgetLeftoverEnum(),
+				bca.isTwoLevel(), bca.getNearHops(), bca.getClusterSize(), bca.getClusterIterations());
+	}
+
+	public String settings() {
+		return settings;
+	}
+
+	public int keyCount() {
+		return keys.length;
+	}
+
+	public String key(int storedVertex) {
+		return keys[storedVertex];
+	}
+
+	public int rows() {
+		return bookmarks.length;
+	}
+
+	public int bookmark(int row) {
+		return bookmarks[row];
+	}
+
+	public int rowStart(int row) {
+		return rowStart[row];
+	}
+
+	public int rowEnd(int row) {
+		return rowStart[row + 1];
+	}
+
+	public int context(int i) {
+		return contexts[i];
+	}
+
+	public float value(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Write the co-occurrences grouped by bookmark
+	 * @param focus2context The vertex id of each focus index
+	 * @param I The focus index column
+	 * @param J The context index column, which are vertex ids
+	 * @param C The value column
+	 */
+	public static void write(File file, String settings, InMemoryRdfGraph graph, int[] focus2context,
+							 int[] I, int[] J, float[] C) throws IOException {
+
+		final int rows = focus2context.length;
+		final int count = I.length;
+
+		// Counting sort on the focus index, so each row can be written in one piece
+		final int[] start = new int[rows + 1];
+		for (int i = 0; i < count; i++) start[I[i] + 1]++;
+		for (int r = 0; r < rows; r++) start[r + 1] += start[r];
+		final int[] next = new int[rows];
+		System.arraycopy(start, 0, next, 0, rows);
+		final int[] sorted = new int[count];
+		for (int i = 0; i < count; i++) sorted[next[I[i]]++] = i;
+
+		final int vertices = graph.getVertices().size();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			WritableUtils.writeString(out, settings);
+
+			WritableUtils.writeVLong(out, vertices);
+			for (int v = 0; v < vertices; v++) WritableUtils.writeString(out, graph.getVertexKey(v));
+
+			WritableUtils.writeVLong(out, rows);
+			for (int r = 0; r < rows; r++) {
+				WritableUtils.writeVLong(out, focus2context[r]);
+				WritableUtils.writeVLong(out, start[r + 1] - start[r]);
+				for (int s = start[r]; s < start[r + 1]; s++) {
+					WritableUtils.writeVLong(out, J[sorted[s]]);
+					out.writeFloat(C[sorted[s]]);
+				}
+			}
+		}
+	}
+
+	public static CoOccurrenceStore read(File file) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			final int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported co-occurrence store version: " + version);
+			final String settings = WritableUtils.readString(in);
+
+			final String[] keys = new String[(int) WritableUtils.readVLong(in)];
+			for (int v = 0; v < keys.length; v++) keys[v] = WritableUtils.readString(in);
+
+			final int rows = (int) WritableUtils.readVLong(in);
+			final int[] bookmarks = new int[rows];
+			final int[] rowStart = new int[rows + 1];
+			int[] contexts = new int[Math.max(16, rows)];
+			float[] values = new float[contexts.length];
+
+			int size = 0;
+			for (int r = 0; r < rows; r++) {
+				bookmarks[r] = (int) WritableUtils.readVLong(in);
+				final int length = (int) WritableUtils.readVLong(in);
+				if (size + length > contexts.length) {
+					final int capacity = Math.max(size + length, contexts.length + (contexts.length >> 1));
+					contexts = Arrays.copyOf(contexts, capacity);
+					values = Arrays.copyOf(values, capacity);
+				}
+				for (int i = 0; i < length; i++) {
+					contexts[size] = (int) WritableUtils.readVLong(in);
+					values[size] = in.readFloat();
+					size++;
+				}
+				rowStart[r + 1] = size;
+			}
+			return new CoOccurrenceStore(settings, keys, bookmarks, rowStart,
+					Arrays.copyOf(contexts, size), Arrays.copyOf(values, size));
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.CSRAdjacency;
+
+import java.util.Arrays;
+
+/**
+ * Groups the vertices of a graph into small clusters with size-bounded label propagation, and builds the coarse graph
+ * whose vertices are the clusters. Two clusters are connected with the total weight of the edges between their members.
+ * Edges within a cluster are not part of the coarse graph, their weight is kept per cluster instead. Paint that
+ * reaches a cluster is spread back to its members in proportion to their total edge weight, which is where a walk that
+ * entered the cluster would most likely end up.
+ * @author Jurian Baas
+ */
+public class Coarsening {
+
+	private final int[] cluster;
+	private final CSRAdjacency coarse;
+	/**
+	 * The members of cluster c are found in the range [memberStart[c], memberStart[c + 1]), sorted by decreasing share
+	 */
+	private final int[] memberStart;
+	private final int[] members;
+	private final float[] shares;
+	/**
+	 * The share of the total edge weight of the members of each cluster that stays within the cluster
+	 */
+	private final double[] internalShare;
+
+	/**
+	 * @param adjacency The graph
+	 * @param maxSize The maximum number of vertices in a cluster
+	 * @param iterations The number of label propagation rounds
+	 */
+	public Coarsening(Adjacency adjacency, int maxSize, int iterations) {
+
+		final int n = adjacency.vertexCount();
+		final int[] label = new int[n];
+		final int[] size = new int[n];
+		for (int v = 0; v < n; v++) {
+			label[v] = v;
+			size[v] = 1;
+		}
+
+		// The weight towards each label among the neighbors of one vertex
+		final double[] labelWeight = new double[n];
+		final int[] seen = new int[n];
+		final Adjacency.Cursor cursor = adjacency.cursor();
+
+		for (int round = 0; round < iterations; round++) {
+			int moved = 0;
+			for (int v = 0; v < n; v++) {
+				int seenCount = 0;
+				cursor.reset(v);
+				while (cursor.next()) {
+					final int l = label[cursor.neighbor()];
+					if (labelWeight[l] == 0) seen[seenCount++] = l;
+					labelWeight[l] += cursor.weight();
+				}
+
+				// Move to the heaviest label that still has room, staying put wins ties
+				int best = label[v];
+				double bestWeight = labelWeight[best];
+				for (int i = 0; i < seenCount; i++) {
+					final int l = seen[i];
+					if (labelWeight[l] > bestWeight && size[l] < maxSize) {
+						best = l;
+						bestWeight = labelWeight[l];
+					}
+					labelWeight[l] = 0;
+				}
+				labelWeight[label[v]] = 0;
+
+				if (best != label[v]) {
+					size[label[v]]--;
+					size[best]++;
+					label[v] = best;
+					moved++;
+				}
+			}
+			if (moved == 0) break;
+		}
+
+		// Number the clusters consecutively
+		final int[] id = new int[n];
+		Arrays.fill(id, -1);
+		int clusters = 0;
+		this.cluster = new int[n];
+		for (int v = 0; v < n; v++) {
+			if (id[label[v]] == -1) id[label[v]] = clusters++;
+			cluster[v] = id[label[v]];
+		}
+
+		// Members grouped per cluster, sorted by their total weight
+		this.memberStart = new int[clusters + 1];
+		for (int v = 0; v < n; v++) memberStart[cluster[v] + 1]++;
+		for (int c = 0; c < clusters; c++) memberStart[c + 1] += memberStart[c];
+		final int[] next = Arrays.copyOf(memberStart, clusters);
+		this.members = new int[n];
+		for (int v = 0; v < n; v++) members[next[cluster[v]]++] = v;
+
+		this.shares = new float[n];
+		this.internalShare = new double[clusters];
+		final double[] clusterWeight = new double[clusters];
+		for (int c = 0; c < clusters; c++) {
+			final int start = memberStart[c], end = memberStart[c + 1];
+			final long[] sorted = new long[end - start];
+			double total = 0;
+			for (int i = start; i < end; i++) {
+				final float weight = (float) adjacency.totalWeight(members[i]);
+				total += weight;
+				// Weights are positive so their bits sort the same, keep the vertex id in the lower bits
+				sorted[i - start] = ((long) Float.floatToIntBits(weight) << 32) | members[i];
+			}
+			Arrays.sort(sorted);
+			clusterWeight[c] = total;
+			for (int i = start; i < end; i++) {
+				final long entry = sorted[sorted.length - 1 - (i - start)];
+				members[i] = (int) entry;
+				// A cluster without edges spreads its paint evenly
+				shares[i] = total == 0 ? 1f / (end - start) : (float) (Float.intBitsToFloat((int) (entry >>> 32)) / total);
+			}
+		}
+
+		this.coarse = coarseGraph(adjacency, clusters);
+		for (int c = 0; c < clusters; c++) {
+			if (clusterWeight[c] > 0) internalShare[c] = 1 - coarse.totalWeight(c) / clusterWeight[c];
+		}
+	}
+
+	/**
+	 * Sum the weights of all edges between each pair of different clusters
+	 */
+	private CSRAdjacency coarseGraph(Adjacency adjacency, int clusters) {
+
+		final double[] weight = new double[clusters];
+		final int[] seen = new int[clusters];
+		final Adjacency.Cursor cursor = adjacency.cursor();
+
+		final int[] offsets = new int[clusters + 1];
+		int[] neighbors = new int[Math.max(16, clusters)];
+		float[] weights = new float[neighbors.length];
+		int size = 0;
+
+		for (int c = 0; c < clusters; c++) {
+			int seenCount = 0;
+			for (int i = memberStart[c]; i < memberStart[c + 1]; i++) {
+				cursor.reset(members[i]);
+				while (cursor.next()) {
+					final int d = cluster[cursor.neighbor()];
+					if (d == c) continue;
+					if (weight[d] == 0) seen[seenCount++] = d;
+					weight[d] += cursor.weight();
+				}
+			}
+
+			// The coarse graph keeps the neighbors of a vertex sorted, like every other adjacency
+			Arrays.sort(seen, 0, seenCount);
+			if (size + seenCount > neighbors.length) {
+				final int capacity = Math.max(size + seenCount, neighbors.length + (neighbors.length >> 1));
+				neighbors = Arrays.copyOf(neighbors, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+			}
+			for (int i = 0; i < seenCount; i++) {
+				neighbors[size] = seen[i];
+				weights[size] = (float) weight[seen[i]];
+				weight[seen[i]] = 0;
+				size++;
+			}
+			offsets[c + 1] = size;
+		}
+		return new CSRAdjacency(offsets, Arrays.copyOf(neighbors, size), Arrays.copyOf(weights, size));
+	}
+
+	public int cluster(int vertex) {
+		return cluster[vertex];
+	}
+
+	public int clusterCount() {
+		return coarse.vertexCount();
+	}
+
+	/**
+	 * @return The vertices in a cluster, by decreasing total edge weight
+	 */
+	public int[] members(int cluster) {
+		return Arrays.copyOfRange(members, memberStart[cluster], memberStart[cluster + 1]);
+	}
+
+	/**
+	 * @return The share of the edge weight of the members of a cluster that stays within the cluster
+	 */
+	public double internalShare(int cluster) {
+		return internalShare[cluster];
+	}
+
+	/**
+	 * @return The graph of the clusters
+	 */
+	public Adjacency coarse() {
+		return coarse;
+	}
+
+	/**
+	 * Add the paint of a cluster to its members, in proportion to their total edge weight
+	 * @param minimum Member shares below this are left out
+	 */
+	public void spread(int cluster, double paint, BCV bcv, double minimum) {
+		for (int i = memberStart[cluster]; i < memberStart[cluster + 1]; i++) {
+			final double value = paint * shares[i];
+			if (value < minimum) break;
+			bcv.add(members[i], value);
+		}
+	}
+}
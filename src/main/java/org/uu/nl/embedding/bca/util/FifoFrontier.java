@@ -0,0 +1,46 @@
+package org.uu.nl.embedding.bca.util;
+
+/**
+ * Hands out nodes in the order in which they were queued, using a ring buffer. A node is queued at most once at a
+ * time, so the buffer never holds more than one entry per vertex.
+ * @author Jurian Baas
+ */
+public class FifoFrontier extends PaintFrontier {
+
+	private static final int QUEUED = 0;
+
+	private final int[] queue;
+	private int head, size;
+
+	public FifoFrontier(int numVertices) {
+		super(numVertices);
+		this.queue = new int[Math.max(numVertices, 1)];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	protected void enqueue(int node) {
+		int tail = head + size;
+		if (tail >= queue.length) tail -= queue.length;
+		queue[tail] = node;
+		position[node] = QUEUED;
+		size++;
+	}
+
+	@Override
+	protected int dequeue() {
+		final int node = queue[head];
+		if (++head == queue.length) head = 0;
+		size--;
+		return node;
+	}
+
+	@Override
+	protected void clearQueue() {
+		head = size = 0;
+	}
+}
@@ -0,0 +1,184 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps the coloring vectors of the vertices with the highest degree. Paint that reaches a hub would be spread in the
+ * same way for every bookmark, only scaled by the amount that arrived, so a job can add the scaled vector of the hub
+ * instead of expanding the hub again. Vectors are kept up to a memory budget, the least recently used vector is
+ * evicted first and computed again when it is needed later.
+ * @author Jurian Baas
+ */
+public class HubCache {
+
+	/**
+	 * Rough size of the arrays and map entry of a cached vector, besides the entries themselves
+	 */
+	private static final long VECTOR_OVERHEAD = 96;
+
+	private final boolean[] hub;
+	private final int[] hubs;
+	private final long budget;
+	private final IntFunction<BCAJob> hubJobs;
+	private final LinkedHashMap<Integer, HubVector> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long used;
+	private long hits, misses, evictions;
+	/**
+	 * The number of times a job added a hub vector instead of expanding the hub
+	 */
+	private final LongAdder splices = new LongAdder();
+
+	/**
+	 * @param adjacency The graph
+	 * @param count The number of vertices with the highest degree that are treated as hubs
+	 * @param budget The maximum number of bytes used by cached vectors
+	 * @param hubJobs Creates the job that computes the vector of a hub, it must not use a hub cache itself
+	 */
+	public HubCache(Adjacency adjacency, int count, long budget, IntFunction<BCAJob> hubJobs) {
+
+		final int n = adjacency.vertexCount();
+		count = Math.min(count, n);
+
+		// Sort on degree and keep the vertex id in the lower bits
+		final long[] byDegree = new long[n];
+		for (int v = 0; v < n; v++) byDegree[v] = ((long) adjacency.degree(v) << 32) | v;
+		Arrays.sort(byDegree);
+
+		this.hub = new boolean[n];
+		this.hubs = new int[count];
+		for (int i = 0; i < count; i++) {
+			final int v = (int) byDegree[n - 1 - i];
+			hubs[i] = v;
+			hub[v] = true;
+		}
+		this.budget = budget;
+		this.hubJobs = hubJobs;
+	}
+
+	public boolean isHub(int node) {
+		return hub[node];
+	}
+
+	/**
+	 * Compute the vectors of the hubs in order of decreasing degree, until the memory budget is used up
+	 */
+	public void precompute(ExecutorService es) throws InterruptedException, ExecutionException {
+		final List<Callable<HubVector>> tasks = new ArrayList<>();
+		for (int h : hubs) {
+			tasks.add(() -> {
+				synchronized (this) {
+					if (used >= budget) return null;
+				}
+				return get(h);
+			});
+		}
+		for (Future<HubVector> future : es.invokeAll(tasks)) future.get();
+	}
+
+	/**
+	 * @return The coloring vector of a hub, computed now if it is not in the cache
+	 */
+	public HubVector get(int hub) {
+		synchronized (this) {
+			final HubVector vector = cache.get(hub);
+			if (vector != null) {
+				hits++;
+				return vector;
+			}
+			misses++;
+		}
+
+		// Computed outside the lock, two threads may compute the same hub but they will get the same result
+		final HubVector vector = new HubVector(hubJobs.apply(hub).call());
+
+		synchronized (this) {
+			if (vector.bytes() <= budget && !cache.containsKey(hub)) {
+				cache.put(hub, vector);
+				used += vector.bytes();
+				final Iterator<HubVector> eldest = cache.values().iterator();
+				while (used > budget) {
+					used -= eldest.next().bytes();
+					eldest.remove();
+					evictions++;
+				}
+			}
+		}
+		return vector;
+	}
+
+	/**
+	 * Add the vector of a hub to a coloring vector, instead of expanding the hub
+	 * @param paint The paint that arrived at the hub
+	 * @param minimum Scaled values below this are left out, see {@link HubVector#addTo(BCV, double, double)}
+	 */
+	public void splice(int hub, BCV bcv, double paint, double minimum) {
+		splices.increment();
+		get(hub).addTo(bcv, paint, minimum);
+	}
+
+	/**
+	 * The job pops a hub before it is spliced, so these are included in the pops of the frontiers
+	 */
+	public long splices() {
+		return splices.sum();
+	}
+
+	public synchronized String statistics() {
+		return String.format("%d hubs, %d cached vectors using %.1f MB, %d splices, %d hits, %d misses, %d evictions",
+				hubs.length, cache.size(), used / 1e6, splices(), hits, misses, evictions);
+	}
+
+	/**
+	 * The coloring vector of a hub in two compact arrays, sorted by decreasing value
+	 */
+	public static class HubVector {
+
+		private final int[] nodes;
+		private final float[] values;
+
+		HubVector(BCV bcv) {
+			// Sort on value and keep the node id in the lower bits, values are positive so their bits sort the same
+			final long[] sorted = new long[bcv.size()];
+			int i = 0;
+			for (int slot = 0; slot < bcv.capacity(); slot++) {
+				if (!bcv.isUsed(slot)) continue;
+				sorted[i++] = ((long) Float.floatToIntBits(bcv.valueAt(slot)) << 32) | bcv.keyAt(slot);
+			}
+			Arrays.sort(sorted);
+
+			this.nodes = new int[sorted.length];
+			this.values = new float[sorted.length];
+			for (i = 0; i < sorted.length; i++) {
+				final long entry = sorted[sorted.length - 1 - i];
+				nodes[i] = (int) entry;
+				values[i] = Float.intBitsToFloat((int) (entry >>> 32));
+			}
+		}
+
+		/**
+		 * Add this vector to another one, scaled by the paint that arrived at the hub
+		 * @param minimum Scaled values below this are left out. A job keeps alpha times the paint that arrives at a
+		 *                node, so alpha * epsilon cuts the scaled paint at epsilon, like the pushes below
+		 *                epsilon that are left out when the hub is expanded.
+		 */
+		public void addTo(BCV bcv, double paint, double minimum) {
+			for (int i = 0; i < nodes.length; i++) {
+				final double value = values[i] * paint;
+				if (value < minimum) break;
+				bcv.add(nodes[i], value);
+			}
+		}
+
+		long bytes() {
+			return VECTOR_OVERHEAD + 8L * nodes.length;
+		}
+	}
+}
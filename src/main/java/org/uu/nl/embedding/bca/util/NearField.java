@@ -0,0 +1,57 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.Adjacency;
+
+import java.util.Arrays;
+
+/**
+ * The vertices within a number of hops from a bookmark, found with a breadth first search. Vertices are marked with
+ * the number of the search instead of a flag, so nothing has to be cleared between bookmarks. Each worker thread
+ * reuses one instance.
+ * @author Jurian Baas
+ */
+public class NearField {
+
+	private final int[] mark;
+	private final int[] queue;
+	private int search;
+
+	public NearField(int numVertices) {
+		this.mark = new int[numVertices];
+		this.queue = new int[Math.max(numVertices, 1)];
+	}
+
+	/**
+	 * Mark all vertices within the given number of hops from the bookmark, forgetting the previous search
+	 */
+	public void search(Adjacency adjacency, int bookmark, int hops) {
+		if (++search == 0) {
+			// The search number wrapped around, old marks could be mistaken for new ones
+			Arrays.fill(mark, 0);
+			search = 1;
+		}
+
+		int head = 0, tail = 0;
+		mark[bookmark] = search;
+		queue[tail++] = bookmark;
+
+		final Adjacency.Cursor cursor = adjacency.cursor();
+		for (int hop = 0; hop < hops && head < tail; hop++) {
+			final int levelEnd = tail;
+			while (head < levelEnd) {
+				cursor.reset(queue[head++]);
+				while (cursor.next()) {
+					final int neighbor = cursor.neighbor();
+					if (mark[neighbor] != search) {
+						mark[neighbor] = search;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+	}
+
+	public boolean contains(int node) {
+		return mark[node] == search;
+	}
+}
@@ -0,0 +1,72 @@
+package org.uu.nl.embedding.bca.util;
+
+/**
+ * Hands out nodes in order of their id by a binary min-heap of node ids, which is the same order in which the original
+ * tree based implementation visited them.
+ * @author Jurian Baas
+ */
+public class NodeOrderFrontier extends PaintFrontier {
+
+	private final int[] heap;
+	private int heapSize;
+
+	public NodeOrderFrontier(int numVertices) {
+		super(numVertices);
+		this.heap = new int[numVertices];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return heapSize == 0;
+	}
+
+	@Override
+	protected void enqueue(int node) {
+		siftUp(heapSize++, node);
+	}
+
+	@Override
+	protected int dequeue() {
+		final int node = heap[0];
+		final int last = heap[--heapSize];
+		if (heapSize > 0) siftDown(0, last);
+		return node;
+	}
+
+	@Override
+	protected void clearQueue() {
+		heapSize = 0;
+	}
+
+	private void siftUp(int index, int node) {
+		while (index > 0) {
+			final int parent = (index - 1) >>> 1;
+			final int other = heap[parent];
+			if (other <= node) break;
+			heap[index] = other;
+			position[other] = index;
+			index = parent;
+		}
+		heap[index] = node;
+		position[node] = index;
+	}
+
+	private void siftDown(int index, int node) {
+		final int half = heapSize >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			int other = heap[child];
+			final int right = child + 1;
+			if (right < heapSize && heap[right] < other) {
+				child = right;
+				other = heap[child];
+			}
+			if (node <= other) break;
+			heap[index] = other;
+			position[other] = index;
+			index = child;
+		}
+		heap[index] = node;
+		position[node] = index;
+	}
+}
@@ -0,0 +1,189 @@
+package org.uu.nl.embedding.bca.util;
+
+/**
+ * The set of nodes that still have paint waiting to be distributed. Instead of creating a new tree of painted nodes
+ * for every bookmark, each worker thread keeps one frontier with dense arrays sized to the graph and reuses it for
+ * all of its bookmarks. Only the nodes that were touched for the current bookmark are cleared afterwards, so resetting
+ * costs O(touched) instead of O(n). Pushing paint never allocates.
+ * <p>
+ * Subclasses decide in which order the queued nodes are handed out.
+ * </p>
+ * @author Jurian Baas
+ */
+public abstract class PaintFrontier {
+
+	public static final int NO_PREVIOUS_NODE = -1;
+
+	protected static final int NOT_QUEUED = -1;
+	protected static final int UNTOUCHED = -2;
+
+	/**
+	 * The paint waiting on each node
+	 */
+	protected final double[] paint;
+	/**
+	 * The node from which paint first arrived, since the node was last queued
+	 */
+	private final int[] previous;
+	/**
+	 * Non-negative for queued nodes (subclasses may use it as an index), otherwise one of NOT_QUEUED or UNTOUCHED
+	 */
+	protected final int[] position;
+	private final int[] touched;
+	private int touchedCount;
+	private long pops;
+
+	protected PaintFrontier(int numVertices) {
+		this.paint = new double[numVertices];
+		this.previous = new int[numVertices];
+		this.position = new int[numVertices];
+		this.touched = new int[numVertices];
+		for (int i = 0; i < numVertices; i++) {
+			previous[i] = NO_PREVIOUS_NODE;
+			position[i] = UNTOUCHED;
+		}
+	}
+
+	/**
+	 * @return true if there are no queued nodes
+	 */
+	public abstract boolean isEmpty();
+
+	/**
+	 * Add a node that is not queued yet to the queue, and set its position
+	 */
+	protected abstract void enqueue(int node);
+
+	/**
+	 * Remove the next node from the queue, its position is reset by the caller
+	 */
+	protected abstract int dequeue();
+
+	protected abstract void clearQueue();
+
+	/**
+	 * Called when paint is added to a node that is already queued, for subclasses that order by paint
+	 */
+	protected void increased(int node) {}
+
+	/**
+	 * Add paint to a node. If the node is not waiting to be processed it is queued and remembers where the paint
+	 * came from, otherwise the paint is added to what is already waiting.
+	 * @param node The node receiving paint
+	 * @param amount The amount of paint
+	 * @param previousNode The node the paint came from
+	 */
+	public void push(int node, double amount, int previousNode) {
+		final int p = position[node];
+		if (p >= 0) {
+			paint[node] += amount;
+			increased(node);
+			return;
+		}
+		touch(node);
+
+		paint[node] = amount;
+		previous[node] = previousNode;
+		enqueue(node);
+	}
+
+	/**
+	 * Add paint to a node without queueing it. Paint keeps accumulating until it is taken with {@link #take(int)}.
+	 * @return The paint now waiting on the node
+	 */
+	public double add(int node, double amount) {
+		touch(node);
+		final double p = paint[node] += amount;
+		if (position[node] >= 0) increased(node);
+		return p;
+	}
+
+	/**
+	 * Queue a node if it is not queued already
+	 */
+	public void offer(int node) {
+		if (position[node] >= 0) return;
+		touch(node);
+		enqueue(node);
+	}
+
+	/**
+	 * Remove the next node from the frontier. Its paint and previous node stay readable
+	 * through {@link #paint(int)} and {@link #previous(int)} until it receives new paint.
+	 * @return The id of the node
+	 */
+	public int pop() {
+		final int node = dequeue();
+		position[node] = NOT_QUEUED;
+		pops++;
+		return node;
+	}
+
+	public double paint(int node) {
+		return paint[node];
+	}
+
+	/**
+	 * @return The paint waiting on a node, which is removed from the node
+	 */
+	public double take(int node) {
+		final double p = paint[node];
+		paint[node] = 0;
+		return p;
+	}
+
+	/**
+	 * @return Whether the node is waiting to be handed out
+	 */
+	public boolean isQueued(int node) {
+		return position[node] >= 0;
+	}
+
+	public int previous(int node) {
+		return previous[node];
+	}
+
+	/**
+	 * @return The number of distinct nodes that received paint since the last reset
+	 */
+	public int touched() {
+		return touchedCount;
+	}
+
+	/**
+	 * @param i Index in the range [0, touched())
+	 * @return The i-th node that received paint since the last reset
+	 */
+	public int touchedNode(int i) {
+		return touched[i];
+	}
+
+	/**
+	 * @return The number of nodes handed out by this frontier over all bookmarks, which is the number of times
+	 * paint was spread
+	 */
+	public long pops() {
+		return pops;
+	}
+
+	/**
+	 * Clear all nodes touched since the last reset, so the frontier can be used for the next bookmark
+	 */
+	public void reset() {
+		for (int i = 0; i < touchedCount; i++) {
+			final int node = touched[i];
+			paint[node] = 0;
+			previous[node] = NO_PREVIOUS_NODE;
+			position[node] = UNTOUCHED;
+		}
+		touchedCount = 0;
+		clearQueue();
+	}
+
+	private void touch(int node) {
+		if (position[node] == UNTOUCHED) {
+			touched[touchedCount++] = node;
+			position[node] = NOT_QUEUED;
+		}
+	}
+}
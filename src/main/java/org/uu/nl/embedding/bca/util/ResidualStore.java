@@ -0,0 +1,259 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.write.WritableUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The state of forward push (see {@link org.uu.nl.embedding.bca.jobs.ForwardPush}) for every bookmark: the estimates
+ * and the residual paint that was not spread because it was below the threshold of epsilon. Forward push gives the
+ * same guarantees no matter in which order residuals are pushed, so a later run with a smaller epsilon can continue
+ * from this state instead of starting again from the bookmark. Together the two runs do about the same work as a
+ * single run with the smaller epsilon.
+ * <p>
+ * Like {@link CoOccurrenceStore} vertices are written by their key, so the state can be used with another conversion
+ * of the same data.
+ * </p>
+ * @author Jurian Baas
+ */
+public class ResidualStore {
+
+	private static final int VERSION = 1;
+	private static final int NO_ROW = -1;
+
+	private final double epsilon;
+	/**
+	 * The row of each focus index, or NO_ROW if its state was not stored
+	 */
+	private final int[] rowOfFocus;
+	/**
+	 * The estimates of row r are found in [estimateStart[r], estimateStart[r + 1]), the same goes for the residuals
+	 */
+	private final int[] estimateStart, residualStart;
+	private final int[] estimateNodes, residualNodes;
+	private final float[] estimates, residuals;
+
+	private ResidualStore(double epsilon, int[] rowOfFocus,
+						  int[] estimateStart, int[] estimateNodes, float[] estimates,
+						  int[] residualStart, int[] residualNodes, float[] residuals) {
+		this.epsilon = epsilon;
+		this.rowOfFocus = rowOfFocus;
+		this.estimateStart = estimateStart;
+		this.estimateNodes = estimateNodes;
+		this.estimates = estimates;
+		this.residualStart = residualStart;
+		this.residualNodes = residualNodes;
+		this.residuals = residuals;
+	}
+
+	/**
+	 * The state can only be continued with the same engine and alpha, epsilon is stored separately
+	 */
+	public static String settings(Configuration.BCA bca) {
+		return String.format(Locale.ROOT, "%s alpha=%s", bca.getEngineEnum(), bca.getAlpha());
+	}
+
+	/**
+	 * @return The epsilon the state was computed with
+	 */
+	public double epsilon() {
+		return epsilon;
+	}
+
+	public boolean has(int focusIndex) {
+		return rowOfFocus[focusIndex] != NO_ROW;
+	}
+
+	/**
+	 * @return The stored estimates of a bookmark
+	 */
+	public BCV estimates(int focusIndex, int bookmark) {
+		final int row = rowOfFocus[focusIndex];
+		return vector(bookmark, estimateNodes, estimates, estimateStart[row], estimateStart[row + 1]);
+	}
+
+	/**
+	 * @return The stored residuals of a bookmark
+	 */
+	public BCV residuals(int focusIndex, int bookmark) {
+		final int row = rowOfFocus[focusIndex];
+		return vector(bookmark, residualNodes, residuals, residualStart[row], residualStart[row + 1]);
+	}
+
+	private static BCV vector(int bookmark, int[] nodes, float[] values, int from, int to) {
+		final BCV bcv = new BCV(bookmark);
+		for (int i = from; i < to; i++) bcv.add(nodes[i], values[i]);
+		return bcv;
+	}
+
+	/**
+	 * Write the state of all bookmarks, grouped by bookmark
+	 * @param focus2context The vertex id of each focus index
+	 * @param estimates The estimates of all bookmarks, drained from their buffers (focus index, vertex, value)
+	 * @param residuals The residuals of all bookmarks, in the same form
+	 */
+	public static void write(File file, String settings, double epsilon, InMemoryRdfGraph graph, int[] focus2context,
+							 Columns estimates, Columns residuals) throws IOException {
+
+		final int rows = focus2context.length;
+		final int[] estimateStart = estimates.rowStarts(rows);
+		final int[] estimateOrder = estimates.sortedByRow(estimateStart);
+		final int[] residualStart = residuals.rowStarts(rows);
+		final int[] residualOrder = residuals.sortedByRow(residualStart);
+		final int vertices = graph.getVertices().size();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(VERSION);
+			WritableUtils.writeString(out, settings);
+			out.writeDouble(epsilon);
+
+			WritableUtils.writeVLong(out, vertices);
+			for (int v = 0; v < vertices; v++) WritableUtils.writeString(out, graph.getVertexKey(v));
+
+			WritableUtils.writeVLong(out, rows);
+			for (int r = 0; r < rows; r++) {
+				WritableUtils.writeVLong(out, focus2context[r]);
+				estimates.writeRow(out, estimateOrder, estimateStart[r], estimateStart[r + 1]);
+				residuals.writeRow(out, residualOrder, residualStart[r], residualStart[r + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Read a stored state and match its vertices and bookmarks to the current graph. Bookmarks whose state refers to
+	 * a vertex that no longer exists start again from scratch.
+	 * @param settings The settings of the current run, see {@link #settings(Configuration.BCA)}
+	 * @param epsilon The epsilon of the current run, which may not be larger than the stored one
+	 * @param context2focus The focus index of each vertex, or -1
+	 * @throws IOException If the file cannot be read or was written with incompatible settings
+	 */
+	public static ResidualStore read(File file, String settings, double epsilon, InMemoryRdfGraph graph,
+									 int[] context2focus, int focusVectors) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			final int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported residual store version: " + version);
+			final String storedSettings = WritableUtils.readString(in);
+			if (!storedSettings.equals(settings)) {
+				throw new IOException("Residual store was created with different settings (" + storedSettings + ")");
+			}
+			final double storedEpsilon = in.readDouble();
+			if (storedEpsilon < epsilon) {
+				throw new IOException("Residual store was created with a smaller epsilon (" + storedEpsilon + ")");
+			}
+
+			// Vertex ids are not stable between conversions, so vertices are matched by their key
+			final Map<String, Integer> vertexIds = new HashMap<>();
+			for (int v = 0; v < context2focus.length; v++) vertexIds.put(graph.getVertexKey(v), v);
+			final int[] storedToVertex = new int[(int) WritableUtils.readVLong(in)];
+			for (int k = 0; k < storedToVertex.length; k++) {
+				storedToVertex[k] = vertexIds.getOrDefault(WritableUtils.readString(in), -1);
+			}
+
+			final int rows = (int) WritableUtils.readVLong(in);
+			final int[] rowOfFocus = new int[focusVectors];
+			Arrays.fill(rowOfFocus, NO_ROW);
+			final Columns estimates = new Columns(rows), residuals = new Columns(rows);
+			final int[] estimateStart = new int[rows + 1], residualStart = new int[rows + 1];
+
+			int kept = 0;
+			for (int r = 0; r < rows; r++) {
+				final int bookmark = storedToVertex[(int) WritableUtils.readVLong(in)];
+				final boolean complete = estimates.readRow(in, storedToVertex) & residuals.readRow(in, storedToVertex);
+				final int focus = bookmark == -1 ? -1 : context2focus[bookmark];
+
+				if (!complete || focus == -1 || rowOfFocus[focus] != NO_ROW) {
+					estimates.truncate(estimateStart[kept]);
+					residuals.truncate(residualStart[kept]);
+					continue;
+				}
+				rowOfFocus[focus] = kept++;
+				estimateStart[kept] = estimates.size;
+				residualStart[kept] = residuals.size;
+			}
+
+			return new ResidualStore(storedEpsilon, rowOfFocus,
+					estimateStart, Arrays.copyOf(estimates.nodes, estimates.size), Arrays.copyOf(estimates.values, estimates.size),
+					residualStart, Arrays.copyOf(residuals.nodes, residuals.size), Arrays.copyOf(residuals.values, residuals.size));
+		}
+	}
+
+	/**
+	 * The entries of all bookmarks in three columns, as drained from the {@link CoOccurrenceBuffer} of each worker
+	 */
+	public static class Columns {
+
+		private int[] focus, nodes;
+		private float[] values;
+		private int size;
+
+		public Columns(int[] focus, int[] nodes, float[] values) {
+			this.focus = focus;
+			this.nodes = nodes;
+			this.values = values;
+			this.size = focus.length;
+		}
+
+		private Columns(int capacity) {
+			this.nodes = new int[Math.max(16, capacity)];
+			this.values = new float[nodes.length];
+		}
+
+		/**
+		 * Counting sort on the focus index, so each row can be written in one piece
+		 */
+		private int[] rowStarts(int rows) {
+			final int[] start = new int[rows + 1];
+			for (int i = 0; i < size; i++) start[focus[i] + 1]++;
+			for (int r = 0; r < rows; r++) start[r + 1] += start[r];
+			return start;
+		}
+
+		private int[] sortedByRow(int[] start) {
+			final int[] next = Arrays.copyOf(start, start.length - 1);
+			final int[] sorted = new int[size];
+			for (int i = 0; i < size; i++) sorted[next[focus[i]]++] = i;
+			return sorted;
+		}
+
+		private void writeRow(DataOutput out, int[] sorted, int from, int to) throws IOException {
+			WritableUtils.writeVLong(out, to - from);
+			for (int s = from; s < to; s++) {
+				WritableUtils.writeVLong(out, nodes[sorted[s]]);
+				out.writeFloat(values[sorted[s]]);
+			}
+		}
+
+		/**
+		 * Append a row, with its vertices mapped to the current graph
+		 * @return false if one of its vertices no longer exists
+		 */
+		private boolean readRow(DataInput in, int[] storedToVertex) throws IOException {
+			final int length = (int) WritableUtils.readVLong(in);
+			if (size + length > nodes.length) {
+				final int capacity = Math.max(size + length, nodes.length + (nodes.length >> 1));
+				nodes = Arrays.copyOf(nodes, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			boolean complete = true;
+			for (int i = 0; i < length; i++) {
+				final int vertex = storedToVertex[(int) WritableUtils.readVLong(in)];
+				complete &= vertex != -1;
+				nodes[size] = vertex;
+				values[size] = in.readFloat();
+				size++;
+			}
+			return complete;
+		}
+
+		private void truncate(int size) {
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.uu.nl.embedding.bca.util;
+
+/**
+ * Merges the two directions of co-occurrences between output nodes into one entry. When both a and b are bookmarks,
+ * the entries (a, b) and (b, a) are replaced by a single entry in the row of the bookmark with the lowest focus index,
+ * holding the average of both values. The optimizer applies a merged entry in both directions. A pair with an entry in
+ * only one direction, because the paint of the other bookmark did not reach that far, keeps its entry as it is. Merged
+ * entries are placed before all other entries, so an entry is symmetric if its index is below {@link #symmetricCount()}.
+ * @author Jurian Baas
+ */
+public class SymmetricCoOccurrences {
+
+	private final int[] focus, context;
+	private final float[] values;
+	private final int symmetricCount;
+
+	/**
+	 * @param I The focus index column
+	 * @param J The context index column
+	 * @param C The value column
+	 * @param context2focus The focus index of each context index, or -1 if it is not a bookmark
+	 * @param focus2context The context index of each focus index
+	 */
+	public SymmetricCoOccurrences(int[] I, int[] J, float[] C, int[] context2focus, int[] focus2context) {
+
+		final int rows = focus2context.length;
+		final int count = I.length;
+
+		// Group the entries between two bookmarks by the lowest focus index of the pair
+		final int[] start = new int[rows + 1];
+		int plain = 0;
+		for (int i = 0; i < count; i++) {
+			final int other = context2focus[J[i]];
+			if (other == -1 || other == I[i]) plain++;
+			else start[Math.min(I[i], other) + 1]++;
+		}
+		for (int r = 0; r < rows; r++) start[r + 1] += start[r];
+		final int[] next = new int[rows];
+		System.arraycopy(start, 0, next, 0, rows);
+		final int[] pairs = new int[count - plain];
+		for (int i = 0; i < count; i++) {
+			final int other = context2focus[J[i]];
+			if (other != -1 && other != I[i]) pairs[next[Math.min(I[i], other)]++] = i;
+		}
+
+		final CoOccurrenceBuffer merged = new CoOccurrenceBuffer();
+		final CoOccurrenceBuffer oneWay = new CoOccurrenceBuffer();
+		for (int r = 0; r < rows; r++) {
+			if (start[r] == start[r + 1]) continue;
+
+			final BCV upper = new BCV(focus2context[r]);
+			final BCV lower = new BCV(focus2context[r]);
+			for (int p = start[r]; p < start[r + 1]; p++) {
+				final int i = pairs[p];
+				// Entries written from the other bookmark are transposed into this row
+				if (I[i] == r) upper.add(J[i], C[i]);
+				else lower.add(focus2context[I[i]], C[i]);
+			}
+
+			// Only the pairs with an entry in both directions are merged
+			final BCV both = new BCV(focus2context[r]);
+			final BCV reverse = new BCV(focus2context[r]);
+			for (int slot = 0; slot < upper.capacity(); slot++) {
+				if (!upper.isUsed(slot) || !lower.containsKey(upper.keyAt(slot))) continue;
+				both.add(upper.keyAt(slot), upper.valueAt(slot));
+				reverse.add(upper.keyAt(slot), lower.get(upper.keyAt(slot)));
+			}
+			both.merge(reverse);
+			both.scale(0.5f);
+			merged.add(r, both);
+
+			for (int p = start[r]; p < start[r + 1]; p++) {
+				final int i = pairs[p];
+				final boolean reversed = I[i] == r ? lower.containsKey(J[i]) : upper.containsKey(focus2context[I[i]]);
+				if (!reversed) oneWay.add(I[i], J[i], C[i]);
+			}
+		}
+
+		this.symmetricCount = Math.toIntExact(merged.size());
+		this.focus = new int[symmetricCount + Math.toIntExact(oneWay.size()) + plain];
+		this.context = new int[focus.length];
+		this.values = new float[focus.length];
+
+		int offset = merged.drainInto(focus, context, values, 0);
+		offset = oneWay.drainInto(focus, context, values, offset);
+		for (int i = 0; i < count; i++) {
+			final int other = context2focus[J[i]];
+			if (other != -1 && other != I[i]) continue;
+			focus[offset] = I[i];
+			context[offset] = J[i];
+			values[offset] = C[i];
+			offset++;
+		}
+	}
+
+	public int[] focus() {
+		return focus;
+	}
+
+	public int[] context() {
+		return context;
+	}
+
+	public float[] values() {
+		return values;
+	}
+
+	/**
+	 * @return The number of merged entries, which come first
+	 */
+	public int symmetricCount() {
+		return symmetricCount;
+	}
+}
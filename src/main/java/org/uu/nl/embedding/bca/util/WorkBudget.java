@@ -0,0 +1,80 @@
+package org.uu.nl.embedding.bca.util;
+
+/**
+ * Limits the work spent on a single bookmark, so a bookmark in a dense part of the graph cannot stall the other
+ * workers. A job stops when the number of touched nodes, the number of pushes or the elapsed time reaches its limit.
+ * The paint that is still waiting on queued nodes at that point is either kept on those nodes or dropped.
+ * <p>
+ * The limits are checked before paint is spread from the next node, so they are soft: the last node spreads paint to
+ * all of its neighbors, and the number of touched nodes can end up above its limit by the degree of that node.
+ * </p>
+ * @author Jurian Baas
+ */
+public class WorkBudget {
+
+	public enum Outcome {
+		/**
+		 * The job finished within its budget
+		 */
+		COMPLETED,
+		/**
+		 * The budget ran out and the waiting paint was added to the nodes it was waiting on
+		 */
+		REDISTRIBUTED,
+		/**
+		 * The budget ran out and the waiting paint was dropped
+		 */
+		DROPPED
+	}
+
+	public static final WorkBudget UNLIMITED = new WorkBudget(0, 0, 0, false);
+
+	/**
+	 * The clock is read once every this many pushes, reading it on every push would cost more than the push itself
+	 */
+	private static final long CLOCK_INTERVAL_MASK = 0xFF;
+
+	private final int maxTouched;
+	private final long maxPushes, maxNanos;
+	private final boolean redistribute;
+	private final boolean limited;
+
+	/**
+	 * @param maxTouched The maximum number of nodes that receive paint, 0 for no limit
+	 * @param maxPushes The maximum number of times paint is spread from a node, 0 for no limit
+	 * @param maxNanos The maximum time spent on a bookmark in nanoseconds, 0 for no limit
+	 * @param redistribute Whether waiting paint is kept on the queued nodes when the budget runs out, otherwise it is dropped
+	 */
+	public WorkBudget(int maxTouched, long maxPushes, long maxNanos, boolean redistribute) {
+		this.maxTouched = maxTouched;
+		this.maxPushes = maxPushes;
+		this.maxNanos = maxNanos;
+		this.redistribute = redistribute;
+		this.limited = maxTouched > 0 || maxPushes > 0 || maxNanos > 0;
+	}
+
+	public boolean isLimited() {
+		return limited;
+	}
+
+	public boolean isTimed() {
+		return maxNanos > 0;
+	}
+
+	public boolean redistributes() {
+		return redistribute;
+	}
+
+	/**
+	 * @param touched The number of nodes that received paint for this bookmark
+	 * @param pushes The number of times paint was spread for this bookmark
+	 * @param start The value of {@link System#nanoTime()} when the job started
+	 * @return Whether the job may spread paint once more
+	 */
+	public boolean allows(int touched, long pushes, long start) {
+		if (!limited) return true;
+		if (maxTouched > 0 && touched >= maxTouched) return false;
+		if (maxPushes > 0 && pushes >= maxPushes) return false;
+		return maxNanos <= 0 || (pushes & CLOCK_INTERVAL_MASK) != 0 || System.nanoTime() - start < maxNanos;
+	}
+}
@@ -0,0 +1,155 @@
+package org.uu.nl.embedding.convert;
+
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The connected components of a graph. Paint never crosses from one component to another, and neither do the
+ * gradients of the co-occurrences, so each component can be colored and optimized on its own. Components without
+ * output nodes never receive paint and are left out. Small components are packed together into work units, so there
+ * are not thousands of tiny units. The edges are divided over the units in a single pass, so cutting out a unit only
+ * looks at its own vertices and edges.
+ *
+ * @author Jurian Baas
+ */
+public class GraphComponents {
+
+	private static final int NONE = -1;
+
+	private final InMemoryRdfGraph graph;
+	/**
+	 * The component of each vertex
+	 */
+	private final int[] component;
+	private final int[] size;
+	/**
+	 * The vertices of each unit, the id of each vertex within its unit and the edges of unit u in the range
+	 * [edgeStart[u], edgeStart[u + 1]) of unitEdges. Set by {@link #units(Set, int)}.
+	 */
+	private List<int[]> units;
+	private int[] local;
+	private int[] edgeStart, unitEdges;
+
+	/**
+	 * @param g The converted graph, with vertices numbered consecutively
+	 */
+	public GraphComponents(InMemoryRdfGraph g) {
+
+		final int numVertices = g.getNumberOfVertices();
+		this.graph = g;
+		this.component = new int[numVertices];
+		Arrays.fill(component, NONE);
+
+		final int[] queue = new int[numVertices];
+		int[] size = new int[16];
+		int components = 0;
+
+		for (int start = 0; start < numVertices; start++) {
+			if (component[start] != NONE) continue;
+			if (components == size.length) size = Arrays.copyOf(size, components + (components >> 1));
+
+			int head = 0, tail = 0;
+			component[start] = components;
+			queue[tail++] = start;
+			while (head < tail) {
+				final int v = queue[head++];
+				for (int e : g.getInOutOnlyEdges(v).toIntArray()) {
+					final int neighbor = g.getTheOtherVertex(e, v);
+					if (component[neighbor] == NONE) {
+						component[neighbor] = components;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+			size[components++] = tail;
+		}
+		this.size = Arrays.copyOf(size, components);
+	}
+
+	public int count() {
+		return size.length;
+	}
+
+	/**
+	 * Pack the components that contain an output node into work units. Components are taken from large to small and
+	 * added to the current unit until it would grow beyond the maximum size, a component that is larger on its own
+	 * gets a unit of its own.
+	 * @param maxSize The maximum number of vertices in a unit of several components
+	 * @return The vertices of each unit, in increasing order
+	 */
+	public List<int[]> units(Set<Integer> outputNodes, int maxSize) {
+
+		final boolean[] hasOutput = new boolean[size.length];
+		for (int v : outputNodes) hasOutput[component[v]] = true;
+
+		// Sort by decreasing size, keep the component id in the lower bits
+		final long[] sorted = new long[size.length];
+		int kept = 0;
+		for (int c = 0; c < size.length; c++) {
+			if (hasOutput[c]) sorted[kept++] = ((long) (Integer.MAX_VALUE - size[c]) << 32) | c;
+		}
+		Arrays.sort(sorted, 0, kept);
+
+		final int[] unitOf = new int[size.length];
+		Arrays.fill(unitOf, NONE);
+		final List<Integer> unitSizes = new ArrayList<>();
+		int current = NONE, currentSize = 0;
+		for (int i = 0; i < kept; i++) {
+			final int c = (int) sorted[i];
+			if (current == NONE || currentSize + size[c] > maxSize) {
+				current = unitSizes.size();
+				unitSizes.add(0);
+				currentSize = 0;
+			}
+			unitOf[c] = current;
+			currentSize += size[c];
+			unitSizes.set(current, currentSize);
+		}
+
+		final List<int[]> units = new ArrayList<>(unitSizes.size());
+		for (int size : unitSizes) units.add(new int[size]);
+		// Units do not share vertices, so one array holds the id of every vertex within its own unit
+		final int[] local = new int[component.length];
+		Arrays.fill(local, NONE);
+		final int[] next = new int[unitSizes.size()];
+		for (int v = 0; v < component.length; v++) {
+			final int unit = unitOf[component[v]];
+			if (unit == NONE) continue;
+			local[v] = next[unit];
+			units.get(unit)[next[unit]++] = v;
+		}
+
+		// Both endpoints of an edge are in the same component, so the first one decides the unit
+		final int[] edges = graph.getEdges().toIntArray();
+		final int[] edgeStart = new int[units.size() + 1];
+		for (int e : edges) {
+			final int unit = unitOf[component[graph.getOneVertex(e)]];
+			if (unit != NONE) edgeStart[unit + 1]++;
+		}
+		for (int u = 0; u < units.size(); u++) edgeStart[u + 1] += edgeStart[u];
+		final int[] unitEdges = new int[edgeStart[units.size()]];
+		final int[] nextEdge = Arrays.copyOf(edgeStart, units.size());
+		for (int e : edges) {
+			final int unit = unitOf[component[graph.getOneVertex(e)]];
+			if (unit != NONE) unitEdges[nextEdge[unit]++] = e;
+		}
+
+		this.units = units;
+		this.local = local;
+		this.edgeStart = edgeStart;
+		this.unitEdges = unitEdges;
+		return units;
+	}
+
+	/**
+	 * @param unit The index of a unit returned by {@link #units(Set, int)}
+	 * @return A copy of the graph with only the vertices of the unit, vertex i of the copy is vertex i of the unit
+	 */
+	public InMemoryRdfGraph subgraph(int unit) {
+		return graph.subgraph(units.get(unit), local, Arrays.copyOfRange(unitEdges, edgeStart[unit], edgeStart[unit + 1]));
+	}
+}
@@ -0,0 +1,103 @@
+package org.uu.nl.embedding.convert;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+import org.uu.nl.embedding.util.read.JenaReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The triples that were added to or removed from the graph since the co-occurrence store was written. Only the
+ * endpoints of these triples are needed: every coloring vector that changed must have received paint through one of
+ * them. The endpoints are kept as vertex keys (see {@link InMemoryRdfGraph#getVertexKey(int)}), created with the
+ * prefixes of the full graph so they match the labels of the converted graph.
+ * <p>
+ * A literal can also have similarity edges, which are not part of the delta. When a removed triple takes away the
+ * last use of a literal, its similar literals lose an edge, but they are not known here. The removed literals are kept
+ * so such a delta can be recognised, see {@link #getRemovedLiterals()}.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class GraphDelta {
+
+	private static final Logger logger = Logger.getLogger(GraphDelta.class);
+
+	private final Set<String> endpoints = new HashSet<>();
+	private final Set<String> removedLiterals = new HashSet<>();
+	private long triples;
+
+	/**
+	 * @param config The configuration, which must already have been used to convert the full graph so that
+	 *               the predicate filter is expanded
+	 * @param prefixMapping The prefixes of the full graph
+	 */
+	public GraphDelta(Configuration config, PrefixMapping prefixMapping) throws IOException {
+
+		final Set<String> filter = config.getPredicates().getFilter();
+		final JenaReader reader = new JenaReader();
+
+		final String[] files = {config.getBca().getAdded(), config.getBca().getRemoved()};
+		for (int f = 0; f < files.length; f++) {
+			final String file = files[f];
+			if (file == null || file.isEmpty()) continue;
+			// Literals only have similarity edges when similarity groups are configured
+			final boolean keepLiterals = f == 1 && config.usingSimilarity();
+
+			final Model model = reader.load(Paths.get("").toAbsolutePath().resolve(file).toFile());
+			final ExtendedIterator<Triple> it = model.getGraph().find();
+			try {
+				while (it.hasNext()) {
+					final Triple t = it.next();
+					final Node p = t.getPredicate();
+
+					// Triples with unweighted predicates never became edges
+					if (!filter.contains(prefixMapping.expandPrefix(p.toString(false)))) continue;
+
+					endpoints.add(key(p, t.getSubject(), prefixMapping));
+					endpoints.add(key(p, t.getObject(), prefixMapping));
+					if (keepLiterals && t.getObject().isLiteral()) removedLiterals.add(key(p, t.getObject(), prefixMapping));
+					triples++;
+				}
+			} finally {
+				it.close();
+				model.close();
+			}
+		}
+		logger.info("Graph delta contains " + triples + " triples with " + endpoints.size() + " distinct endpoints");
+	}
+
+	/**
+	 * The same key {@link Rdf2GrphConverter} gives the vertex of this node
+	 */
+	private static String key(Node p, Node n, PrefixMapping prefixMapping) {
+		final String label = n.toString(prefixMapping, false);
+		if (n.isLiteral()) return InMemoryRdfGraph.vertexKey(p.toString(prefixMapping, false), label);
+		return label;
+	}
+
+	public Set<String> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * @return The keys of the literals of removed triples, only if similarity edges are configured
+	 */
+	public Set<String> getRemovedLiterals() {
+		return removedLiterals;
+	}
+
+	public long getTriples() {
+		return triples;
+	}
+}
@@ -0,0 +1,109 @@
+package org.uu.nl.embedding.convert;
+
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Removes the vertices that are too far from every output node to ever receive paint. Each hop away from a bookmark
+ * leaves at most 1 - alpha of the paint, so after {@link Configuration.BCA#getPaintRadius()} hops it is below epsilon
+ * and is no longer spread. A breadth first search from all output nodes at once finds the vertices within that radius,
+ * the others are left out together with their edges and the remaining vertices are numbered consecutively again.
+ * <p>
+ * The default engine only pushes shares of at least epsilon, and a share that traveled further than the radius is
+ * smaller than that, so it gives the same coloring vectors on the pruned graph. For the other settings pruning is an
+ * approximation that drops the paint beyond the radius: forward push compares the merged paint of a vertex with
+ * epsilon times its weight, so paint travels further from vertices with a weight below 1, Monte Carlo walks are not
+ * bounded by epsilon, the clusters of the two-level engine span the whole graph and hub vectors are cut relative to the
+ * paint of the hub itself.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class GraphPruner {
+
+	private static final Logger logger = Logger.getLogger(GraphPruner.class);
+	private static final int REMOVED = -1;
+
+	private final Configuration config;
+
+	public GraphPruner(Configuration config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param g The converted graph, with vertices numbered consecutively
+	 * @return A new graph with only the vertices within reach of the output nodes. The output node indexes in the
+	 * configuration are changed to match the new numbering.
+	 */
+	public InMemoryRdfGraph prune(InMemoryRdfGraph g) {
+
+		final int numVertices = g.getNumberOfVertices();
+		final int radius = config.getBca().getPaintRadius();
+		final Set<Integer> outputNodes = config.getOutput().getNodeIndex();
+
+		if (!isExact(config.getBca())) {
+			logger.warn("Pruning to " + radius + " hops is approximate with these BCA settings, paint that would travel further is dropped");
+		}
+
+		final int[] id = reachable(g, numVertices, outputNodes, radius);
+		int kept = 0;
+		for (int v = 0; v < numVertices; v++) {
+			if (id[v] != REMOVED) id[v] = kept++;
+		}
+
+		if (kept == numVertices) {
+			logger.info("All " + numVertices + " vertices are within " + radius + " hops of an output node");
+			return g;
+		}
+
+		final InMemoryRdfGraph pruned = g.renumber(id, kept);
+		config.getOutput().renumber(id);
+
+		logger.info("Pruned the graph to " + radius + " hops from the output nodes: kept " + kept + " of " + numVertices +
+				" vertices and " + pruned.getNumberOfEdges() + " of " + g.getNumberOfEdges() + " edges");
+		return pruned;
+	}
+
+	/**
+	 * @return Whether the coloring vectors on the pruned graph are the same as on the whole graph
+	 */
+	public static boolean isExact(Configuration.BCA bca) {
+		return bca.boundedByPaintRadius();
+	}
+
+	/**
+	 * Breadth first search from all output nodes at once, up to the given number of hops
+	 * @return For each vertex 0 if it is within reach, or REMOVED
+	 */
+	private static int[] reachable(InMemoryRdfGraph g, int numVertices, Set<Integer> outputNodes, int radius) {
+
+		final int[] id = new int[numVertices];
+		Arrays.fill(id, REMOVED);
+		final int[] queue = new int[numVertices];
+		int head = 0, tail = 0;
+
+		for (int v : outputNodes) {
+			id[v] = 0;
+			queue[tail++] = v;
+		}
+
+		for (int hop = 0; hop < radius && head < tail; hop++) {
+			final int levelEnd = tail;
+			while (head < levelEnd) {
+				final int v = queue[head++];
+				for (int e : g.getInOutOnlyEdges(v).toIntArray()) {
+					final int neighbor = g.getTheOtherVertex(e, v);
+					if (id[neighbor] == REMOVED) {
+						id[neighbor] = 0;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+		return id;
+	}
+}
@@ -258,18 +258,26 @@ public class Rdf2GrphConverter implements Converter<Model, InMemoryRdfGraph> {
 			}
 
 			if(doSimilarityMatching) {
-				for (CompareGroup compareGroup : compareGroups) compareLiterals(g, compareGroup);
+				for (int i = 0; i < compareGroups.length; i++) compareLiterals(g, compareGroups[i], config.getSimilarity().get(i));
 			} else {
 				logger.info("Partial matching is disabled, no edges between similar literals are added");
 			}
-			return g;
+
+			InMemoryRdfGraph result = g;
+			if(config.getBca().isPrune()) {
+				result = new GraphPruner(config).prune(result);
+			}
+			if(config.getBca().usingReorder()) {
+				result = new VertexOrdering(config).reorder(result);
+			}
+			return result;
 
 		} finally {
 			model.close();
 		}
 	}
 
-	private void compareLiterals(InMemoryRdfGraph g, CompareGroup compareGroup) {
+	private void compareLiterals(InMemoryRdfGraph g, CompareGroup compareGroup, Configuration.SimilarityGroup configGroup) {
 		final ExecutorService es = Executors.newWorkStealingPool(config.getThreads());
 		final CompletionService<CompareResult> completionService = new ExecutorCompletionService<>(es);
 
@@ -293,10 +301,11 @@ public class Rdf2GrphConverter implements Converter<Model, InMemoryRdfGraph> {
 			completionService.submit(new CompareJob(sourceNodes[i], targetNodes, compareGroup.threshold, metric, g.getVertexLabelProperty(), inGroupComparison));
 		}
 
+		// Pairs are collected first, so groups of similar literals can be connected through a hub
+		final SimilarityHubs pairs = new SimilarityHubs(configGroup.getHubSize(), configGroup.getHubDensity());
 		int received = 0;
-		int edgesAdded = 0;
 		try(ProgressBar pb = Configuration.progressBar("Comparing", sourceSize, "literals")) {
-			pb.setExtraMessage(Integer.toString(edgesAdded));
+			pb.setExtraMessage(Integer.toString(pairs.size()));
 			while (received < sourceSize) {
 				try {
 
@@ -310,14 +319,8 @@ public class Rdf2GrphConverter implements Converter<Model, InMemoryRdfGraph> {
 
 							final float similarity = result.similarities.get(i);
 
-							final int e = g.addUndirectedSimpleEdge(vert, otherVert);
-							// Similarities between vertices are stored as edge width property, which is limited to
-							// a few bits so we store the similarity as a byte (a number between 0 and 100)
-							g.getEdgeWeightProperty().setValue(e, similarity);
-							g.getEdgeTypeProperty().setValue(e, 0);
-
-							edgesAdded++;
-							pb.setExtraMessage(Integer.toString(edgesAdded));
+							pairs.add(vert, otherVert, similarity);
+							pb.setExtraMessage(Integer.toString(pairs.size()));
 						}
 
 				} catch (InterruptedException | ExecutionException e) {
@@ -330,7 +333,12 @@ public class Rdf2GrphConverter implements Converter<Model, InMemoryRdfGraph> {
 		} finally {
 			es.shutdown();
 		}
-		logger.info("Created links for " +edgesAdded+ " literal pairs");
+		final int edgesAdded = pairs.addTo(g, "_:similar " + compareGroup.sourcePredicate + " ");
+		if(configGroup.usingHubs()) {
+			logger.info("Created " + edgesAdded + " links for " + pairs.size() + " literal pairs, dense groups are connected through hub vertices");
+		} else {
+			logger.info("Created links for " + edgesAdded + " literal pairs");
+		}
 	}
 
 	/**
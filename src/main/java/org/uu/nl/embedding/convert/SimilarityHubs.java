@@ -0,0 +1,209 @@
+package org.uu.nl.embedding.convert;
+
+import org.uu.nl.embedding.convert.util.NodeInfo;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+
+import java.util.Arrays;
+
+/**
+ * Collects the pairs of similar literals of one similarity group and connects them in the graph. Common names are
+ * similar to many other names that are in turn similar to each other, so their pairs form dense groups with a number
+ * of edges that grows with the square of the group size. A group of at least a minimum size whose pairs cover at least
+ * a minimum share of all possible pairs is replaced by a star around a new hub vertex: every member gets an edge to the
+ * hub with the total weight of its similarity edges within the group. A walk leaves a member towards the group with the
+ * same probability as before, and the hub passes it on to the members in proportion to their weight. This is not the
+ * same as the direct edges: paint reaches every member of the group instead of only the similar ones, in proportion to
+ * the total weight of the member instead of the weight of the pair, and it takes one more hop, so it decays once more.
+ * <p>
+ * Groups are the connected components of the similarity edges. Pairs outside a dense group are added as direct edges.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class SimilarityHubs {
+
+	private final int minSize;
+	private final double minDensity;
+	private int[] from = new int[16], to = new int[16];
+	private float[] similarities = new float[16];
+	private int size;
+
+	/**
+	 * @param minSize The smallest group that is replaced by a hub, 0 to never use hubs
+	 * @param minDensity The smallest share of all possible pairs within a group that must be similar
+	 */
+	public SimilarityHubs(int minSize, double minDensity) {
+		this.minSize = minSize;
+		this.minDensity = minDensity;
+	}
+
+	public void add(int a, int b, float similarity) {
+		if (size == from.length) {
+			final int capacity = size + (size >> 1);
+			from = Arrays.copyOf(from, capacity);
+			to = Arrays.copyOf(to, capacity);
+			similarities = Arrays.copyOf(similarities, capacity);
+		}
+		from[size] = a;
+		to[size] = b;
+		similarities[size] = similarity;
+		size++;
+	}
+
+	/**
+	 * @return The number of similar pairs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Add the similarity edges and hub vertices to the graph
+	 * @param hubPrefix The label of a hub vertex is this prefix followed by the smallest label of its members, so it
+	 *                  is the same in every conversion of the same data
+	 * @return The number of edges that were added
+	 */
+	public int addTo(InMemoryRdfGraph g, String hubPrefix) {
+
+		// Without hubs every pair is added as an edge, so the groups are not needed
+		final Plan plan = minSize > 0 ? plan(g.getNextVertexAvailable()) : null;
+		int edges = 0;
+		for (int i = 0; i < size; i++) {
+			if (plan != null && plan.groupOfPair[i] != Plan.DIRECT) continue;
+			g.addWeightedEdge(from[i], to[i], similarities[i], 0);
+			edges++;
+		}
+		if (plan == null) return edges;
+
+		for (int group = 0; group < plan.groupCount(); group++) {
+			String label = null;
+			for (int m = plan.memberStart[group]; m < plan.memberStart[group + 1]; m++) {
+				final String memberLabel = g.getVertexLabelProperty().getValueAsString(plan.members[m]);
+				if (label == null || memberLabel.compareTo(label) < 0) label = memberLabel;
+			}
+
+			final int hub = g.getNextVertexAvailable();
+			g.addVertex(hub);
+			g.getVertexTypeProperty().setValue(hub, NodeInfo.BLANK.id);
+			g.getVertexLabelProperty().setValue(hub, hubPrefix + label);
+
+			for (int m = plan.memberStart[group]; m < plan.memberStart[group + 1]; m++) {
+				g.addWeightedEdge(plan.members[m], hub, plan.strengths[m], 0);
+				edges++;
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Find the connected components of the similar pairs and decide which of them get a hub, only used when hubs are
+	 * enabled
+	 * @param vertexCount All vertex ids are below this
+	 */
+	Plan plan(int vertexCount) {
+
+		final int[] parent = new int[vertexCount];
+		for (int i = 0; i < size; i++) {
+			parent[from[i]] = from[i];
+			parent[to[i]] = to[i];
+		}
+		for (int i = 0; i < size; i++) {
+			final int a = root(parent, from[i]), b = root(parent, to[i]);
+			if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+		}
+
+		// Count the members and pairs of every component, each vertex is counted at its first pair
+		final int[] members = new int[vertexCount];
+		final long[] pairs = new long[vertexCount];
+		final boolean[] counted = new boolean[vertexCount];
+		for (int i = 0; i < size; i++) {
+			final int root = root(parent, from[i]);
+			pairs[root]++;
+			if (!counted[from[i]]) {
+				counted[from[i]] = true;
+				members[root]++;
+			}
+			if (!counted[to[i]]) {
+				counted[to[i]] = true;
+				members[root]++;
+			}
+		}
+
+		final int[] groupOfRoot = new int[vertexCount];
+		Arrays.fill(groupOfRoot, Plan.DIRECT);
+		int groups = 0;
+		for (int v = 0; v < vertexCount; v++) {
+			if (!counted[v] || parent[v] != v) continue;
+			final long k = members[v];
+			// A star only has fewer edges than a group of at least 4 members
+			if (minSize > 0 && k >= Math.max(4, minSize) && pairs[v] >= minDensity * k * (k - 1) / 2) {
+				groupOfRoot[v] = groups++;
+			}
+		}
+
+		final int[] groupOfPair = new int[size];
+		for (int i = 0; i < size; i++) groupOfPair[i] = groupOfRoot[root(parent, from[i])];
+
+		// Members grouped per hub, with the total weight of their pairs within the group
+		final int[] memberStart = new int[groups + 1];
+		for (int v = 0; v < vertexCount; v++) {
+			if (counted[v] && groupOfRoot[root(parent, v)] != Plan.DIRECT) memberStart[groupOfRoot[root(parent, v)] + 1]++;
+		}
+		for (int c = 0; c < groups; c++) memberStart[c + 1] += memberStart[c];
+		final int[] next = Arrays.copyOf(memberStart, groups);
+		final int[] memberList = new int[memberStart[groups]];
+		final int[] slot = new int[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			if (!counted[v]) continue;
+			final int group = groupOfRoot[root(parent, v)];
+			if (group == Plan.DIRECT) continue;
+			slot[v] = next[group];
+			memberList[next[group]++] = v;
+		}
+		final float[] strengths = new float[memberList.length];
+		for (int i = 0; i < size; i++) {
+			if (groupOfPair[i] == Plan.DIRECT) continue;
+			strengths[slot[from[i]]] += similarities[i];
+			strengths[slot[to[i]]] += similarities[i];
+		}
+		return new Plan(groupOfPair, memberStart, memberList, strengths);
+	}
+
+	private static int root(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * Which pairs are replaced by a hub, and the members of each hub
+	 */
+	static class Plan {
+
+		static final int DIRECT = -1;
+
+		/**
+		 * The hub of each pair, or DIRECT if the pair is added as an edge
+		 */
+		final int[] groupOfPair;
+		/**
+		 * The members of hub h are found in the range [memberStart[h], memberStart[h + 1])
+		 */
+		final int[] memberStart;
+		final int[] members;
+		final float[] strengths;
+
+		Plan(int[] groupOfPair, int[] memberStart, int[] members, float[] strengths) {
+			this.groupOfPair = groupOfPair;
+			this.memberStart = memberStart;
+			this.members = members;
+			this.strengths = strengths;
+		}
+
+		int groupCount() {
+			return memberStart.length - 1;
+		}
+	}
+}
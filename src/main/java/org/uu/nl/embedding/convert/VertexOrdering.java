@@ -0,0 +1,162 @@
+package org.uu.nl.embedding.convert;
+
+import org.apache.log4j.Logger;
+import org.uu.nl.embedding.bca.util.Coarsening;
+import org.uu.nl.embedding.convert.util.CSRAlgorithm;
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.Arrays;
+
+/**
+ * Vertices are numbered in the order their triples are read, so the neighbors of a vertex are scattered over the
+ * adjacency, the coloring vectors and the context vectors of the optimizer. This renumbers the vertices so that
+ * vertices that are close in the graph get ids that are close together:
+ * <ul>
+ *     <li>BFS: reverse Cuthill-McKee, a breadth first search that visits neighbors with a low degree first</li>
+ *     <li>DEGREE: by decreasing degree, so the vertices that are visited most often share the same cache lines</li>
+ *     <li>COMMUNITY: by cluster (see {@link Coarsening}), with the clusters in reverse Cuthill-McKee order over the
+ *     graph of clusters</li>
+ * </ul>
+ *
+ * @author Jurian Baas
+ */
+public class VertexOrdering {
+
+	private static final Logger logger = Logger.getLogger(VertexOrdering.class);
+
+	private final Configuration config;
+
+	public VertexOrdering(Configuration config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param g The converted graph, with vertices numbered consecutively
+	 * @return A new graph with the vertices in the configured order. The output node indexes in the configuration are
+	 * changed to match the new numbering.
+	 */
+	public InMemoryRdfGraph reorder(InMemoryRdfGraph g) {
+
+		final Configuration.BCA bca = config.getBca();
+		final Configuration.VertexOrder order = bca.getReorderEnum();
+		final Adjacency adjacency = new CSRAlgorithm(config).compute(g);
+
+		final int[] sequence = order(adjacency, order, bca.getClusterSize(), bca.getClusterIterations());
+		final int[] id = new int[sequence.length];
+		for (int i = 0; i < sequence.length; i++) id[sequence[i]] = i;
+
+		final int[] identity = new int[sequence.length];
+		for (int v = 0; v < identity.length; v++) identity[v] = v;
+		logger.info(String.format("Renumbered %d vertices in %s order, neighbors are on average %.1f ids apart instead of %.1f",
+				sequence.length, order, averageGap(adjacency, id), averageGap(adjacency, identity)));
+
+		final InMemoryRdfGraph reordered = g.renumber(id, sequence.length);
+		config.getOutput().renumber(id);
+		return reordered;
+	}
+
+	/**
+	 * @return All vertices of the graph, in the order of their new ids
+	 */
+	public static int[] order(Adjacency adjacency, Configuration.VertexOrder order, int clusterSize, int clusterIterations) {
+		switch (order) {
+			case BFS: return reverseCuthillMcKee(adjacency);
+			case DEGREE: return byDegree(adjacency, true);
+			case COMMUNITY: return byCommunity(adjacency, clusterSize, clusterIterations);
+			default:
+			case NONE: {
+				final int[] sequence = new int[adjacency.vertexCount()];
+				for (int v = 0; v < sequence.length; v++) sequence[v] = v;
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * @param id The id of each vertex
+	 * @return The average difference in id between the endpoints of an edge
+	 */
+	public static double averageGap(Adjacency adjacency, int[] id) {
+		final Adjacency.Cursor cursor = adjacency.cursor();
+		double total = 0;
+		for (int v = 0; v < adjacency.vertexCount(); v++) {
+			cursor.reset(v);
+			while (cursor.next()) total += Math.abs(id[v] - id[cursor.neighbor()]);
+		}
+		return adjacency.edgeCount() == 0 ? 0 : total / adjacency.edgeCount();
+	}
+
+	/**
+	 * Breadth first search starting from a vertex with the lowest degree in each component, visiting the neighbors of
+	 * a vertex by increasing degree. Reversing the result keeps the same bandwidth but puts fewer vertices in between
+	 * the neighbors of the vertices with a high degree.
+	 */
+	private static int[] reverseCuthillMcKee(Adjacency adjacency) {
+
+		final int n = adjacency.vertexCount();
+		final int[] sequence = new int[n];
+		final boolean[] visited = new boolean[n];
+		final Adjacency.Cursor cursor = adjacency.cursor();
+		final int[] starts = byDegree(adjacency, false);
+		long[] row = new long[16];
+
+		int head = 0, tail = 0;
+		for (int start : starts) {
+			if (visited[start]) continue;
+			visited[start] = true;
+			sequence[tail++] = start;
+
+			while (head < tail) {
+				final int v = sequence[head++];
+				if (row.length < adjacency.degree(v)) row = new long[adjacency.degree(v)];
+
+				// Degrees are non-negative, so sorting them in the high bits sorts the neighbors by degree
+				int unvisited = 0;
+				cursor.reset(v);
+				while (cursor.next()) {
+					final int neighbor = cursor.neighbor();
+					if (visited[neighbor]) continue;
+					visited[neighbor] = true;
+					row[unvisited++] = ((long) adjacency.degree(neighbor) << 32) | neighbor;
+				}
+				Arrays.sort(row, 0, unvisited);
+				for (int i = 0; i < unvisited; i++) sequence[tail++] = (int) row[i];
+			}
+		}
+
+		for (int i = 0, j = n - 1; i < j; i++, j--) {
+			final int swap = sequence[i];
+			sequence[i] = sequence[j];
+			sequence[j] = swap;
+		}
+		return sequence;
+	}
+
+	/**
+	 * @return All vertices sorted by degree, ties keep their current order
+	 */
+	private static int[] byDegree(Adjacency adjacency, boolean decreasing) {
+		final int n = adjacency.vertexCount();
+		final long[] sorted = new long[n];
+		for (int v = 0; v < n; v++) {
+			final int degree = adjacency.degree(v);
+			sorted[v] = ((long) (decreasing ? Integer.MAX_VALUE - degree : degree) << 32) | v;
+		}
+		Arrays.sort(sorted);
+		final int[] sequence = new int[n];
+		for (int i = 0; i < n; i++) sequence[i] = (int) sorted[i];
+		return sequence;
+	}
+
+	private static int[] byCommunity(Adjacency adjacency, int clusterSize, int clusterIterations) {
+		final Coarsening coarsening = new Coarsening(adjacency, clusterSize, clusterIterations);
+		final int[] sequence = new int[adjacency.vertexCount()];
+		int i = 0;
+		for (int cluster : reverseCuthillMcKee(coarsening.coarse())) {
+			for (int member : coarsening.members(cluster)) sequence[i++] = member;
+		}
+		return sequence;
+	}
+}
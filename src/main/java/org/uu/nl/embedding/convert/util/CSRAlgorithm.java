@@ -0,0 +1,109 @@
+package org.uu.nl.embedding.convert.util;
+
+
+import grph.Grph;
+import grph.GrphAlgorithm;
+import grph.properties.NumericalProperty;
+import me.tongfei.progressbar.ProgressBar;
+import org.uu.nl.embedding.util.CSRAdjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * When asking for the edges of a vertex in the graph we don't get them in the same order as the neighbors, and looking
+ * up the weight of an edge goes through a property map. Most of the time spent in the Bookmark Coloring Algorithm (BCA)
+ * is on traversing neighborhoods, that's why we take a compressed sparse row snapshot of the graph: one offset per
+ * vertex and two flat arrays holding the neighbors and the weights of the connecting edges. Each vertex's neighbors are
+ * sorted by id, so the weight between two specific vertices can be found with a binary search.
+ *
+ * @author Jurian Baas
+ */
+public class CSRAlgorithm extends GrphAlgorithm<CSRAdjacency> {
+
+    protected final Configuration config;
+
+    public CSRAlgorithm(Configuration config) {
+        this.config = config;
+    }
+
+    @Override
+    public CSRAdjacency compute(Grph g) {
+
+        final InMemoryRdfGraph graph = (InMemoryRdfGraph) g;
+        final int[] vertices = g.getVertices().toIntArray();
+        final int numVertices = vertices.length;
+
+        final int[] offsets = new int[numVertices + 1];
+        for (int v : vertices) offsets[v + 1] = g.getInOutOnlyEdges(v).size();
+        for (int v = 0; v < numVertices; v++) offsets[v + 1] += offsets[v];
+
+        final int[] neighbors = new int[offsets[numVertices]];
+        final float[] weights = new float[offsets[numVertices]];
+
+        if (numVertices == 0) return new CSRAdjacency(offsets, neighbors, weights);
+
+        final int numThreads = config.getThreads();
+        final int[] verticesPerThread = new int[numThreads];
+        for (int i = 0; i < numThreads; i++) verticesPerThread[i] = numVertices / numThreads;
+        verticesPerThread[numThreads - 1] += numVertices % numThreads;
+        final ExecutorService es = Executors.newWorkStealingPool(numThreads);
+        final CompletionService<Void> cs = new ExecutorCompletionService<>(es);
+
+        try(ProgressBar pb = Configuration.progressBar("Adjacency", numVertices, "nodes", config.isQuiet())) {
+
+            for(int t = 0; t < numThreads; t++) {
+                final int offset = (numVertices / numThreads) * t;
+                final int count = verticesPerThread[t];
+                cs.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        fillRow(graph, vertices[offset + i], offsets, neighbors, weights);
+                        pb.step();
+                    }
+                }, null);
+            }
+
+            int handled = 0;
+            while(handled < numThreads) {
+                try {
+                    cs.take().get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                } finally {
+                    handled++;
+                }
+            }
+
+        } finally {
+            es.shutdown();
+        }
+
+        return new CSRAdjacency(offsets, neighbors, weights);
+    }
+
+    /**
+     * Copy the neighbors and edge weights of one vertex into its row, sorted by neighbor id
+     */
+    private static void fillRow(InMemoryRdfGraph g, int vertex, int[] offsets, int[] neighbors, float[] weights) {
+
+        final NumericalProperty edgeWeights = g.getEdgeWeightProperty();
+        final int[] edges = g.getInOutOnlyEdges(vertex).toIntArray();
+
+        // Neighbor ids are non-negative, so sorting the neighbor in the high bits also sorts the rows by neighbor
+        final long[] row = new long[edges.length];
+        for (int n = 0; n < edges.length; n++) {
+            final int neighbor = g.getTheOtherVertex(edges[n], vertex);
+            final int weight = Float.floatToRawIntBits(edgeWeights.getValueAsFloat(edges[n]));
+            row[n] = ((long) neighbor << 32) | (weight & 0xFFFFFFFFL);
+        }
+        Arrays.sort(row);
+
+        final int start = offsets[vertex];
+        for (int n = 0; n < row.length; n++) {
+            neighbors[start + n] = (int) (row[n] >>> 32);
+            weights[start + n] = Float.intBitsToFloat((int) row[n]);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.uu.nl.embedding.convert.util;
+
+import grph.Grph;
+import grph.GrphAlgorithm;
+import grph.properties.NumericalProperty;
+import me.tongfei.progressbar.ProgressBar;
+import org.uu.nl.embedding.util.CompressedAdjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Takes a {@link CompressedAdjacency} snapshot of the graph, for graphs where the flat arrays of {@link CSRAlgorithm}
+ * would take too much memory. The rows are encoded one vertex at a time, so the uncompressed form is never held in
+ * memory as a whole.
+ *
+ * @author Jurian Baas
+ */
+public class CompressedAlgorithm extends GrphAlgorithm<CompressedAdjacency> {
+
+    protected final Configuration config;
+
+    public CompressedAlgorithm(Configuration config) {
+        this.config = config;
+    }
+
+    @Override
+    public CompressedAdjacency compute(Grph g) {
+
+        final InMemoryRdfGraph graph = (InMemoryRdfGraph) g;
+        final NumericalProperty edgeWeights = graph.getEdgeWeightProperty();
+        final int numVertices = g.getNumberOfVertices();
+
+        // The most frequent weights are stored as an index, these are usually the weights of the predicates
+        final Map<Float, Long> counts = new HashMap<>();
+        for (int e : g.getEdges().toIntArray()) counts.merge(edgeWeights.getValueAsFloat(e), 2L, Long::sum);
+
+        final CompressedAdjacency.Builder builder = new CompressedAdjacency.Builder(numVertices,
+                CompressedAdjacency.weightTable(counts));
+
+        long[] row = new long[16];
+        try(ProgressBar pb = Configuration.progressBar("Adjacency", numVertices, "nodes", config.isQuiet())) {
+            for (int v = 0; v < numVertices; v++) {
+                final int[] edges = g.getInOutOnlyEdges(v).toIntArray();
+                if (row.length < edges.length) row = new long[edges.length];
+                for (int n = 0; n < edges.length; n++) {
+                    row[n] = CompressedAdjacency.Builder.entry(g.getTheOtherVertex(edges[n], v),
+                            edgeWeights.getValueAsFloat(edges[n]));
+                }
+                builder.add(row, edges.length);
+                pb.step();
+            }
+        }
+        return builder.build();
+    }
+}
@@ -4,4 +4,8 @@ public class OptimizationFailedException extends RuntimeException {
     public OptimizationFailedException(String message) {
         super(message);
     }
+
+    public OptimizationFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
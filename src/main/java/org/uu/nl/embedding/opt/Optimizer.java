@@ -32,6 +32,7 @@ public abstract class Optimizer implements IOptimizer {
 	protected final CostFunction costFunction;
 	private final int maxIterations;
 	private final double tolerance;
+	private final boolean quiet;
 
 	protected Optimizer(CoOccurrenceMatrix coMatrix, Configuration config, CostFunction costFunction) {
 
@@ -39,6 +40,7 @@ public abstract class Optimizer implements IOptimizer {
 		this.coMatrix = coMatrix;
 		this.maxIterations = config.getOpt().getMaxiter();
 		this.tolerance = config.getOpt().getTolerance();
+		this.quiet = config.isQuiet();
 		this.contextVectors = coMatrix.nrOfContextVectors();
 		this.focusVectors = coMatrix.nrOfFocusVectors();
 		this.numThreads = config.getThreads();
@@ -80,7 +82,7 @@ public abstract class Optimizer implements IOptimizer {
 		final ExecutorService es = Executors.newWorkStealingPool(numThreads);
 		final CompletionService<Float> completionService = new ExecutorCompletionService<>(es);
 
-		try(ProgressBar pb = Configuration.progressBar(getName(), maxIterations, "epochs")) {
+		try(ProgressBar pb = Configuration.progressBar(getName(), maxIterations, "epochs", quiet)) {
 
 			double prevCost = 0;
 			double iterDiff;
@@ -120,11 +122,19 @@ public abstract class Optimizer implements IOptimizer {
 
 					opt.setResultIterator(new EmbeddingIterator());
 					opt.setFinalCost(localCost);
+					opt.setConverged(true);
 
 					break;
 				}
 			}
-			
+
+			if(!opt.isConverged()) {
+				// The maximum number of epochs was reached, the last result is still usable
+				logger.warn("Reached " + maxIterations + " epochs before the cost changed less than the tolerance");
+				opt.setResultIterator(new EmbeddingIterator());
+				opt.setFinalCost(prevCost);
+			}
+
 		} finally {
 			es.shutdown();
 		}
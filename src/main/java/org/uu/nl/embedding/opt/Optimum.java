@@ -10,6 +10,7 @@ import java.util.List;
 public class Optimum implements Iterable<Optimizer.EmbeddedEntity>{
 
 	private double finalCost;
+	private boolean converged;
 	private Iterator<Optimizer.EmbeddedEntity> resultIterator;
 	private final List<Double> costHistory = new ArrayList<>();
 
@@ -35,6 +36,17 @@ public class Optimum implements Iterable<Optimizer.EmbeddedEntity>{
 		this.finalCost = finalCost;
 	}
 
+	/**
+	 * @return Whether the cost changed less than the tolerance before the maximum number of epochs was reached
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	public void setConverged(boolean converged) {
+		this.converged = converged;
+	}
+
 	@Override
 	public Iterator<Optimizer.EmbeddedEntity> iterator() {
 		return this.resultIterator;
@@ -50,58 +50,74 @@ public class Adagrad extends Optimizer {
     public OptimizeJob createJob(int id, int iteration) {
         return () -> {
 
-            int i, d, u, v;
-            float cost = 0, Xij, innerCost, weightedCost, grad1, grad2;
+            int i, u, v;
+            float cost = 0, Xij;
             final int offset = coCount / numThreads * id;
 
             for (i = 0; i < linesPerThread[id]; i++) {
 
                 u = coMatrix.cIdx_I(i + offset); // Index of focus bias
                 v = coMatrix.cIdx_J(i + offset); // Index of context bias
-                //u = bu;// * dimension; // Index of focus vector
-                //v = bv;// * dimension; // Index of bias vector
                 Xij = coMatrix.cIdx_C(i + offset); // Co-occurrence
 
-                /* Calculate cost, save diff for gradients */
-                innerCost = costFunction.innerCost(this, Xij, u, v);
-                weightedCost = costFunction.weightedCost(this, innerCost, Xij);
-                cost += 0.5 * weightedCost * innerCost; // weighted squared error
-
-				/*---------------------------
-				 * Adaptive gradient updates *
-				 ---------------------------*/
-
-                // Compute for word vectors
-                for (d = 0; d < dimension; d++) {
-
-                    //d1 = d + u; // Index of specific dimension in focus vector
-                    //d2 = d + v; // Index of specific dimension in context vector
-
-                    // Compute gradients
-                    grad1 = weightedCost * context[v][d];
-                    grad2 = weightedCost * focus[u][d];
-                    // Compute and apply updates
-                    focus[u][d] -= grad1 / FastMath.sqrt(gradSqFocus[u][d]) * learningRate;
-                    context[v][d] -= grad2 / FastMath.sqrt(gradSqContext[v][d]) * learningRate;
-                    // Store squared gradients
-                    gradSqFocus[u][d] += grad1 * grad1;
-                    gradSqContext[v][d] += grad2 * grad2;
-                }
-
-				/*---------------------
-				 * Compute for biases *
-				 ---------------------*/
-
-                // Compute updates (gradient of bias is the weighted cost)
-                fBias[u] -= weightedCost / FastMath.sqrt(gradSqFBias[u]);
-                cBias[v] -= weightedCost / FastMath.sqrt(gradSqCBias[v]);
-                weightedCost *= weightedCost;
-                // Store squared gradients
-                gradSqFBias[u] += weightedCost;
-                gradSqCBias[v] += weightedCost;
+                cost += update(u, v, Xij);
 
+                // A merged entry between two output nodes is also applied to the reverse pair
+                if(coMatrix.isSymmetric(i + offset)) {
+                    cost += update(coMatrix.contextIndex2Focus(v), coMatrix.focusIndex2Context(u), Xij);
+                }
             }
             return cost;
         };
     }
+
+    /**
+     * Apply the gradients of a single co-occurrence
+     * @return The weighted squared error of this co-occurrence
+     */
+    private float update(int u, int v, float Xij) {
+
+        int d;
+        float innerCost, weightedCost, grad1, grad2;
+
+        /* Calculate cost, save diff for gradients */
+        innerCost = costFunction.innerCost(this, Xij, u, v);
+        weightedCost = costFunction.weightedCost(this, innerCost, Xij);
+        final float cost = 0.5f * weightedCost * innerCost; // weighted squared error
+
+		/*---------------------------
+		 * Adaptive gradient updates *
+		 ---------------------------*/
+
+        // Compute for word vectors
+        for (d = 0; d < dimension; d++) {
+
+            //d1 = d + u; // Index of specific dimension in focus vector
+            //d2 = d + v; // Index of specific dimension in context vector
+
+            // Compute gradients
+            grad1 = weightedCost * context[v][d];
+            grad2 = weightedCost * focus[u][d];
+            // Compute and apply updates
+            focus[u][d] -= grad1 / FastMath.sqrt(gradSqFocus[u][d]) * learningRate;
+            context[v][d] -= grad2 / FastMath.sqrt(gradSqContext[v][d]) * learningRate;
+            // Store squared gradients
+            gradSqFocus[u][d] += grad1 * grad1;
+            gradSqContext[v][d] += grad2 * grad2;
+        }
+
+		/*---------------------
+		 * Compute for biases *
+		 ---------------------*/
+
+        // Compute updates (gradient of bias is the weighted cost)
+        fBias[u] -= weightedCost / FastMath.sqrt(gradSqFBias[u]);
+        cBias[v] -= weightedCost / FastMath.sqrt(gradSqCBias[v]);
+        weightedCost *= weightedCost;
+        // Store squared gradients
+        gradSqFBias[u] += weightedCost;
+        gradSqCBias[v] += weightedCost;
+
+        return cost;
+    }
 }
\ No newline at end of file
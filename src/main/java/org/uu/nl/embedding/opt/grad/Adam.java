@@ -75,9 +75,8 @@ public class Adam extends Optimizer {
 	public OptimizeJob createJob(int id, int iteration) {
 		return () -> {
 
-			int i, d, i_u, i_v, bu, bv;
-			float Xij, m, v, grad_u, grad_v;
-			float cost = 0, innerCost, weightedCost;
+			int i, i_u, i_v;
+			float cost = 0, Xij;
 			final int offset = coCount / numThreads * id;
 
 			// From the paper, a slight improvement of efficiency can be obtained this way
@@ -87,62 +86,79 @@ public class Adam extends Optimizer {
 
 				i_u = coMatrix.cIdx_I(i + offset); // Index of focus bias
 				i_v = coMatrix.cIdx_J(i + offset); // Index of context bias
-				//i_u = bu * dimension; // Index of focus vector
-				//i_v = bv * dimension; // Index of bias vector
 				Xij = coMatrix.cIdx_C(i + offset); // Co-occurrence
 
-				/* Calculate cost, save diff for gradients */
-				innerCost = costFunction.innerCost(this, Xij, i_u, i_v);
-				weightedCost = costFunction.weightedCost(this, innerCost, Xij);
-				cost += 0.5 * weightedCost * innerCost; // weighted squared error
+				cost += update(i_u, i_v, Xij, correction);
 
-				/*---------------------------
-				 * Adaptive gradient updates *
-				 ---------------------------*/
-
-				// Update the moments for the word vectors
-				for (d = 0; d < dimension; d++) {
-
-					//d1 = d + i_u; // Index of specific dimension in focus vector
-					//d2 = d + i_v; // Index of specific dimension in context vector
-
-					// Compute gradients
-					grad_u = weightedCost * context[i_v][d];
-					grad_v = weightedCost * focus[i_u][d];
-
-					// Update biased first and second moment estimates
-					m = beta1 * M1focus[i_u][d] + (1 - beta1) * grad_u;
-					v = beta2 * M2focus[i_u][d] + (1 - beta2) * (grad_u * grad_u);
-					focus[i_u][d] -= correction * m / (FastMath.sqrt(v) + epsilon);
-					M1focus[i_u][d] = m;
-					M2focus[i_u][d] = v;
-
-
-					m = beta1 * M1context[i_v][d] + (1 - beta1) * grad_v;
-					v = beta2 * M2context[i_v][d] + (1 - beta2) * (grad_v * grad_v);
-					context[i_v][d] -= correction * m / (FastMath.sqrt(v) + epsilon);
-					M1context[i_v][d] = m;
-					M2context[i_v][d] = v;
+				// A merged entry between two output nodes is also applied to the reverse pair
+				if(coMatrix.isSymmetric(i + offset)) {
+					cost += update(coMatrix.contextIndex2Focus(i_v), coMatrix.focusIndex2Context(i_u), Xij, correction);
 				}
-
-				/*---------------------
-				 * Compute for biases *
-				 ---------------------*/
-
-				// Update the first, second moment for the biases
-				m = beta1 * M1fBias[i_u] + (1 - beta1) * weightedCost;
-				v = beta2 * M2fBias[i_u] + (1 - beta2) * (weightedCost * weightedCost);
-				fBias[i_u] -= correction * m / (FastMath.sqrt(v) + epsilon);
-				M1fBias[i_u] = m;
-				M2fBias[i_u] = v;
-
-				m = beta1 * M1cBias[i_v] + (1 - beta1) * weightedCost;
-				v = beta2 * M2cBias[i_v] + (1 - beta2) * (weightedCost * weightedCost);
-				cBias[i_v] -= correction * m / (FastMath.sqrt(v) + epsilon);
-				M1cBias[i_v] = m;
-				M2cBias[i_v] = v;
 			}
 			return cost;
 		};
 	}
+
+	/**
+	 * Apply the gradients of a single co-occurrence
+	 * @return The weighted squared error of this co-occurrence
+	 */
+	private float update(int i_u, int i_v, float Xij, double correction) {
+
+		int d;
+		float m, v, grad_u, grad_v, innerCost, weightedCost;
+
+		/* Calculate cost, save diff for gradients */
+		innerCost = costFunction.innerCost(this, Xij, i_u, i_v);
+		weightedCost = costFunction.weightedCost(this, innerCost, Xij);
+		final float cost = 0.5f * weightedCost * innerCost; // weighted squared error
+
+		/*---------------------------
+		 * Adaptive gradient updates *
+		 ---------------------------*/
+
+		// Update the moments for the word vectors
+		for (d = 0; d < dimension; d++) {
+
+			//d1 = d + i_u; // Index of specific dimension in focus vector
+			//d2 = d + i_v; // Index of specific dimension in context vector
+
+			// Compute gradients
+			grad_u = weightedCost * context[i_v][d];
+			grad_v = weightedCost * focus[i_u][d];
+
+			// Update biased first and second moment estimates
+			m = beta1 * M1focus[i_u][d] + (1 - beta1) * grad_u;
+			v = beta2 * M2focus[i_u][d] + (1 - beta2) * (grad_u * grad_u);
+			focus[i_u][d] -= correction * m / (FastMath.sqrt(v) + epsilon);
+			M1focus[i_u][d] = m;
+			M2focus[i_u][d] = v;
+
+
+			m = beta1 * M1context[i_v][d] + (1 - beta1) * grad_v;
+			v = beta2 * M2context[i_v][d] + (1 - beta2) * (grad_v * grad_v);
+			context[i_v][d] -= correction * m / (FastMath.sqrt(v) + epsilon);
+			M1context[i_v][d] = m;
+			M2context[i_v][d] = v;
+		}
+
+		/*---------------------
+		 * Compute for biases *
+		 ---------------------*/
+
+		// Update the first, second moment for the biases
+		m = beta1 * M1fBias[i_u] + (1 - beta1) * weightedCost;
+		v = beta2 * M2fBias[i_u] + (1 - beta2) * (weightedCost * weightedCost);
+		fBias[i_u] -= correction * m / (FastMath.sqrt(v) + epsilon);
+		M1fBias[i_u] = m;
+		M2fBias[i_u] = v;
+
+		m = beta1 * M1cBias[i_v] + (1 - beta1) * weightedCost;
+		v = beta2 * M2cBias[i_v] + (1 - beta2) * (weightedCost * weightedCost);
+		cBias[i_v] -= correction * m / (FastMath.sqrt(v) + epsilon);
+		M1cBias[i_v] = m;
+		M2cBias[i_v] = v;
+
+		return cost;
+	}
 }
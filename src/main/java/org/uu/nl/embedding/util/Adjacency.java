@@ -0,0 +1,64 @@
+package org.uu.nl.embedding.util;
+
+/**
+ * Read-only view of the undirected, weighted neighborhoods of a graph, as used by the bookmark coloring algorithm.
+ * Vertices are numbered consecutively from 0. Neighbors are visited through a {@link Cursor}, which can be reset to
+ * another vertex so one cursor can be reused for the whole traversal without allocating.
+ *
+ * @author Jurian Baas
+ */
+public interface Adjacency {
+
+	/**
+	 * @return The number of vertices, vertex ids are in the range [0, vertexCount)
+	 */
+	int vertexCount();
+
+	/**
+	 * @return The number of stored edge endpoints, every undirected edge is counted twice
+	 */
+	long edgeCount();
+
+	int degree(int vertex);
+
+	/**
+	 * @return The sum of the weights of all edges incident to the vertex
+	 */
+	double totalWeight(int vertex);
+
+	/**
+	 * @return The sum of the weights of all edges between the two vertices, or 0 if they are not adjacent
+	 */
+	double weight(int vertex, int neighbor);
+
+	/**
+	 * Pick a neighbor with probability proportional to the edge weight, by finding where
+	 * a position on the cumulative weights of the neighbors falls.
+	 * @param target A position in the range [0, totalWeight(vertex))
+	 * @return The neighbor whose edge covers the given position
+	 */
+	int sample(int vertex, double target);
+
+	/**
+	 * @return A new cursor, which has to be positioned with {@link Cursor#reset(int)} before use
+	 */
+	Cursor cursor();
+
+	interface Cursor {
+
+		/**
+		 * Position this cursor before the first neighbor of a vertex
+		 */
+		Cursor reset(int vertex);
+
+		/**
+		 * Advance to the next neighbor
+		 * @return false if there are no more neighbors
+		 */
+		boolean next();
+
+		int neighbor();
+
+		float weight();
+	}
+}
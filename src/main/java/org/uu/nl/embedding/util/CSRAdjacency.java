@@ -0,0 +1,145 @@
+package org.uu.nl.embedding.util;
+
+/**
+ * Compressed sparse row snapshot of a graph. The neighbors of vertex v are stored in the flat arrays between
+ * offsets[v] and offsets[v+1], sorted by neighbor id, together with the weight of the connecting edge. The total
+ * weight of each vertex is computed once, so the transition probabilities do not need a second pass over the
+ * neighbors.
+ *
+ * @author Jurian Baas
+ */
+public class CSRAdjacency implements Adjacency {
+
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final float[] weights;
+	private final double[] totalWeights;
+	/**
+	 * Running sum of the weights within each row, only built when sampling is used
+	 */
+	private volatile float[] cumulativeWeights;
+
+	/**
+	 * @param offsets Start of the neighbors of each vertex, with one extra entry marking the end of the last vertex
+	 * @param neighbors Neighbor ids, sorted within each vertex
+	 * @param weights Weight of the edge to each neighbor
+	 */
+	public CSRAdjacency(int[] offsets, int[] neighbors, float[] weights) {
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.weights = weights;
+		this.totalWeights = new double[offsets.length - 1];
+
+		for (int v = 0; v < totalWeights.length; v++) {
+			double total = 0;
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) total += weights[i];
+			totalWeights[v] = total;
+		}
+	}
+
+	@Override
+	public int vertexCount() {
+		return totalWeights.length;
+	}
+
+	@Override
+	public long edgeCount() {
+		return neighbors.length;
+	}
+
+	@Override
+	public int degree(int vertex) {
+		return offsets[vertex + 1] - offsets[vertex];
+	}
+
+	@Override
+	public double totalWeight(int vertex) {
+		return totalWeights[vertex];
+	}
+
+	@Override
+	public double weight(int vertex, int neighbor) {
+		final int start = offsets[vertex];
+		final int end = offsets[vertex + 1];
+
+		int lo = start, hi = end - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (neighbors[mid] < neighbor) lo = mid + 1;
+			else hi = mid - 1;
+		}
+		// Sum over all parallel edges, which are stored next to each other
+		double weight = 0;
+		for (int i = lo; i < end && neighbors[i] == neighbor; i++) weight += weights[i];
+		return weight;
+	}
+
+	@Override
+	public int sample(int vertex, double target) {
+		final float[] cumulative = cumulativeWeights();
+		final int start = offsets[vertex];
+		final int end = offsets[vertex + 1];
+
+		// Find the first entry whose running sum exceeds the target
+		int lo = start, hi = end - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] <= target) lo = mid + 1;
+			else hi = mid;
+		}
+		return neighbors[lo];
+	}
+
+	private float[] cumulativeWeights() {
+		float[] cumulative = cumulativeWeights;
+		if (cumulative == null) {
+			synchronized (this) {
+				cumulative = cumulativeWeights;
+				if (cumulative == null) {
+					cumulative = new float[weights.length];
+					for (int v = 0; v < totalWeights.length; v++) {
+						double sum = 0;
+						for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+							sum += weights[i];
+							cumulative[i] = (float) sum;
+						}
+					}
+					cumulativeWeights = cumulative;
+				}
+			}
+		}
+		return cumulative;
+	}
+
+	@Override
+	public Cursor cursor() {
+		return new CSRCursor();
+	}
+
+	private class CSRCursor implements Cursor {
+
+		private int index, end;
+
+		@Override
+		public Cursor reset(int vertex) {
+			this.index = offsets[vertex] - 1;
+			this.end = offsets[vertex + 1];
+			return this;
+		}
+
+		@Override
+		public boolean next() {
+			return ++index < end;
+		}
+
+		@Override
+		public int neighbor() {
+			return neighbors[index];
+		}
+
+		@Override
+		public float weight() {
+			return weights[index];
+		}
+	}
+}
@@ -16,6 +16,10 @@ public interface CoOccurrenceMatrix {
 	int cIdx_I(int i);
 	int cIdx_J(int j);
 	float cIdx_C(int i);
+	/**
+	 * @return Whether the entry also stands for the reverse pair, with the focus and context node swapped
+	 */
+	boolean isSymmetric(int i);
 	int coOccurrenceCount();
 	void shuffle();
 }
@@ -0,0 +1,279 @@
+package org.uu.nl.embedding.util;
+
+import org.uu.nl.embedding.util.write.WritableUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compressed form of {@link CSRAdjacency} for graphs that do not fit in memory next to the co-occurrence matrix. The
+ * neighbors of each vertex are sorted, and stored as the gaps between consecutive neighbor ids with the zero-compressed
+ * encoding of {@link WritableUtils}. Most edges share a few weights (one per predicate), so instead of a float each
+ * edge stores the index of its weight in a small table. Edges whose weight is not in the table, such as the edges
+ * between similar literals, are followed by the float itself. Cursors decode the neighbors on the fly.
+ * <p>
+ * A typical edge endpoint takes 2 to 4 bytes instead of 8. The price is that the weight between two vertices and
+ * sampling a neighbor go through the neighbors one by one.
+ * </p>
+ *
+ * @author Jurian Baas
+ */
+public class CompressedAdjacency implements Adjacency {
+
+	/**
+	 * Weight codes up to this value take a single byte, code 0 means the weight follows as a float
+	 */
+	private static final int MAX_TABLE_SIZE = 127;
+	private static final int EXPLICIT_WEIGHT = 0;
+	/**
+	 * Rows are stored in pages of at most 2^PAGE_BITS bytes, a row never crosses a page boundary
+	 */
+	private static final int PAGE_BITS = 30;
+	private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+	/**
+	 * A neighbor id gap takes at most 5 bytes, its weight code 1 and an explicit weight 4
+	 */
+	private static final int MAX_EDGE_BYTES = 10;
+
+	private final byte[][] pages;
+	/**
+	 * Page and position of the first byte of each row
+	 */
+	private final long[] starts;
+	private final int[] degrees;
+	private final double[] totalWeights;
+	private final float[] table;
+	private final long edgeCount;
+
+	private CompressedAdjacency(byte[][] pages, long[] starts, int[] degrees, double[] totalWeights, float[] table, long edgeCount) {
+		this.pages = pages;
+		this.starts = starts;
+		this.degrees = degrees;
+		this.totalWeights = totalWeights;
+		this.table = table;
+		this.edgeCount = edgeCount;
+	}
+
+	/**
+	 * @param counts The number of edges with each weight
+	 * @return The most frequent weights, which will be stored as an index in the table
+	 */
+	public static float[] weightTable(Map<Float, Long> counts) {
+		final List<Map.Entry<Float, Long>> entries = new ArrayList<>(counts.entrySet());
+		entries.sort(Map.Entry.<Float, Long>comparingByValue().reversed());
+		final float[] table = new float[Math.min(MAX_TABLE_SIZE, entries.size())];
+		for (int i = 0; i < table.length; i++) table[i] = entries.get(i).getKey();
+		return table;
+	}
+
+	/**
+	 * @return The number of bytes used for the rows
+	 */
+	public long bytes() {
+		long bytes = 0;
+		for (byte[] page : pages) bytes += page.length;
+		return bytes;
+	}
+
+	@Override
+	public int vertexCount() {
+		return degrees.length;
+	}
+
+	@Override
+	public long edgeCount() {
+		return edgeCount;
+	}
+
+	@Override
+	public int degree(int vertex) {
+		return degrees[vertex];
+	}
+
+	@Override
+	public double totalWeight(int vertex) {
+		return totalWeights[vertex];
+	}
+
+	@Override
+	public double weight(int vertex, int neighbor) {
+		final Cursor cursor = cursor().reset(vertex);
+		double weight = 0;
+		// Neighbors are sorted, parallel edges are stored next to each other
+		while (cursor.next()) {
+			final int n = cursor.neighbor();
+			if (n == neighbor) weight += cursor.weight();
+			else if (n > neighbor) break;
+		}
+		return weight;
+	}
+
+	@Override
+	public int sample(int vertex, double target) {
+		final Cursor cursor = cursor().reset(vertex);
+		double sum = 0;
+		int neighbor = -1;
+		while (cursor.next()) {
+			neighbor = cursor.neighbor();
+			sum += cursor.weight();
+			if (sum > target) break;
+		}
+		return neighbor;
+	}
+
+	@Override
+	public Cursor cursor() {
+		return new CompressedCursor();
+	}
+
+	private class CompressedCursor implements Cursor {
+
+		private byte[] page;
+		private int position, remaining, neighbor;
+		private float weight;
+
+		@Override
+		public Cursor reset(int vertex) {
+			final long start = starts[vertex];
+			this.page = pages[(int) (start >>> PAGE_BITS)];
+			this.position = (int) (start & PAGE_MASK);
+			this.remaining = degrees[vertex];
+			// The first gap is the id of the first neighbor
+			this.neighbor = 0;
+			return this;
+		}
+
+		@Override
+		public boolean next() {
+			if (remaining == 0) return false;
+			remaining--;
+
+			neighbor += readVInt();
+			final int code = readVInt();
+			if (code == EXPLICIT_WEIGHT) {
+				weight = Float.intBitsToFloat(
+						(page[position] & 0xFF) << 24 | (page[position + 1] & 0xFF) << 16 |
+						(page[position + 2] & 0xFF) << 8 | (page[position + 3] & 0xFF));
+				position += 4;
+			} else weight = table[code - 1];
+			return true;
+		}
+
+		private int readVInt() {
+			final byte first = page[position];
+			// Small values are stored in the first byte itself
+			if (first >= -112) {
+				position++;
+				return first;
+			}
+			final int value = (int) WritableUtils.readVLong(page, position);
+			position += WritableUtils.decodeVIntSize(first);
+			return value;
+		}
+
+		@Override
+		public int neighbor() {
+			return neighbor;
+		}
+
+		@Override
+		public float weight() {
+			return weight;
+		}
+	}
+
+	/**
+	 * Encodes the rows of the vertices one after another, in order of vertex id
+	 */
+	public static class Builder {
+
+		private final long[] starts;
+		private final int[] degrees;
+		private final double[] totalWeights;
+		private final float[] table;
+		private final Map<Integer, Integer> codes = new HashMap<>();
+		private final List<byte[]> pages = new ArrayList<>();
+		private byte[] page = new byte[1 << 16];
+		private int position, vertex;
+		private long edgeCount;
+
+		/**
+		 * @param table The weights that are stored as an index, see {@link #weightTable(Map)}
+		 */
+		public Builder(int vertexCount, float[] table) {
+			this.starts = new long[vertexCount];
+			this.degrees = new int[vertexCount];
+			this.totalWeights = new double[vertexCount];
+			this.table = table;
+			for (int i = 0; i < table.length; i++) codes.put(Float.floatToRawIntBits(table[i]), i + 1);
+		}
+
+		/**
+		 * @return A neighbor and the weight of the edge to it, packed so that sorting the entries sorts by neighbor
+		 */
+		public static long entry(int neighbor, float weight) {
+			return ((long) neighbor << 32) | (Float.floatToRawIntBits(weight) & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Add the row of the next vertex
+		 * @param row Entries created with {@link #entry(int, float)}, sorted in place
+		 * @param count The number of entries in the row
+		 */
+		public void add(long[] row, int count) {
+
+			Arrays.sort(row, 0, count);
+			reserve((long) count * MAX_EDGE_BYTES);
+			starts[vertex] = ((long) pages.size() << PAGE_BITS) | position;
+			degrees[vertex] = count;
+
+			int previous = 0;
+			double total = 0;
+			for (int i = 0; i < count; i++) {
+				final int neighbor = (int) (row[i] >>> 32);
+				final int bits = (int) row[i];
+				position = WritableUtils.writeVLong(page, position, neighbor - previous);
+				previous = neighbor;
+
+				final Integer code = codes.get(bits);
+				if (code != null) {
+					position = WritableUtils.writeVLong(page, position, code);
+				} else {
+					position = WritableUtils.writeVLong(page, position, EXPLICIT_WEIGHT);
+					page[position++] = (byte) (bits >>> 24);
+					page[position++] = (byte) (bits >>> 16);
+					page[position++] = (byte) (bits >>> 8);
+					page[position++] = (byte) bits;
+				}
+				total += Float.intBitsToFloat(bits);
+			}
+			totalWeights[vertex] = total;
+			edgeCount += count;
+			vertex++;
+		}
+
+		/**
+		 * Make sure the current page has room for the given number of bytes, growing it or starting a new page
+		 */
+		private void reserve(long bytes) {
+			final long needed = position + bytes;
+			if (needed <= page.length) return;
+			if (needed <= (1L << PAGE_BITS)) {
+				page = Arrays.copyOf(page, (int) Math.min(1L << PAGE_BITS, Math.max(needed, 2L * page.length)));
+			} else {
+				pages.add(Arrays.copyOf(page, position));
+				page = new byte[(int) Math.min(1L << PAGE_BITS, Math.max(bytes, 1 << 16))];
+				position = 0;
+			}
+		}
+
+		public CompressedAdjacency build() {
+			pages.add(Arrays.copyOf(page, position));
+			page = null;
+			return new CompressedAdjacency(pages.toArray(new byte[0][]), starts, degrees, totalWeights, table, edgeCount);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import grph.in_memory.InMemoryGrph;
 import grph.properties.NumericalProperty;
 import grph.properties.Property;
 import grph.properties.StringProperty;
+import org.uu.nl.embedding.convert.util.NodeInfo;
 
 public class InMemoryRdfGraph extends InMemoryGrph {
 
@@ -33,4 +34,80 @@ public class InMemoryRdfGraph extends InMemoryGrph {
     public NumericalProperty getVertexTypeProperty() {
         return vertexTypeProperty;
     }
+
+    /**
+     * Literals are merged per predicate, so a label alone does not identify a literal vertex
+     * @return A key that identifies the vertex across different conversions of the same data
+     */
+    public String getVertexKey(int v) {
+        final String label = getVertexLabelProperty().getValueAsString(v);
+        if(vertexTypeProperty.getValueAsInt(v) == NodeInfo.LITERAL.id) {
+            return vertexKey(literalPredicateProperty.getValueAsString(v), label);
+        }
+        return label;
+    }
+
+    public static String vertexKey(String literalPredicate, String label) {
+        return literalPredicate + '\u0000' + label;
+    }
+
+    /**
+     * @return The id of a new undirected edge with the given weight and edge type
+     */
+    public int addWeightedEdge(int a, int b, float weight, int type) {
+        final int e = addUndirectedSimpleEdge(a, b);
+        edgeWeightProperty.setValue(e, weight);
+        edgeTypeProperty.setValue(e, type);
+        return e;
+    }
+
+    /**
+     * Copy the graph with new vertex ids, keeping all vertex and edge properties. Edges of left out vertices are
+     * left out as well.
+     * @param id The new id of each vertex, or a negative value to leave the vertex out
+     * @param count The number of vertices that are kept, the kept vertices must be given the ids 0 to count - 1
+     */
+    public InMemoryRdfGraph renumber(int[] id, int count) {
+
+        final int[] vertices = new int[count];
+        for (int v = 0; v < id.length; v++) {
+            if (id[v] >= 0) vertices[id[v]] = v;
+        }
+        return subgraph(vertices, id, getEdges().toIntArray());
+    }
+
+    /**
+     * Copy a part of the graph, keeping all vertex and edge properties
+     * @param vertices The vertices that are kept, vertex i of the copy is vertices[i]
+     * @param id The new id of each kept vertex, the ids of other vertices are not read unless an edge refers to them
+     * @param edges The edges that are kept, an edge of which one of the endpoints has a negative id is left out
+     */
+    public InMemoryRdfGraph subgraph(int[] vertices, int[] id, int[] edges) {
+
+        final InMemoryRdfGraph g = new InMemoryRdfGraph();
+
+        // Vertices are added in their new order
+        for (int w = 0; w < vertices.length; w++) {
+            final int v = vertices[w];
+            g.addVertex(w);
+            g.getVertexTypeProperty().setValue(w, vertexTypeProperty.getValueAsInt(v));
+            g.getVertexLabelProperty().setValue(w, getVertexLabelProperty().getValueAsString(v));
+            if (literalPredicateProperty.isSetted(v)) {
+                g.getLiteralPredicateProperty().setValue(w, literalPredicateProperty.getValueAsString(v));
+            }
+        }
+
+        for (int e : edges) {
+            final int a = getOneVertex(e);
+            final int b = getTheOtherVertex(e, a);
+            if (id[a] < 0 || id[b] < 0) continue;
+
+            final int f = g.addWeightedEdge(id[a], id[b], edgeWeightProperty.getValueAsFloat(e), edgeTypeProperty.getValueAsInt(e));
+            // Edges between similar literals have no label
+            if (getEdgeLabelProperty().isSetted(e)) {
+                g.getEdgeLabelProperty().setValue(f, getEdgeLabelProperty().getValueAsString(e));
+            }
+        }
+        return g;
+    }
 }
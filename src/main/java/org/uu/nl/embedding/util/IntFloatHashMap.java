@@ -0,0 +1,308 @@
+package org.uu.nl.embedding.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from non-negative int keys to float values. Keys and values are kept in two parallel
+ * primitive arrays and collisions are resolved by linear probing, so adding to an existing key never allocates. The
+ * entries can be visited without creating iterators or entry objects by walking the slots directly:
+ * <pre>
+ *     for (int s = 0; s < map.capacity(); s++) {
+ *         if (map.isUsed(s)) visit(map.keyAt(s), map.valueAt(s));
+ *     }
+ * </pre>
+ *
+ * @author Jurian Baas
+ */
+public class IntFloatHashMap {
+
+	/**
+	 * Marks an empty slot, which is why only non-negative keys are supported
+	 */
+	public static final int FREE = -1;
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private int[] keys;
+	private float[] values;
+	private int size;
+	private int mask;
+	private int resizeAt;
+
+	public IntFloatHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize The number of entries this map can hold before it needs to grow
+	 */
+	public IntFloatHashMap(int expectedSize) {
+		allocate(tableSize(expectedSize));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The number of slots, valid slot indices are in the range [0, capacity)
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public boolean isUsed(int slot) {
+		return keys[slot] != FREE;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public float valueAt(int slot) {
+		return values[slot];
+	}
+
+	public void setValueAt(int slot, float value) {
+		values[slot] = value;
+	}
+
+	public boolean containsKey(int key) {
+		return slotOf(key) != FREE;
+	}
+
+	/**
+	 * @return The value associated with the key, or 0 if the key is not present
+	 */
+	public float get(int key) {
+		return getOrDefault(key, 0f);
+	}
+
+	public float getOrDefault(int key, float defaultValue) {
+		final int slot = slotOf(key);
+		return slot == FREE ? defaultValue : values[slot];
+	}
+
+	public void put(int key, float value) {
+		final int slot = findOrInsert(key);
+		values[slot] = value;
+	}
+
+	/**
+	 * Add the value to a key, or create a new record if the key was not present before
+	 * @return The value now associated with the key
+	 */
+	public float addTo(int key, float value) {
+		final int slot = findOrInsert(key);
+		return values[slot] += value;
+	}
+
+	/**
+	 * Remove a key, the following entries in the same probe sequence are shifted back
+	 * so no tombstones are left behind
+	 * @return true if the key was present
+	 */
+	public boolean remove(int key) {
+		int last = slotOf(key);
+		if (last == FREE) return false;
+
+		int slot = last;
+		while (true) {
+			slot = (slot + 1) & mask;
+			final int k = keys[slot];
+			if (k == FREE) break;
+
+			final int ideal = hash(k) & mask;
+			// Only move the entry if its ideal slot does not lie cyclically within (last, slot]
+			final boolean inRange = last <= slot ? (last < ideal && ideal <= slot) : (last < ideal || ideal <= slot);
+			if (!inRange) {
+				keys[last] = k;
+				values[last] = values[slot];
+				last = slot;
+			}
+		}
+		keys[last] = FREE;
+		values[last] = 0;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	/**
+	 * Multiply all values in place
+	 */
+	public void scale(float factor) {
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != FREE) values[s] *= factor;
+		}
+	}
+
+	/**
+	 * @return The total sum of all values
+	 */
+	public float sum() {
+		float sum = 0;
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != FREE) sum += values[s];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return The largest value, or the given default if there are no entries
+	 */
+	public float max(float ifEmpty) {
+		if (size == 0) return ifEmpty;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != FREE && values[s] > max) max = values[s];
+		}
+		return max;
+	}
+
+	/**
+	 * @return The smallest value, or the given default if there are no entries
+	 */
+	public float min(float ifEmpty) {
+		if (size == 0) return ifEmpty;
+		float min = Float.POSITIVE_INFINITY;
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != FREE && values[s] < min) min = values[s];
+		}
+		return min;
+	}
+
+	/**
+	 * Keep only the k entries with the largest values, which are selected with a bounded min-heap
+	 * @return The sum of the values of the removed entries
+	 */
+	public float retainLargest(int k) {
+		if (size <= k) return 0;
+
+		// Min-heap of slots ordered by value, the root is the smallest value kept so far
+		final int[] heap = new int[k];
+		int heapSize = 0;
+		float removed = 0;
+
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] == FREE) continue;
+			if (heapSize < k) {
+				heapUp(heap, heapSize++, s);
+			} else if (values[s] > values[heap[0]]) {
+				removed += values[heap[0]];
+				heap[0] = s;
+				heapDown(heap, heapSize, 0);
+			} else {
+				removed += values[s];
+			}
+		}
+
+		final int[] oldKeys = keys;
+		final float[] oldValues = values;
+		allocate(tableSize(k));
+		size = 0;
+		for (int i = 0; i < heapSize; i++) put(oldKeys[heap[i]], oldValues[heap[i]]);
+
+		return removed;
+	}
+
+	private void heapUp(int[] heap, int index, int slot) {
+		while (index > 0) {
+			final int parent = (index - 1) >>> 1;
+			if (values[heap[parent]] <= values[slot]) break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = slot;
+	}
+
+	private void heapDown(int[] heap, int heapSize, int index) {
+		final int slot = heap[index];
+		final int half = heapSize >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			final int right = child + 1;
+			if (right < heapSize && values[heap[right]] < values[heap[child]]) child = right;
+			if (values[slot] <= values[heap[child]]) break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = slot;
+	}
+
+	private int slotOf(int key) {
+		int slot = hash(key) & mask;
+		int k;
+		while ((k = keys[slot]) != FREE) {
+			if (k == key) return slot;
+			slot = (slot + 1) & mask;
+		}
+		return FREE;
+	}
+
+	private int findOrInsert(int key) {
+		if (key < 0) throw new IllegalArgumentException("Negative keys are not supported: " + key);
+
+		int slot = hash(key) & mask;
+		int k;
+		while ((k = keys[slot]) != FREE) {
+			if (k == key) return slot;
+			slot = (slot + 1) & mask;
+		}
+
+		if (size >= resizeAt) {
+			rehash(keys.length << 1);
+			return findOrInsert(key);
+		}
+
+		keys[slot] = key;
+		size++;
+		return slot;
+	}
+
+	private void rehash(int newCapacity) {
+		final int[] oldKeys = keys;
+		final float[] oldValues = values;
+		allocate(newCapacity);
+
+		for (int s = 0; s < oldKeys.length; s++) {
+			final int k = oldKeys[s];
+			if (k == FREE) continue;
+			int slot = hash(k) & mask;
+			while (keys[slot] != FREE) slot = (slot + 1) & mask;
+			keys[slot] = k;
+			values[slot] = oldValues[s];
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new float[capacity];
+		Arrays.fill(keys, FREE);
+		this.mask = capacity - 1;
+		this.resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int tableSize(int expectedSize) {
+		final int needed = (int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR);
+		return Integer.highestOneBit(needed - 1) << 1;
+	}
+
+	/**
+	 * Node ids are consecutive, so they are spread out over the table with a multiplicative hash
+	 */
+	private static int hash(int key) {
+		final int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
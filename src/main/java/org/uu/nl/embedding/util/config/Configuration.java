@@ -8,7 +8,10 @@ import org.uu.nl.embedding.util.rnd.ThreadLocalSeededRandom;
 import org.uu.nl.embedding.util.similarity.*;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +49,26 @@ public class Configuration {
         LOCATION
     }
 
+    public enum BCAEngine {
+        UNDIRECTED_WEIGHTED, FORWARD_PUSH, MONTE_CARLO, BLOCK_PUSH
+    }
+
+    public enum BCAOrdering {
+        NODE_ID, FIFO, PAINT
+    }
+
+    public enum BCASchedule {
+        NONE, COST
+    }
+
+    public enum BCALeftover {
+        REDISTRIBUTE, DROP
+    }
+
+    public enum VertexOrder {
+        NONE, BFS, DEGREE, COMMUNITY
+    }
+
     public enum BCANormalization {
         NONE, UNITY, COUNTS
     }
@@ -94,6 +117,31 @@ public class Configuration {
         this.threads = threads;
     }
 
+    /**
+     * Set for the configurations of parts of the graph, which are processed in their thousands
+     */
+    private boolean quiet;
+
+    /**
+     * @return Whether progress bars are left out
+     */
+    public boolean isQuiet() {
+        return quiet;
+    }
+
+    private File sourceFile;
+
+    /**
+     * @return The file this configuration was loaded from, so other processes can load the same configuration
+     */
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    public void setSourceFile(File sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
     public EmbeddingMethod getMethodEnum() {
         return EmbeddingMethod.valueOf(this.method.toUpperCase());
     }
@@ -167,11 +215,21 @@ public class Configuration {
     }
 
     public static ProgressBar progressBar(String name, long max, String unitName) {
+        return progressBar(name, max, unitName, false);
+    }
+
+    /**
+     * @param quiet Whether the progress bar is discarded instead of printed
+     */
+    public static ProgressBar progressBar(String name, long max, String unitName, boolean quiet) {
         return new ProgressBar (
                 name,
                 max,
                 250,
-                System.out,
+                quiet ? new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) { }
+                }) : System.out,
                 ProgressBarStyle.COLORFUL_UNICODE_BLOCK,
                 " " + unitName,
                 1,
@@ -264,6 +322,8 @@ public class Configuration {
         private double alpha;
         private String pattern;
         private String time;
+        private int hubSize;
+        private double hubDensity;
 
         /**
          * Instantiate a similarity object from the configuration information
@@ -389,12 +449,77 @@ public class Configuration {
         public double getThresholdDistance() {
             return this.thresholdDistance;
         }
+
+        /**
+         * A hub passes paint on to all members of the group in proportion to the total similarity of each member
+         * within the group, not in proportion to the similarity of the pair. It also adds a hop, so the paint decays
+         * by another factor of 1 - alpha before it reaches the other members.
+         * @return The smallest group of similar literals that is connected through a hub vertex instead of with an
+         * edge for every pair, 0 to always use direct edges
+         */
+        public int getHubSize() {
+            return hubSize;
+        }
+
+        public void setHubSize(int hubSize) {
+            this.hubSize = hubSize;
+        }
+
+        public boolean usingHubs() {
+            return hubSize > 0;
+        }
+
+        /**
+         * @return The smallest share of all possible pairs in a group that must be similar for it to get a hub
+         */
+        public double getHubDensity() {
+            return hubDensity == 0 ? 0.5 : hubDensity;
+        }
+
+        public void setHubDensity(double hubDensity) {
+            this.hubDensity = hubDensity;
+        }
     }
 
-    public static class BCA {
+    public static class BCA implements Cloneable {
 
         private double alpha;
+        private List<Double> alphas;
         private double epsilon;
+        private int batchSize;
+        private String engine;
+        private String ordering;
+        private String schedule;
+        private int walks;
+        private double walkTolerance;
+        private int blockSize;
+        private int topK;
+        private boolean renormalize;
+        private int hubs;
+        private int hubCacheSize;
+        private int aliasDegree;
+        private int aliasSamples;
+        private int budgetTouched;
+        private long budgetPushes;
+        private long budgetNanos;
+        private String budgetLeftover;
+        private boolean twoLevel;
+        private int nearHops;
+        private int clusterSize;
+        private int clusterIterations;
+        private boolean prune;
+        private String reorder;
+        private boolean partition;
+        private int partitionSize;
+        private boolean compressAdjacency;
+        private boolean symmetric;
+        private String store;
+        private String residuals;
+        private String added;
+        private String removed;
+        private int shards;
+        private String shardDirectory;
+        private int shard = -1;
 
         public double getAlpha() {
             return alpha;
@@ -404,6 +529,34 @@ public class Configuration {
             this.alpha = alpha;
         }
 
+        /**
+         * @return A copy of these settings with another alpha
+         */
+        public BCA withAlpha(double alpha) {
+            try {
+                final BCA copy = (BCA) clone();
+                copy.alpha = alpha;
+                return copy;
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        /**
+         * @return The alphas whose coloring vectors are computed together in one traversal, or null if only alpha is used
+         */
+        public List<Double> getAlphas() {
+            return alphas;
+        }
+
+        public void setAlphas(List<Double> alphas) {
+            this.alphas = alphas;
+        }
+
+        public boolean usingAlphas() {
+            return alphas != null && !alphas.isEmpty();
+        }
+
         public double getEpsilon() {
             return epsilon;
         }
@@ -412,6 +565,502 @@ public class Configuration {
             this.epsilon = epsilon;
         }
 
+        /**
+         * @return The number of bookmarks handled by one task, 0 means it is chosen based on the number of bookmarks
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getEngine() {
+            return engine;
+        }
+
+        public void setEngine(String engine) {
+            this.engine = engine;
+        }
+
+        public BCAEngine getEngineEnum() {
+            if(this.engine == null) return BCAEngine.UNDIRECTED_WEIGHTED;
+            return BCAEngine.valueOf(this.engine.toUpperCase());
+        }
+
+        public String getOrdering() {
+            return ordering;
+        }
+
+        public void setOrdering(String ordering) {
+            this.ordering = ordering;
+        }
+
+        /**
+         * @return The order in which nodes with waiting paint are processed, or null to use the default of the engine
+         */
+        public BCAOrdering getOrderingEnum() {
+            if(this.ordering == null) return null;
+            return BCAOrdering.valueOf(this.ordering.toUpperCase());
+        }
+
+        public String getSchedule() {
+            return schedule;
+        }
+
+        public void setSchedule(String schedule) {
+            this.schedule = schedule;
+        }
+
+        /**
+         * @return The order in which bookmarks are handed to the workers
+         */
+        public BCASchedule getScheduleEnum() {
+            if(this.schedule == null) return BCASchedule.NONE;
+            return BCASchedule.valueOf(this.schedule.toUpperCase());
+        }
+
+        /**
+         * @return The maximum number of random walks per bookmark for the Monte Carlo engine
+         */
+        public int getWalks() {
+            return walks == 0 ? 10000 : walks;
+        }
+
+        public void setWalks(int walks) {
+            this.walks = walks;
+        }
+
+        /**
+         * @return Stop walking once the L1 change of the estimate over a round of walks is below this value,
+         * 0 means all walks are performed
+         */
+        public double getWalkTolerance() {
+            return walkTolerance;
+        }
+
+        public void setWalkTolerance(double walkTolerance) {
+            this.walkTolerance = walkTolerance;
+        }
+
+        /**
+         * @return The number of bookmarks the block push engine computes in one traversal. The engine is only faster
+         * than forward push when the bookmarks of a block share their neighborhoods.
+         */
+        public int getBlockSize() {
+            return blockSize == 0 ? 16 : blockSize;
+        }
+
+        public void setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * @return The maximum number of entries kept per bookmark, 0 means all entries are kept
+         */
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public boolean usingTopK() {
+            return topK > 0;
+        }
+
+        /**
+         * @return Whether the entries that survive top-k selection should sum to 1, instead of
+         * keeping their share of the complete coloring vector
+         */
+        public boolean isRenormalize() {
+            return renormalize;
+        }
+
+        public void setRenormalize(boolean renormalize) {
+            this.renormalize = renormalize;
+        }
+
+        /**
+         * A cached vector does not know where the paint came from, so it is only reused when expanding the hub would
+         * hold back less than epsilon from that node. The result is then close to, but not the same as, expanding it.
+         * @return The number of highest degree nodes whose coloring vectors are cached and reused,
+         * 0 means hubs are expanded like any other node
+         */
+        public int getHubs() {
+            return hubs;
+        }
+
+        public void setHubs(int hubs) {
+            this.hubs = hubs;
+        }
+
+        public boolean usingHubs() {
+            return hubs > 0;
+        }
+
+        /**
+         * @return The memory budget of the hub cache in megabytes
+         */
+        public int getHubCacheSize() {
+            return hubCacheSize == 0 ? 256 : hubCacheSize;
+        }
+
+        public void setHubCacheSize(int hubCacheSize) {
+            this.hubCacheSize = hubCacheSize;
+        }
+
+        /**
+         * @return Nodes with at least this many neighbors send their paint to sampled neighbors,
+         * 0 means every node is expanded
+         */
+        public int getAliasDegree() {
+            return aliasDegree;
+        }
+
+        public void setAliasDegree(int aliasDegree) {
+            this.aliasDegree = aliasDegree;
+        }
+
+        public boolean usingAliasTables() {
+            return aliasDegree > 0;
+        }
+
+        /**
+         * @return The number of neighbors a sampled node sends its paint to
+         */
+        public int getAliasSamples() {
+            return aliasSamples == 0 ? 256 : aliasSamples;
+        }
+
+        public void setAliasSamples(int aliasSamples) {
+            this.aliasSamples = aliasSamples;
+        }
+
+        /**
+         * This is a soft limit, it is checked before paint is spread from a node, and that node can still touch all
+         * of its neighbors. Only the forward push and undirected weighted engines use the budget, with a single alpha.
+         * @return The maximum number of nodes that receive paint from one bookmark, 0 means no limit
+         */
+        public int getBudgetTouched() {
+            return budgetTouched;
+        }
+
+        public void setBudgetTouched(int budgetTouched) {
+            this.budgetTouched = budgetTouched;
+        }
+
+        /**
+         * @return The maximum number of times paint is spread for one bookmark, 0 means no limit
+         */
+        public long getBudgetPushes() {
+            return budgetPushes;
+        }
+
+        public void setBudgetPushes(long budgetPushes) {
+            this.budgetPushes = budgetPushes;
+        }
+
+        /**
+         * @return The maximum time spent on one bookmark in nanoseconds, 0 means no limit
+         */
+        public long getBudgetNanos() {
+            return budgetNanos;
+        }
+
+        public void setBudgetNanos(long budgetNanos) {
+            this.budgetNanos = budgetNanos;
+        }
+
+        public String getBudgetLeftover() {
+            return budgetLeftover;
+        }
+
+        public void setBudgetLeftover(String budgetLeftover) {
+            this.budgetLeftover = budgetLeftover;
+        }
+
+        /**
+         * @return What happens to the paint that is still waiting when the budget of a bookmark runs out
+         */
+        public BCALeftover getBudgetLeftoverEnum() {
+            if(this.budgetLeftover == null) return BCALeftover.REDISTRIBUTE;
+            return BCALeftover.valueOf(this.budgetLeftover.toUpperCase());
+        }
+
+        public boolean usingBudget() {
+            return budgetTouched > 0 || budgetPushes > 0 || budgetNanos > 0;
+        }
+
+        /**
+         * @return Whether vertices that no paint can reach from any bookmark are removed after conversion. This is
+         * exact for the default engine without two levels or hubs, and an approximation for all other settings.
+         */
+        public boolean isPrune() {
+            return prune;
+        }
+
+        public void setPrune(boolean prune) {
+            this.prune = prune;
+        }
+
+        public String getReorder() {
+            return reorder;
+        }
+
+        public void setReorder(String reorder) {
+            this.reorder = reorder;
+        }
+
+        /**
+         * @return How the vertices are renumbered after conversion, so that neighbors are close together in memory
+         */
+        public VertexOrder getReorderEnum() {
+            if(this.reorder == null) return VertexOrder.NONE;
+            return VertexOrder.valueOf(this.reorder.toUpperCase());
+        }
+
+        public boolean usingReorder() {
+            return getReorderEnum() != VertexOrder.NONE;
+        }
+
+        /**
+         * @return Whether every connected component of the graph is colored and optimized on its own
+         */
+        public boolean isPartition() {
+            return partition;
+        }
+
+        public void setPartition(boolean partition) {
+            this.partition = partition;
+        }
+
+        /**
+         * @return The number of vertices up to which small components are packed together into one work unit
+         */
+        public int getPartitionSize() {
+            return partitionSize == 0 ? 100000 : partitionSize;
+        }
+
+        public void setPartitionSize(int partitionSize) {
+            this.partitionSize = partitionSize;
+        }
+
+        /**
+         * @return Whether the neighborhoods used by BCA are stored gap encoded, which takes less memory but more time
+         */
+        public boolean isCompressAdjacency() {
+            return compressAdjacency;
+        }
+
+        public void setCompressAdjacency(boolean compressAdjacency) {
+            this.compressAdjacency = compressAdjacency;
+        }
+
+        /**
+         * @return The number of hops after which the paint of a bookmark is below epsilon and is no longer spread. With
+         * multiple alphas this is the radius of the smallest alpha, whose paint travels furthest.
+         */
+        public int getPaintRadius() {
+            return paintRadius(usingAlphas() ? Collections.min(alphas) : alpha, getEpsilon());
+        }
+
+        /**
+         * Forward push also pushes paint below epsilon from vertices with a total weight below 1, Monte Carlo walks
+         * have no length limit, the clusters of the two-level engine are computed from the whole graph and a hub
+         * vector is cut relative to the paint of the hub itself, so it reaches up to a full radius beyond the hub.
+         * @return Whether no paint of a bookmark reaches further than {@link #getPaintRadius()}
+         */
+        public boolean boundedByPaintRadius() {
+            return getEngineEnum() == BCAEngine.UNDIRECTED_WEIGHTED && !isTwoLevel() && !usingHubs();
+        }
+
+        /**
+         * @return The number of hops after which paint that decays by a factor (1 - alpha) per hop is below epsilon
+         */
+        public static int paintRadius(double alpha, double epsilon) {
+            if(alpha <= 0) throw new IllegalArgumentException("The paint radius is unbounded for alpha " + alpha);
+            if(alpha >= 1) return 0;
+            return (int) Math.max(0, Math.ceil(Math.log(epsilon) / Math.log(1 - alpha)));
+        }
+
+        /**
+         * @return Whether paint that leaves the near field of a bookmark is spread over a graph of clusters. This is a
+         * coarse approximation: on a test graph the vectors were an L1 distance of 0.57 away from the exact ones, for
+         * less than twice the speed. Prefer a larger epsilon or top-k selection when accuracy matters.
+         */
+        public boolean isTwoLevel() {
+            return twoLevel;
+        }
+
+        public void setTwoLevel(boolean twoLevel) {
+            this.twoLevel = twoLevel;
+        }
+
+        /**
+         * @return The number of hops from a bookmark in which paint is spread over the graph itself
+         */
+        public int getNearHops() {
+            return nearHops == 0 ? 2 : nearHops;
+        }
+
+        public void setNearHops(int nearHops) {
+            this.nearHops = nearHops;
+        }
+
+        /**
+         * @return The maximum number of vertices in a cluster of the coarse graph
+         */
+        public int getClusterSize() {
+            return clusterSize == 0 ? 64 : clusterSize;
+        }
+
+        public void setClusterSize(int clusterSize) {
+            this.clusterSize = clusterSize;
+        }
+
+        /**
+         * @return The maximum number of label propagation rounds used to find the clusters
+         */
+        public int getClusterIterations() {
+            return clusterIterations == 0 ? 10 : clusterIterations;
+        }
+
+        public void setClusterIterations(int clusterIterations) {
+            this.clusterIterations = clusterIterations;
+        }
+
+        /**
+         * @return Whether co-occurrences between two output nodes are merged into one entry that is
+         * trained in both directions
+         */
+        public boolean isSymmetric() {
+            return symmetric;
+        }
+
+        public void setSymmetric(boolean symmetric) {
+            this.symmetric = symmetric;
+        }
+
+        /**
+         * @return The file in which the coloring vectors of all bookmarks are kept between runs
+         */
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+
+        public File getStoreFile() {
+            return Paths.get("").toAbsolutePath().resolve(store).toFile();
+        }
+
+        public boolean usingStore() {
+            return store != null && !store.isEmpty();
+        }
+
+        /**
+         * Not supported together with sharded BCA.
+         * @return The file that keeps the estimates and residuals of forward push, so a run with a smaller epsilon can
+         * continue where this run stopped
+         */
+        public String getResiduals() {
+            return residuals;
+        }
+
+        public void setResiduals(String residuals) {
+            this.residuals = residuals;
+        }
+
+        public File getResidualsFile() {
+            return Paths.get("").toAbsolutePath().resolve(residuals).toFile();
+        }
+
+        public boolean usingResiduals() {
+            return residuals != null && !residuals.isEmpty();
+        }
+
+        /**
+         * @return File or directory with the triples added to the graph since the store was written
+         */
+        public String getAdded() {
+            return added;
+        }
+
+        public void setAdded(String added) {
+            this.added = added;
+        }
+
+        /**
+         * @return File or directory with the triples removed from the graph since the store was written
+         */
+        public String getRemoved() {
+            return removed;
+        }
+
+        public void setRemoved(String removed) {
+            this.removed = removed;
+        }
+
+        /**
+         * Only the bookmarks near the changed triples are recomputed when a store and a delta are both present. This
+         * needs the paint radius of the default engine without two levels or hubs, other settings and top-k selection
+         * recompute all bookmarks.
+         */
+        public boolean usingIncremental() {
+            return usingStore() && getStoreFile().isFile()
+                    && ((added != null && !added.isEmpty()) || (removed != null && !removed.isEmpty()));
+        }
+
+        /**
+         * @return The number of worker processes the bookmarks are divided over
+         */
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public boolean usingShards() {
+            return shards > 1;
+        }
+
+        /**
+         * @return The directory in which the worker processes write their co-occurrences
+         */
+        public String getShardDirectory() {
+            return shardDirectory == null || shardDirectory.isEmpty() ? "shards" : shardDirectory;
+        }
+
+        public void setShardDirectory(String shardDirectory) {
+            this.shardDirectory = shardDirectory;
+        }
+
+        public File getShardDirectoryFile() {
+            return Paths.get("").toAbsolutePath().resolve(getShardDirectory()).toFile();
+        }
+
+        /**
+         * @return The shard computed by this process if it is a worker process, otherwise -1
+         */
+        public int getShard() {
+            return shard;
+        }
+
+        public void setShard(int shard) {
+            this.shard = shard;
+        }
+
+        public boolean isShardWorker() {
+            return shard >= 0;
+        }
+
     }
 
     public static class Opt {
@@ -490,13 +1139,67 @@ public class Configuration {
         public void addNodeIndex(int index) {
             this.nodeIndex.add(index);
         }
+
+        /**
+         * Give the output nodes the ids they have after the vertices of the graph were renumbered
+         * @param id The new id of each vertex
+         */
+        public void renumber(int[] id) {
+            final Set<Integer> renumbered = new HashSet<>();
+            for (int v : nodeIndex) renumbered.add(id[v]);
+            nodeIndex.clear();
+            nodeIndex.addAll(renumbered);
+        }
+    }
+
+    /**
+     * @return A copy of this configuration for a part of the graph, with its own output nodes and number of threads and
+     * without progress bars. All other settings are shared with this configuration.
+     */
+    public Configuration forPart(Set<Integer> nodeIndex, int threads) {
+        final Configuration part = copy();
+        part.threads = threads;
+        part.quiet = true;
+        part.output = new Output();
+        part.output.writer = output.writer;
+        part.output.name = output.name;
+        part.output.type = output.type;
+        part.output.nodeIndex.addAll(nodeIndex);
+        return part;
+    }
+
+    /**
+     * @return A copy of this configuration with one of the alphas of {@link BCA#getAlphas()}, so that this
+     * configuration is not changed while the embedding of each alpha is trained and written
+     */
+    public Configuration forAlpha(double alpha) {
+        final Configuration copy = copy();
+        copy.bca = bca.withAlpha(alpha);
+        return copy;
+    }
+
+    private Configuration copy() {
+        final Configuration copy = new Configuration();
+        copy.graph = graph;
+        copy.method = method;
+        copy.dim = dim;
+        copy.threads = threads;
+        copy.quiet = quiet;
+        copy.sourceFile = sourceFile;
+        copy.similarity = similarity;
+        copy.predicates = predicates;
+        copy.bca = bca;
+        copy.opt = opt;
+        copy.output = output;
+        return copy;
     }
 
     public static void check(Configuration config) throws InvalidConfigException {
         boolean hasDim = config.dim > 0;
         boolean hasGraph = config.graph != null && !config.graph.isEmpty();
         boolean hasMethod = config.method != null && !config.method.isEmpty();
-        boolean hasBca = config.bca != null && config.bca.alpha > 0 && config.bca.epsilon > 0;
+        boolean hasBca = config.bca != null && (config.bca.alpha > 0 || config.bca.usingAlphas()) && config.bca.epsilon > 0
+                && (!config.bca.usingAlphas() || config.bca.alphas.stream().allMatch(a -> a != null && a > 0));
         boolean hasOut = config.output != null && config.output.getType() != null && config.output.getType().size() != 0;
 
         if(!hasDim) throw new InvalidConfigException("No dimension specified");
@@ -504,5 +1207,9 @@ public class Configuration {
         if(!hasMethod) throw new InvalidConfigException("Invalid method, choose one of: glove, pglove");
         if(!hasBca) throw new InvalidConfigException("Invalid BCA parameters, alpha and epsilon are mandatory");
         if(!hasOut) throw new InvalidConfigException("Invalid output parameters, specify at least one type");
+        // The workers do not keep their residuals, so the store would silently not be written
+        if(config.bca.usingShards() && config.bca.usingResiduals()) {
+            throw new InvalidConfigException("The residual store can not be used together with sharded BCA");
+        }
     }
 }
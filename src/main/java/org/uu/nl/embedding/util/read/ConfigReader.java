@@ -17,6 +17,8 @@ public class ConfigReader implements Reader<Configuration> {
         InputStream inputStream =
                 new FileInputStream(file);
 
-        return yaml.loadAs(inputStream, Configuration.class);
+        final Configuration config = yaml.loadAs(inputStream, Configuration.class);
+        config.setSourceFile(file);
+        return config;
     }
 }
@@ -33,6 +33,7 @@ public abstract class EmbeddingWriter {
 		writer.write("# Threads: " + config.getThreads() + "\n");
 		writer.write("# BCA Alpha: " + config.getBca().getAlpha() + "\n");
 		writer.write("# BCA Epsilon: " + config.getBca().getEpsilon() + "\n");
+		writer.write("# BCA Engine: " + config.getBca().getEngineEnum() + "\n");
 		writer.write("# Gradient Descent Algorithm: " + config.getOpt().getMethod() + "\n");
 		writer.write("# " + config.getMethod() + " Tolerance: " + config.getOpt().getTolerance() + "\n");
 		writer.write("# " + config.getMethod() + " Maximum Iterations: " + config.getOpt().getMaxiter() + "\n");
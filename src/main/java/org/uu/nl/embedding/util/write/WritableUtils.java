@@ -3,6 +3,7 @@ package org.uu.nl.embedding.util.write;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /** Taken from org.apache.hadoop.commons and modified */
 public final class WritableUtils {
@@ -71,13 +72,73 @@ public final class WritableUtils {
     return isNegativeVInt(firstByte) ? ~i : i;
   }
 
+  /**
+   * Writes a long to a byte array with the same zero-compressed encoding as {@link #writeVLong(DataOutput, long)}.
+   *
+   * @param bytes Array to write to, which must have room for up to 9 bytes at the position
+   * @param position Index of the first byte to write
+   * @param i Long to be serialized
+   * @return The index after the last written byte
+   */
+  public static int writeVLong(byte[] bytes, int position, long i) {
+    if (i >= -112 && i <= 127) {
+      bytes[position++] = (byte) i;
+      return position;
+    }
+
+    int len = -112;
+    if (i < 0) {
+      i ^= -1L; // take one's complement'
+      len = -120;
+    }
+
+    long tmp = i;
+    while (tmp != 0) {
+      tmp = tmp >> 8;
+      len--;
+    }
+
+    bytes[position++] = (byte) len;
+
+    len = len < -120 ? -(len + 120) : -(len + 112);
+
+    for (int idx = len; idx != 0; idx--) {
+      int shiftbits = (idx - 1) * 8;
+      long mask = 0xFFL << shiftbits;
+      bytes[position++] = (byte) ((i & mask) >> shiftbits);
+    }
+    return position;
+  }
+
+  /**
+   * Reads a zero-compressed encoded long from a byte array. The number of bytes it took is given by
+   * {@link #decodeVIntSize(byte)} of the first byte.
+   *
+   * @param bytes Array to read from
+   * @param position Index of the first byte of the value
+   * @return deserialized long from the array.
+   */
+  public static long readVLong(byte[] bytes, int position) {
+    byte firstByte = bytes[position];
+    int len = decodeVIntSize(firstByte);
+    if (len == 1) {
+      return firstByte;
+    }
+    long i = 0;
+    for (int idx = 1; idx < len; idx++) {
+      i = i << 8;
+      i = i | bytes[position + idx] & 0xFF;
+    }
+    return isNegativeVInt(firstByte) ? ~i : i;
+  }
+
   /**
    * Parse the first byte of a vint/vlong to determine the number of bytes
    *
    * @param value the first byte of the vint/vlong
    * @return the total number of bytes (1 to 9)
    */
-  private static int decodeVIntSize(byte value) {
+  public static int decodeVIntSize(byte value) {
     if (value >= -112) {
       return 1;
     } else if (value < -120) {
@@ -97,4 +158,30 @@ public final class WritableUtils {
   }
 
 
-}
\ No newline at end of file
+
+  /**
+   * Writes a string as a zero-compressed encoded length followed by its UTF-8 bytes.
+   *
+   * @param stream Binary output stream
+   * @param s String to be serialized
+   * @throws java.io.IOException If an I/O error occurs
+   */
+  public static void writeString(DataOutput stream, String s) throws IOException {
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVLong(stream, bytes.length);
+    stream.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutput, String)}.
+   *
+   * @param stream Binary input stream
+   * @throws java.io.IOException If an I/O error occurs
+   * @return deserialized string from stream.
+   */
+  public static String readString(DataInput stream) throws IOException {
+    final byte[] bytes = new byte[(int) readVLong(stream)];
+    stream.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,86 @@
+package org.uu.nl.embedding.bca;
+
+import org.junit.Test;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class PartitionedColoringTest {
+
+	/**
+	 * Two units with focus vertices {4, 1} and {2}, and an empty unit in between
+	 */
+	private static PartitionedColoring coloring() {
+		// Used by the permutations of the units
+		Configuration.setThreadLocalRandom(1);
+		final InMemoryRdfGraph g = graph(5);
+		for (int v = 0; v < 5; v++) g.getVertexTypeProperty().setValue(v, v % 3);
+		final PartitionedColoring.Unit first = new PartitionedColoring.Unit(new int[] {4, 1}, new int[] {0, 1, 1},
+				new int[] {1, 4, 0}, new float[] {1, 2, 3}, 1, 3);
+		final PartitionedColoring.Unit empty = new PartitionedColoring.Unit(new int[0], new int[0], new int[0],
+				new float[0], 0, 0);
+		final PartitionedColoring.Unit second = new PartitionedColoring.Unit(new int[] {2}, new int[] {0, 0},
+				new int[] {3, 2}, new float[] {4, 5}, 0, 5);
+		return new PartitionedColoring(g, Arrays.asList(first, empty, second));
+	}
+
+	@Test
+	public void focusIndicesFollowEachOther() {
+		final PartitionedColoring coloring = coloring();
+		assertEquals(3, coloring.nrOfFocusVectors());
+		assertEquals(5, coloring.nrOfContextVectors());
+		assertEquals(4, coloring.focusIndex2Context(0));
+		assertEquals(1, coloring.focusIndex2Context(1));
+		assertEquals(2, coloring.focusIndex2Context(2));
+		assertEquals(2, coloring.contextIndex2Focus(2));
+		assertEquals(-1, coloring.contextIndex2Focus(3));
+	}
+
+	@Test
+	public void keysAndTypesComeFromTheWholeGraph() {
+		final PartitionedColoring coloring = coloring();
+		assertEquals("v1", coloring.getKey(1));
+		assertEquals(2, coloring.getType(2));
+	}
+
+	@Test
+	public void entriesAreMappedToTheWholeGraph() {
+		final PartitionedColoring coloring = coloring();
+		assertEquals(5, coloring.coOccurrenceCount());
+		assertEquals(5, coloring.max(), 0);
+
+		final int[] focus = new int[5], context = new int[5];
+		final float[] values = new float[5];
+		final boolean[] symmetric = new boolean[5];
+		for (int i = 0; i < 5; i++) {
+			focus[i] = coloring.cIdx_I(i);
+			context[i] = coloring.cIdx_J(i);
+			values[i] = coloring.cIdx_C(i);
+			symmetric[i] = coloring.isSymmetric(i);
+		}
+		assertArrayEquals(new int[] {0, 1, 1, 2, 2}, focus);
+		assertArrayEquals(new int[] {1, 4, 0, 3, 2}, context);
+		assertArrayEquals(new float[] {1, 2, 3, 4, 5}, values, 0);
+		assertTrue(symmetric[0]);
+		assertFalse(symmetric[1] || symmetric[2] || symmetric[3] || symmetric[4]);
+	}
+
+	@Test
+	public void shuffleKeepsEntriesWithinTheirUnit() {
+		final PartitionedColoring coloring = coloring();
+		coloring.shuffle();
+		for (int i = 0; i < 5; i++) {
+			final int focus = coloring.cIdx_I(i);
+			assertEquals(i < 3 ? 1 : 2, focus < 2 ? 1 : 2);
+			// The value identifies the entry, the first one is the only symmetric entry
+			assertEquals(coloring.cIdx_C(i) == 1, coloring.isSymmetric(i));
+		}
+	}
+}
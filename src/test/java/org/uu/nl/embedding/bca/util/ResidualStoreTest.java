@@ -0,0 +1,132 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.uu.nl.embedding.bca.jobs.ForwardPush;
+import org.uu.nl.embedding.util.CSRAdjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class ResidualStoreTest {
+
+	private static final String SETTINGS = "FORWARD_PUSH alpha=0.1";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("residuals", ".bin");
+		file.deleteOnExit();
+	}
+
+	/**
+	 * Bookmark a (focus 0) has estimates on a and b and a residual on c, bookmark c (focus 1) only an estimate on c
+	 */
+	private void write(InMemoryRdfGraph g) throws IOException {
+		ResidualStore.write(file, SETTINGS, 0.01, g, new int[]{0, 2},
+				new ResidualStore.Columns(new int[]{0, 1, 0}, new int[]{0, 2, 1}, new float[]{0.5f, 0.9f, 0.2f}),
+				new ResidualStore.Columns(new int[]{0}, new int[]{2}, new float[]{0.05f}));
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		final InMemoryRdfGraph g = graph("a", "b", "c");
+		write(g);
+
+		final ResidualStore store = ResidualStore.read(file, SETTINGS, 0.001, g, new int[]{0, -1, 1}, 2);
+		assertEquals(0.01, store.epsilon(), 0);
+		assertTrue(store.has(0));
+		assertTrue(store.has(1));
+
+		final BCV estimates = store.estimates(0, 0);
+		assertEquals(2, estimates.size());
+		assertEquals(0.5f, estimates.get(0), 0f);
+		assertEquals(0.2f, estimates.get(1), 0f);
+		assertEquals(0.05f, store.residuals(0, 0).get(2), 0f);
+		assertEquals(0.9f, store.estimates(1, 2).get(2), 0f);
+		assertTrue(store.residuals(1, 2).isEmpty());
+	}
+
+	@Test
+	public void matchesVerticesByKey() throws IOException {
+		write(graph("a", "b", "c"));
+
+		// Another conversion of the same data, with the vertices in reverse order
+		final ResidualStore store = ResidualStore.read(file, SETTINGS, 0.01, graph("c", "b", "a"), new int[]{1, -1, 0}, 2);
+		assertEquals(0.5f, store.estimates(0, 2).get(2), 0f);
+		assertEquals(0.2f, store.estimates(0, 2).get(1), 0f);
+		assertEquals(0.05f, store.residuals(0, 2).get(0), 0f);
+		assertEquals(0.9f, store.estimates(1, 0).get(0), 0f);
+	}
+
+	@Test
+	public void bookmarkWithMissingVertexStartsFromScratch() throws IOException {
+		write(graph("a", "b", "c"));
+
+		// Vertex b is gone, so the state of bookmark a is incomplete
+		final ResidualStore store = ResidualStore.read(file, SETTINGS, 0.01, graph("a", "c"), new int[]{0, 1}, 2);
+		assertFalse(store.has(0));
+		assertTrue(store.has(1));
+		assertEquals(0.9f, store.estimates(1, 1).get(1), 0f);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherSettings() throws IOException {
+		final InMemoryRdfGraph g = graph("a", "b", "c");
+		write(g);
+		ResidualStore.read(file, "FORWARD_PUSH alpha=0.2", 0.01, g, new int[]{0, -1, 1}, 2);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsLargerEpsilon() throws IOException {
+		final InMemoryRdfGraph g = graph("a", "b", "c");
+		write(g);
+		ResidualStore.read(file, SETTINGS, 0.1, g, new int[]{0, -1, 1}, 2);
+	}
+
+	@Test
+	public void resumingMeetsTheGuaranteeOfTheSmallerEpsilon() {
+		Configuration.setThreadLocalRandom(1);
+		final CSRAdjacency adjacency = ring(50);
+		final ThreadLocal<PaintFrontier> frontiers = ThreadLocal.withInitial(() -> new FifoFrontier(50));
+		final double alpha = 0.1, large = 1e-2, small = 1e-4;
+
+		final ForwardPush first = new ForwardPush(adjacency, 0, alpha, large, frontiers).keepResiduals();
+		final BCV estimates = first.call();
+		final BCV resumed = new ForwardPush(adjacency, 0, alpha, small, frontiers)
+				.resume(estimates, first.residuals()).call();
+		final BCV direct = new ForwardPush(adjacency, 0, alpha, small, frontiers).call();
+
+		// Both lie below the exact vector and within epsilon times the degree of it
+		for (int v = 0; v < 50; v++) {
+			assertEquals(direct.getOrDefault(v, 0), resumed.getOrDefault(v, 0), small * adjacency.totalWeight(v));
+		}
+	}
+
+	/**
+	 * A ring with a chord from every vertex to the one halfway around, all edges with weight 1
+	 */
+	private static CSRAdjacency ring(int n) {
+		final int[] offsets = new int[n + 1];
+		final int[] neighbors = new int[3 * n];
+		final float[] weights = new float[3 * n];
+		Arrays.fill(weights, 1f);
+		for (int v = 0; v < n; v++) {
+			offsets[v + 1] = 3 * (v + 1);
+			final int[] row = {(v + n - 1) % n, (v + 1) % n, (v + n / 2) % n};
+			Arrays.sort(row);
+			System.arraycopy(row, 0, neighbors, 3 * v, 3);
+		}
+		return new CSRAdjacency(offsets, neighbors, weights);
+	}
+}
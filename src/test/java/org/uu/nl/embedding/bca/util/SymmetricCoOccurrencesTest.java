@@ -0,0 +1,58 @@
+package org.uu.nl.embedding.bca.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class SymmetricCoOccurrencesTest {
+
+	/**
+	 * Bookmarks are the vertices 0, 2 and 3, vertex 1 is only a context
+	 */
+	private static final int[] CONTEXT2FOCUS = {0, -1, 1, 2};
+	private static final int[] FOCUS2CONTEXT = {0, 2, 3};
+
+	private static SymmetricCoOccurrences merge() {
+		final int[] I = {0, 1, 0, 1, 0};
+		final int[] J = {2, 0, 1, 3, 0};
+		final float[] C = {0.4f, 0.2f, 0.5f, 0.7f, 1.0f};
+		return new SymmetricCoOccurrences(I, J, C, CONTEXT2FOCUS, FOCUS2CONTEXT);
+	}
+
+	private static Map<String, Float> entries(SymmetricCoOccurrences merged, int from, int to) {
+		final Map<String, Float> entries = new HashMap<>();
+		for (int i = from; i < to; i++) entries.put(merged.focus()[i] + "," + merged.context()[i], merged.values()[i]);
+		return entries;
+	}
+
+	@Test
+	public void pairInBothDirectionsIsAveraged() {
+		final SymmetricCoOccurrences merged = merge();
+		assertEquals(1, merged.symmetricCount());
+		assertEquals(0, merged.focus()[0]);
+		assertEquals(2, merged.context()[0]);
+		assertEquals(0.3f, merged.values()[0], 1e-6);
+	}
+
+	@Test
+	public void pairInOneDirectionKeepsItsEntry() {
+		final SymmetricCoOccurrences merged = merge();
+		final Map<String, Float> plain = entries(merged, merged.symmetricCount(), merged.values().length);
+		assertEquals(3, plain.size());
+		assertEquals(0.7f, plain.get("1,3"), 0);
+	}
+
+	@Test
+	public void otherEntriesAreUnchanged() {
+		final SymmetricCoOccurrences merged = merge();
+		final Map<String, Float> plain = entries(merged, merged.symmetricCount(), merged.values().length);
+		assertEquals(0.5f, plain.get("0,1"), 0);
+		assertEquals(1.0f, plain.get("0,0"), 0);
+	}
+}
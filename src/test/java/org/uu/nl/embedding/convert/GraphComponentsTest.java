@@ -0,0 +1,78 @@
+package org.uu.nl.embedding.convert;
+
+import org.junit.Test;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class GraphComponentsTest {
+
+	/**
+	 * Components {0, 1, 2}, {3, 4}, {5, 6} and {7}
+	 */
+	private static InMemoryRdfGraph components() {
+		final InMemoryRdfGraph g = graph(8);
+		addEdge(g, 0, 1, 1);
+		addEdge(g, 1, 2, 2);
+		addEdge(g, 3, 4, 3);
+		addEdge(g, 5, 6, 4);
+		return g;
+	}
+
+	@Test
+	public void countsComponents() {
+		assertEquals(4, new GraphComponents(components()).count());
+	}
+
+	@Test
+	public void leavesOutComponentsWithoutOutputNodes() {
+		final List<int[]> units = new GraphComponents(components()).units(new HashSet<>(Arrays.asList(0, 3)), 100);
+		assertEquals(1, units.size());
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4}, units.get(0));
+	}
+
+	@Test
+	public void packsComponentsUpToTheMaximumSize() {
+		final List<int[]> units = new GraphComponents(components()).units(new HashSet<>(Arrays.asList(0, 3, 5, 7)), 3);
+		// The largest component fills a unit, the next two share one and the last one starts a new unit
+		assertEquals(3, units.size());
+		assertArrayEquals(new int[] {0, 1, 2}, units.get(0));
+		assertArrayEquals(new int[] {3, 4}, units.get(1));
+		assertArrayEquals(new int[] {5, 6, 7}, units.get(2));
+	}
+
+	@Test
+	public void largeComponentGetsAUnitOfItsOwn() {
+		final List<int[]> units = new GraphComponents(components()).units(new HashSet<>(Arrays.asList(0, 3)), 1);
+		assertEquals(2, units.size());
+		assertArrayEquals(new int[] {0, 1, 2}, units.get(0));
+		assertArrayEquals(new int[] {3, 4}, units.get(1));
+	}
+
+	@Test
+	public void subgraphKeepsTheEdgesOfItsUnit() {
+		final GraphComponents components = new GraphComponents(components());
+		final List<int[]> units = components.units(new HashSet<>(Arrays.asList(0, 3, 5, 7)), 3);
+
+		final InMemoryRdfGraph unit = components.subgraph(2);
+		assertEquals(3, unit.getNumberOfVertices());
+		assertEquals(1, unit.getNumberOfEdges());
+		for (int v = 0; v < units.get(2).length; v++) {
+			assertEquals("v" + units.get(2)[v], unit.getVertexLabelProperty().getValueAsString(v));
+		}
+		final int e = unit.getEdges().toIntArray()[0];
+		final int a = unit.getOneVertex(e), b = unit.getTheOtherVertex(e, a);
+		// Vertices 5 and 6 of the whole graph
+		assertEquals(0, Math.min(a, b));
+		assertEquals(1, Math.max(a, b));
+		assertEquals(4, unit.getEdgeWeightProperty().getValueAsFloat(e), 0);
+	}
+}
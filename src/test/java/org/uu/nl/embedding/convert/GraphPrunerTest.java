@@ -0,0 +1,123 @@
+package org.uu.nl.embedding.convert;
+
+import org.junit.Test;
+import org.uu.nl.embedding.bca.jobs.UndirectedWeighted;
+import org.uu.nl.embedding.bca.util.BCV;
+import org.uu.nl.embedding.bca.util.NodeOrderFrontier;
+import org.uu.nl.embedding.bca.util.PaintFrontier;
+import org.uu.nl.embedding.convert.util.CSRAlgorithm;
+import org.uu.nl.embedding.util.Adjacency;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class GraphPrunerTest {
+
+	private static final double ALPHA = 0.3, EPSILON = 0.01;
+
+	private static Configuration config(int... outputNodes) {
+		final Configuration config = new Configuration();
+		config.setThreads(1);
+		final Configuration.BCA bca = new Configuration.BCA();
+		bca.setAlpha(ALPHA);
+		bca.setEpsilon(EPSILON);
+		bca.setPrune(true);
+		config.setBca(bca);
+		config.setOutput(new Configuration.Output());
+		for (int v : outputNodes) config.getOutput().getNodeIndex().add(v);
+		return config;
+	}
+
+	@Test
+	public void radiusIsWherePaintDropsBelowEpsilon() {
+		final int radius = config().getBca().getPaintRadius();
+		assertTrue(Math.pow(1 - ALPHA, radius) <= EPSILON);
+		assertTrue(Math.pow(1 - ALPHA, radius - 1) > EPSILON);
+	}
+
+	@Test
+	public void keepsVerticesWithinTheRadius() {
+		final Configuration config = config(0);
+		final int radius = config.getBca().getPaintRadius();
+		final InMemoryRdfGraph path = graph(radius + 5);
+		for (int v = 1; v < radius + 5; v++) addEdge(path, v - 1, v, 1);
+
+		final InMemoryRdfGraph pruned = new GraphPruner(config).prune(path);
+		assertEquals(radius + 1, pruned.getNumberOfVertices());
+		assertEquals(radius, pruned.getNumberOfEdges());
+		for (int v = 0; v <= radius; v++) assertEquals("v" + v, pruned.getVertexLabelProperty().getValueAsString(v));
+	}
+
+	@Test
+	public void renumbersTheOutputNodes() {
+		final Configuration config = config(0, 7);
+		final InMemoryRdfGraph g = graph(8);
+		addEdge(g, 0, 1, 1);
+		final InMemoryRdfGraph pruned = new GraphPruner(config).prune(g);
+
+		// Vertices 2 to 6 are isolated, vertex 7 becomes vertex 2
+		assertEquals(3, pruned.getNumberOfVertices());
+		assertTrue(config.getOutput().getNodeIndex().contains(0));
+		assertTrue(config.getOutput().getNodeIndex().contains(2));
+		assertEquals("v7", pruned.getVertexLabelProperty().getValueAsString(2));
+	}
+
+	@Test
+	public void defaultEngineGivesTheSameVectors() {
+		final Random random = new Random(7);
+		final int numVertices = 400;
+		final InMemoryRdfGraph g = graph(numVertices);
+		// A long chain with random chords, so most vertices are further than the radius from the bookmarks
+		for (int v = 1; v < numVertices; v++) addEdge(g, v - 1, v, 1 + random.nextInt(3));
+		for (int i = 0; i < numVertices / 4; i++) {
+			final int a = random.nextInt(numVertices - 3);
+			addEdge(g, a, a + 2 + random.nextInt(2), 0.5f + random.nextFloat());
+		}
+
+		final Configuration config = config(10, 200);
+		assertTrue(GraphPruner.isExact(config.getBca()));
+		final Map<String, Float> full = paint(g, config, 10);
+		final Map<String, Float> second = paint(g, config, 200);
+
+		final InMemoryRdfGraph pruned = new GraphPruner(config).prune(g);
+		assertTrue(pruned.getNumberOfVertices() < numVertices);
+		int first = -1, last = -1;
+		for (int v = 0; v < pruned.getNumberOfVertices(); v++) {
+			if (pruned.getVertexLabelProperty().getValueAsString(v).equals("v10")) first = v;
+			if (pruned.getVertexLabelProperty().getValueAsString(v).equals("v200")) last = v;
+		}
+		assertVectorsEqual(full, paint(pruned, config, first));
+		assertVectorsEqual(second, paint(pruned, config, last));
+	}
+
+	private static void assertVectorsEqual(Map<String, Float> expected, Map<String, Float> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (Map.Entry<String, Float> entry : expected.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()), 1e-6);
+		}
+	}
+
+	/**
+	 * @return The coloring vector of the bookmark, by vertex label
+	 */
+	private static Map<String, Float> paint(InMemoryRdfGraph g, Configuration config, int bookmark) {
+		final Adjacency adjacency = new CSRAlgorithm(config).compute(g);
+		final ThreadLocal<PaintFrontier> frontier = ThreadLocal.withInitial(() -> new NodeOrderFrontier(adjacency.vertexCount()));
+		final BCV bcv = new UndirectedWeighted(adjacency, bookmark, ALPHA, EPSILON, frontier).call();
+
+		final Map<String, Float> vector = new HashMap<>();
+		for (int slot = 0; slot < bcv.capacity(); slot++) {
+			if (bcv.isUsed(slot)) vector.put(g.getVertexLabelProperty().getValueAsString(bcv.keyAt(slot)), bcv.valueAt(slot));
+		}
+		return vector;
+	}
+}
@@ -0,0 +1,65 @@
+package org.uu.nl.embedding.convert;
+
+import org.junit.Test;
+import org.uu.nl.embedding.util.InMemoryRdfGraph;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class SimilarityHubsTest {
+
+	/**
+	 * A complete group of the vertices 0 to 4 and a single pair between 5 and 6
+	 */
+	private static SimilarityHubs pairs(int minSize) {
+		final SimilarityHubs pairs = new SimilarityHubs(minSize, 0.5);
+		for (int a = 0; a < 5; a++) {
+			for (int b = a + 1; b < 5; b++) pairs.add(a, b, 0.5f);
+		}
+		pairs.add(5, 6, 0.8f);
+		return pairs;
+	}
+
+	@Test
+	public void denseGroupGetsHubWithMemberStrengths() {
+		final SimilarityHubs.Plan plan = pairs(4).plan(7);
+
+		assertEquals(1, plan.groupCount());
+		assertEquals(5, plan.memberStart[1] - plan.memberStart[0]);
+		// Every member is similar to the 4 others
+		for (float strength : plan.strengths) assertEquals(2f, strength, 1e-6f);
+		assertEquals(SimilarityHubs.Plan.DIRECT, plan.groupOfPair[plan.groupOfPair.length - 1]);
+	}
+
+	@Test
+	public void hubReplacesPairsOfGroup() {
+		final InMemoryRdfGraph g = graph(7);
+		final int edges = pairs(4).addTo(g, "hub:");
+
+		// One direct edge and a star of 5 edges instead of 10 pairs
+		assertEquals(6, edges);
+		assertEquals(8, g.getNumberOfVertices());
+		assertEquals("hub:v0", g.getVertexLabelProperty().getValueAsString(7));
+	}
+
+	@Test
+	public void withoutHubsEveryPairIsAnEdge() {
+		final InMemoryRdfGraph g = graph(7);
+		final int edges = pairs(0).addTo(g, "hub:");
+
+		assertEquals(11, edges);
+		assertEquals(7, g.getNumberOfVertices());
+	}
+
+	@Test
+	public void sparseGroupIsNotReplaced() {
+		final SimilarityHubs pairs = new SimilarityHubs(4, 0.5);
+		// A path of 5 vertices has 4 of the 10 possible pairs
+		for (int v = 0; v < 4; v++) pairs.add(v, v + 1, 1f);
+
+		assertEquals(0, pairs.plan(5).groupCount());
+	}
+}
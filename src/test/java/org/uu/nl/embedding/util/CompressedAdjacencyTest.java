@@ -0,0 +1,131 @@
+package org.uu.nl.embedding.util;
+
+import org.junit.Test;
+import org.uu.nl.embedding.convert.util.CSRAlgorithm;
+import org.uu.nl.embedding.convert.util.CompressedAlgorithm;
+import org.uu.nl.embedding.util.config.Configuration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.uu.nl.embedding.util.TestGraphs.*;
+
+/**
+ * @author Jurian Baas
+ */
+public class CompressedAdjacencyTest {
+
+	private static final float[] TABLE = {1f, 10f};
+
+	/**
+	 * The neighbors of each vertex as entries of the builder, in the order they are added
+	 */
+	private static CompressedAdjacency build(long[][] rows) {
+		final CompressedAdjacency.Builder builder = new CompressedAdjacency.Builder(rows.length, TABLE);
+		for (long[] row : rows) builder.add(row.clone(), row.length);
+		return builder.build();
+	}
+
+	private static long entry(int neighbor, float weight) {
+		return CompressedAdjacency.Builder.entry(neighbor, weight);
+	}
+
+	@Test
+	public void decodesSortedNeighborsAndWeights() {
+		// Large gaps take several bytes, 0.25 is not in the table and is stored as a float
+		final long[][] rows = new long[1_000_001][];
+		Arrays.fill(rows, new long[0]);
+		rows[0] = new long[]{entry(1_000_000, 1f), entry(3, 0.25f), entry(200, 10f)};
+		rows[3] = new long[]{entry(0, 0.25f)};
+		rows[200] = new long[]{entry(0, 10f)};
+		rows[1_000_000] = new long[]{entry(0, 1f)};
+		final CompressedAdjacency adjacency = build(rows);
+
+		final Adjacency.Cursor cursor = adjacency.cursor().reset(0);
+		final int[] neighbors = {3, 200, 1_000_000};
+		final float[] weights = {0.25f, 10f, 1f};
+		for (int i = 0; i < neighbors.length; i++) {
+			assertTrue(cursor.next());
+			assertEquals(neighbors[i], cursor.neighbor());
+			assertEquals(weights[i], cursor.weight(), 0f);
+		}
+		assertFalse(cursor.next());
+
+		assertEquals(3, adjacency.degree(0));
+		assertEquals(11.25, adjacency.totalWeight(0), 1e-9);
+		assertEquals(6, adjacency.edgeCount());
+		assertEquals(0.25, adjacency.weight(3, 0), 0);
+		assertEquals(0, adjacency.weight(0, 4), 0);
+		assertFalse(adjacency.cursor().reset(1).next());
+	}
+
+	@Test
+	public void parallelEdgesAddUp() {
+		final CompressedAdjacency adjacency = build(new long[][]{
+				{entry(1, 1f), entry(1, 10f)},
+				{entry(0, 10f), entry(0, 1f)}});
+
+		assertEquals(2, adjacency.degree(0));
+		assertEquals(11, adjacency.weight(0, 1), 0);
+	}
+
+	@Test
+	public void sampleFollowsCumulativeWeight() {
+		final CompressedAdjacency adjacency = build(new long[][]{
+				{entry(1, 1f), entry(2, 10f), entry(3, 0.25f)}, {}, {}, {}});
+
+		assertEquals(1, adjacency.sample(0, 0.5));
+		assertEquals(2, adjacency.sample(0, 1));
+		assertEquals(2, adjacency.sample(0, 10.9));
+		assertEquals(3, adjacency.sample(0, 11.1));
+	}
+
+	@Test
+	public void weightTableKeepsMostFrequentWeights() {
+		final Map<Float, Long> counts = new HashMap<>();
+		for (int w = 0; w < 200; w++) counts.put((float) w, (long) w);
+
+		final float[] table = CompressedAdjacency.weightTable(counts);
+		assertEquals(127, table.length);
+		assertEquals(199f, table[0], 0f);
+		assertEquals(73f, table[126], 0f);
+	}
+
+	@Test
+	public void matchesUncompressedSnapshot() {
+		final Random random = new Random(3);
+		final int numVertices = 500;
+		final InMemoryRdfGraph g = graph(numVertices);
+		for (int i = 0; i < 3000; i++) {
+			final int a = random.nextInt(numVertices), b = random.nextInt(numVertices);
+			if (a == b) continue;
+			// Mostly predicate weights, some similarity weights that are not in the table
+			addEdge(g, a, b, random.nextInt(4) == 0 ? random.nextFloat() : 1 + random.nextInt(3));
+		}
+		final Configuration config = new Configuration();
+		config.setThreads(1);
+		final Adjacency expected = new CSRAlgorithm(config).compute(g);
+		final Adjacency actual = new CompressedAlgorithm(config).compute(g);
+
+		assertEquals(expected.edgeCount(), actual.edgeCount());
+		for (int v = 0; v < numVertices; v++) {
+			assertEquals(expected.degree(v), actual.degree(v));
+			assertEquals(expected.totalWeight(v), actual.totalWeight(v), 1e-4);
+			assertArrayEquals(row(expected, v), row(actual, v));
+		}
+	}
+
+	/**
+	 * @return The entries of a row, sorted so the order within the row does not matter
+	 */
+	private static long[] row(Adjacency adjacency, int vertex) {
+		final long[] row = new long[adjacency.degree(vertex)];
+		final Adjacency.Cursor cursor = adjacency.cursor().reset(vertex);
+		for (int i = 0; cursor.next(); i++) row[i] = entry(cursor.neighbor(), cursor.weight());
+		Arrays.sort(row);
+		return row;
+	}
+}
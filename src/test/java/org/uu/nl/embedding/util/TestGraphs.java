@@ -0,0 +1,40 @@
+package org.uu.nl.embedding.util;
+
+/**
+ * Small graphs for the tests
+ *
+ * @author Jurian Baas
+ */
+public class TestGraphs {
+
+	/**
+	 * The edge type of the edges added by {@link #addEdge(InMemoryRdfGraph, int, int, float)}
+	 */
+	public static final int EDGE_TYPE = 1;
+
+	/**
+	 * @return A graph without edges, where vertex v has the label "v" followed by its id
+	 */
+	public static InMemoryRdfGraph graph(int numVertices) {
+		final String[] labels = new String[numVertices];
+		for (int v = 0; v < numVertices; v++) labels[v] = "v" + v;
+		return graph(labels);
+	}
+
+	/**
+	 * @param labels The label of each vertex, which is also its key
+	 * @return A graph without edges
+	 */
+	public static InMemoryRdfGraph graph(String... labels) {
+		final InMemoryRdfGraph g = new InMemoryRdfGraph();
+		for (int v = 0; v < labels.length; v++) {
+			g.addVertex(v);
+			g.getVertexLabelProperty().setValue(v, labels[v]);
+		}
+		return g;
+	}
+
+	public static int addEdge(InMemoryRdfGraph g, int a, int b, float weight) {
+		return g.addWeightedEdge(a, b, weight, EDGE_TYPE);
+	}
+}